@@ -0,0 +1,23 @@
+import com.google.inject.AbstractModule;
+import dao.ChatRetentionJob;
+import dao.ChatStorageMigration;
+import dao.CompletionCachePurgeJob;
+import services.impl.ChatGPTServiceImpl;
+import services.impl.ChatSearchServiceImpl;
+import warmup.WarmupService;
+
+/**
+ * Guice bindings loaded by Play from the root package.
+ */
+public class Module extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        bind(ChatStorageMigration.class).asEagerSingleton();
+        bind(ChatRetentionJob.class).asEagerSingleton();
+        bind(CompletionCachePurgeJob.class).asEagerSingleton();
+        bind(ChatGPTServiceImpl.class).asEagerSingleton();
+        bind(ChatSearchServiceImpl.class).asEagerSingleton();
+        bind(WarmupService.class).asEagerSingleton();
+    }
+}
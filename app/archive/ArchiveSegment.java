@@ -0,0 +1,251 @@
+package archive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dtos.ChatInteractionDTO;
+import lombok.extern.slf4j.Slf4j;
+import play.libs.Json;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * One user-month of archived chat interactions. The data file is an append-only sequence
+ * of gzip members, one per archived batch, each holding NDJSON lines. The index file
+ * has one JSON line per member with its byte range, id range and time range. Readers only
+ * trust members listed in the index, so a batch cut short by a crash before its index
+ * line was written is never read; an indexed member that is missing from the data file
+ * or cannot be inflated is skipped with a warning.
+ */
+@Slf4j
+public class ArchiveSegment {
+
+    private static final String DATA_SUFFIX = ".ndjson.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final YearMonth month;
+    private final Path dataFile;
+    private final Path indexFile;
+
+    public ArchiveSegment(Path userDirectory, YearMonth month) {
+        this.month = month;
+        this.dataFile = userDirectory.resolve(MONTH_FORMAT.format(month) + DATA_SUFFIX);
+        this.indexFile = userDirectory.resolve(MONTH_FORMAT.format(month) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Lists the segments in a user's archive directory.
+     *
+     * @param userDirectory the archive directory of one user
+     * @return the segments, oldest month first; empty if the user has no archive
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<ArchiveSegment> list(Path userDirectory) throws IOException {
+        if (!Files.isDirectory(userDirectory)) {
+            return Collections.emptyList();
+        }
+        List<ArchiveSegment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(userDirectory, "*" + INDEX_SUFFIX)) {
+            for (Path indexFile : indexFiles) {
+                String name = indexFile.getFileName().toString();
+                try {
+                    YearMonth month = YearMonth.parse(name.substring(0, name.length() - INDEX_SUFFIX.length()), MONTH_FORMAT);
+                    segments.add(new ArchiveSegment(userDirectory, month));
+                } catch (DateTimeParseException e) {
+                    log.warn("Ignoring unexpected file in chat archive: {}", indexFile);
+                }
+            }
+        }
+        segments.sort(Comparator.comparing(ArchiveSegment::getMonth));
+        return segments;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * Appends a batch of chat interactions as a new gzip member, then records it in the
+     * index. Both files are forced to disk before returning. An exclusive lock on the
+     * data file is held across both writes and the offset is read under it, so appends
+     * from other processes sharing the archive directory cannot interleave. Appends from
+     * one process must not overlap; the retention job runs one batch at a time.
+     *
+     * @param chats the chat interactions of this user and month, with full responses
+     * @throws IOException if the segment cannot be written
+     */
+    public void append(List<ChatInteractionDTO> chats) throws IOException {
+        if (chats.isEmpty()) {
+            return;
+        }
+        ObjectMapper mapper = Json.mapper();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        long firstSubmittedAt = Long.MAX_VALUE;
+        long lastSubmittedAt = Long.MIN_VALUE;
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(buffer), StandardCharsets.UTF_8)) {
+            for (ChatInteractionDTO chat : chats) {
+                writer.write(mapper.writeValueAsString(chat));
+                writer.write('\n');
+                minId = Math.min(minId, chat.getId());
+                maxId = Math.max(maxId, chat.getId());
+                firstSubmittedAt = Math.min(firstSubmittedAt, chat.getSubmittedAt().getTime());
+                lastSubmittedAt = Math.max(lastSubmittedAt, chat.getSubmittedAt().getTime());
+            }
+        }
+        byte[] member = buffer.toByteArray();
+
+        Files.createDirectories(dataFile.getParent());
+        try (FileChannel data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = data.lock()) {
+            long offset = data.size();
+            data.position(offset);
+            writeFully(data, member);
+            data.force(true);
+
+            SegmentIndexEntry entry = new SegmentIndexEntry(offset, member.length, chats.size(),
+                    minId, maxId, firstSubmittedAt, lastSubmittedAt);
+            try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                String line = mapper.writeValueAsString(entry) + "\n";
+                if (endsTorn(index)) {
+                    line = "\n" + line;
+                }
+                index.position(index.size());
+                writeFully(index, line.getBytes(StandardCharsets.UTF_8));
+                index.force(true);
+            }
+        }
+    }
+
+    /**
+     * Reads the index of this segment. A line that cannot be parsed, such as one torn by
+     * a crash, is skipped.
+     *
+     * @return the index entries in append order
+     * @throws IOException if the index cannot be read
+     */
+    public List<SegmentIndexEntry> readIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return Collections.emptyList();
+        }
+        List<SegmentIndexEntry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                entries.add(Json.mapper().readValue(line, SegmentIndexEntry.class));
+            } catch (JsonProcessingException e) {
+                log.warn("Skipping unreadable index line in {}: {}", indexFile, e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the chat interactions of the indexed members accepted by the filter.
+     *
+     * @param members selects the members to read by their index entries
+     * @return the chat interactions of the selected members, in append order
+     * @throws IOException if the data file cannot be read
+     */
+    public List<ChatInteractionDTO> read(Predicate<SegmentIndexEntry> members) throws IOException {
+        List<ChatInteractionDTO> chats = new ArrayList<>();
+        for (SegmentIndexEntry entry : readIndex()) {
+            if (members.test(entry)) {
+                chats.addAll(read(entry));
+            }
+        }
+        return chats;
+    }
+
+    /**
+     * Reads the chat interactions of one indexed member, seeking straight to its offset.
+     *
+     * @param entry the index entry of the member
+     * @return the chat interactions of the member, in append order; empty if the member
+     *         is missing from the data file or its gzip data is damaged
+     * @throws IOException if the data file cannot be read
+     */
+    public List<ChatInteractionDTO> read(SegmentIndexEntry entry) throws IOException {
+        ByteBuffer member = ByteBuffer.allocate(entry.getLength());
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            if (entry.getOffset() + entry.getLength() > channel.size()) {
+                log.warn("Skipping archive member at offset {} of {}: the file ends before it", entry.getOffset(), dataFile);
+                return Collections.emptyList();
+            }
+            while (member.hasRemaining()) {
+                if (channel.read(member, entry.getOffset() + member.position()) < 0) {
+                    throw new IOException("Archive segment " + dataFile + " is shorter than its index");
+                }
+            }
+        }
+        List<ChatInteractionDTO> chats = new ArrayList<>(entry.getCount());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(member.array())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    chats.add(Json.mapper().readValue(line, ChatInteractionDTO.class));
+                }
+            }
+        } catch (ZipException | EOFException e) {
+            log.warn("Skipping damaged archive member at offset {} of {}: {}", entry.getOffset(), dataFile, e.getMessage());
+            return Collections.emptyList();
+        }
+        return chats;
+    }
+
+    /**
+     * Tells whether an index file ends in a line cut short by a crash, which the next
+     * line must not be appended to.
+     *
+     * @param channel the open index file
+     * @return true if the file is not empty and does not end with a newline
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean endsTorn(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) != '\n';
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Index line of one batch appended to an archive segment: where its gzip member lies in
+ * the data file and which ids and submission times it covers.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class SegmentIndexEntry {
+
+    private long offset;
+    private int length;
+    private int count;
+    private long minId;
+    private long maxId;
+    private long firstSubmittedAt;
+    private long lastSubmittedAt;
+}
@@ -0,0 +1,135 @@
+package cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory cache bounded by entry count and time to live. When full, the least
+ * recently used entry is evicted; expired entries are dropped on access. The time to
+ * live counts from when an entry was written, or from when it was last read if the
+ * cache expires entries after access.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final boolean expireAfterAccess;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Creates a cache whose entries expire a fixed time after they are written.
+     *
+     * @param maxEntries the maximum number of entries kept
+     * @param ttlNanos how long an entry stays valid after it is written, in nanoseconds
+     */
+    public LruTtlCache(int maxEntries, long ttlNanos) {
+        this(maxEntries, ttlNanos, false);
+    }
+
+    /**
+     * Creates a cache with the given bounds.
+     *
+     * @param maxEntries the maximum number of entries kept
+     * @param ttlNanos how long an entry stays valid, in nanoseconds
+     * @param expireAfterAccess whether the time to live restarts on every read, so only
+     *                          idle entries expire
+     */
+    public LruTtlCache(int maxEntries, long ttlNanos, boolean expireAfterAccess) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.expireAfterAccess = expireAfterAccess;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > LruTtlCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for a key and marks it as recently used.
+     *
+     * @param key the key to look up
+     * @return the value, or null if absent or expired
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            long now = System.nanoTime();
+            if (now - entry.touchedAt > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            if (expireAfterAccess) {
+                entry.touchedAt = now;
+            }
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entry if the cache is full.
+     *
+     * @param key the key to store the value under
+     * @param value the value to store
+     */
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @param key the key to remove
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held, including expired entries that have
+     * not been accessed since they expired.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private long touchedAt;
+
+        private Entry(V value, long touchedAt) {
+            this.value = value;
+            this.touchedAt = touchedAt;
+        }
+    }
+}
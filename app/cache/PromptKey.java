@@ -0,0 +1,67 @@
+package cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Normalized identity of a prompt: the role, the message and the model it is sent to.
+ * Prompts that differ only in case or whitespace share the same key.
+ */
+@Getter
+@EqualsAndHashCode
+public final class PromptKey {
+
+    private final String chatRole;
+    private final String message;
+    private final String model;
+
+    private PromptKey(String chatRole, String message, String model) {
+        this.chatRole = chatRole;
+        this.message = message;
+        this.model = model;
+    }
+
+    /**
+     * Creates the normalized key of a prompt.
+     *
+     * @param chatRole the role of the message
+     * @param message the message text
+     * @param model the model the prompt is sent to
+     * @return the normalized key
+     */
+    public static PromptKey of(String chatRole, String message, String model) {
+        return new PromptKey(normalize(chatRole), normalize(message), model);
+    }
+
+    /**
+     * Returns a stable SHA-256 digest of this key, suitable as a database key.
+     *
+     * @return the hex-encoded digest
+     */
+    public String digest() {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest((chatRole + '\u0000' + message + '\u0000' + model)
+                    .getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,71 @@
+package cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: while a call for a key is in flight,
+ * later callers share its result instead of starting their own. The bookkeeping map
+ * is a ConcurrentHashMap, so lookups are lock-free and registrations only contend
+ * on the same hash bin.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Runs the call for a key, or joins the call already in flight for it.
+     *
+     * @param key the key identifying equivalent calls
+     * @param call starts the call when none is in flight
+     * @return a CompletionStage containing the shared result
+     */
+    public CompletionStage<V> execute(K key, Supplier<CompletionStage<V>> call) {
+        CompletableFuture<V> leader = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.minimalCompletionStage();
+        }
+
+        try {
+            call.get().whenComplete((result, error) -> {
+                inFlight.remove(key, leader);
+                if (error != null) {
+                    leader.completeExceptionally(error);
+                } else {
+                    leader.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(e);
+        }
+        return leader.minimalCompletionStage();
+    }
+
+    /**
+     * Returns the number of calls that joined a call already in flight.
+     *
+     * @return the coalesced call count
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of distinct calls currently in flight.
+     *
+     * @return the in-flight call count
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
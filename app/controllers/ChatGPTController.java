@@ -1,17 +1,38 @@
 package controllers;
 
+import akka.japi.pf.PFBuilder;
+import akka.util.ByteString;
+import akka.stream.javadsl.Source;
+import dao.ChatHistoryCursor;
+import dtos.ChatBatchRequestDTO;
+import dtos.ChatJobStatusDTO;
 import dtos.ChatRequestDTO;
+import filters.RateLimitFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
+import models.ChatStatus;
 import play.data.Form;
 import play.data.FormFactory;
+import play.libs.EventSource;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.libs.Json;
+import resilience.AdmissionControl;
+import resilience.HistoryStreamLimiter;
+import services.ChatBatchException;
 import services.ChatGPTService;
+import services.ChatSearchService;
 
 import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -21,34 +42,74 @@ import java.util.concurrent.CompletionStage;
 @Slf4j
 public class ChatGPTController extends Controller {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int DEFAULT_SEARCH_RESULTS = 10;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    private static final int ASYNC_RETRY_AFTER_SECONDS = 5;
+    private static final int HISTORY_STREAM_RETRY_AFTER_SECONDS = 5;
+    private static final int SEARCH_RETRY_AFTER_SECONDS = 10;
+
     private final ChatGPTService chatGPTService;
+    private final ChatSearchService chatSearchService;
     private final FormFactory formFactory;
+    private final AdmissionControl admissionControl;
+    private final HistoryStreamLimiter historyStreamLimiter;
+    private final LatencyHistogram formBindingLatency;
+    private final LatencyHistogram jsonSerializationLatency;
+    private final Duration maxResultWait;
+    private final Duration eventResultWait;
+    private final Duration heartbeatInterval;
 
 
     /**
-     * Constructs a ChatGPTController with the given ChatGPTService and FormFactory.
+     * Constructs a ChatGPTController with the given services, FormFactory, MetricsRegistry
+     * and configuration.
      *
      * @param chatGPTService the service for chat operations
+     * @param chatSearchService the service for searching chat history
      * @param formFactory the factory for form instances
+     * @param admissionControl the rate limits charged for each prompt of a batch
+     * @param historyStreamLimiter the limit on concurrent history streams
+     * @param metrics the registry recording stage latencies
+     * @param config the configuration object containing the async result settings
      */
     @Inject
-    public ChatGPTController(ChatGPTService chatGPTService, FormFactory formFactory) {
+    public ChatGPTController(ChatGPTService chatGPTService, ChatSearchService chatSearchService,
+                             FormFactory formFactory, AdmissionControl admissionControl,
+                             HistoryStreamLimiter historyStreamLimiter, MetricsRegistry metrics, Config config) {
         this.chatGPTService = chatGPTService;
+        this.chatSearchService = chatSearchService;
         this.formFactory = formFactory;
+        this.admissionControl = admissionControl;
+        this.historyStreamLimiter = historyStreamLimiter;
+        this.formBindingLatency = metrics.stage(Stage.FORM_BINDING);
+        this.jsonSerializationLatency = metrics.stage(Stage.JSON_SERIALIZATION);
+        Config asyncConfig = config.getConfig("chat.async");
+        this.maxResultWait = asyncConfig.getDuration("maxWait");
+        this.eventResultWait = asyncConfig.getDuration("eventWait");
+        this.heartbeatInterval = asyncConfig.getDuration("heartbeatInterval");
     }
 
     /**
      * Adds a chat message from the request, linked to a username.
+     * With the 'async' query parameter set to true, the message is saved with a pending
+     * response and answered in the background; its result is fetched from getChatResult
+     * or streamChatResult.
      *
      * @param request the HTTP request containing the chat message
      * @return a CompletionStage with the operation result:
-     *         - success with added chat data, or
+     *         - success with added chat data,
+     *         - accepted with the id of the pending chat data in async mode,
+     *         - service unavailable if too many async messages are pending, or
      *         - bad request with validation errors.
      */
     public CompletionStage<Result> addChat(Http.Request request) {
         log.info("Received request to add chat message.");
 
-        Form<ChatRequestDTO> form = formFactory.form(ChatRequestDTO.class).bindFromRequest(request);
+        Form<ChatRequestDTO> form = bindChatRequest(request);
 
         if (form.hasErrors()) {
             log.warn("Chat message form contains errors: {}", form.errorsAsJson());
@@ -63,20 +124,214 @@ public class ChatGPTController extends Controller {
         }
 
         ChatRequestDTO dto = form.get();
+        applyCacheControl(request, dto);
+
+        if (request.queryString("async").map(Boolean::parseBoolean).orElse(false)) {
+            return chatGPTService.submitChat(dto, username)
+                    .thenApplyAsync(pending -> pending
+                            .map(chatDTO -> status(ACCEPTED, toJson(ChatJobStatusDTO.of(chatDTO, ChatStatus.PENDING))))
+                            .orElseGet(() -> status(SERVICE_UNAVAILABLE, "Too many chat messages are waiting for a response, please retry later.")
+                                    .withHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(ASYNC_RETRY_AFTER_SECONDS))));
+        }
 
         return chatGPTService.addChat(dto, username)
                 .thenApplyAsync(chatDTO -> {
                     log.info("Successfully added chat message for user: {}", username);
-                    return ok(Json.toJson(chatDTO));
+                    return ok(toJson(chatDTO));
                 });
     }
 
     /**
-     * Retrieves all chat interactions for the specified user.
+     * Retrieves the status of a chat message submitted in async mode. While its response
+     * is pending, the request is held for up to 'wait' seconds so clients can long-poll.
+     *
+     * @param request The HTTP request containing the 'username' and 'id' and optional 'wait' query parameters.
+     * @return A CompletionStage containing the status and chat interaction in JSON format, not found
+     *         if the user has no such chat interaction, or a bad request if the parameters are invalid.
+     */
+    public CompletionStage<Result> getChatResult(Http.Request request) {
+        String username = request.queryString("username").orElse(null);
+        String idParam = request.queryString("id").orElse(null);
+
+        if (username == null || username.trim().isEmpty() || idParam == null) {
+            log.warn("Username or id is missing in the request.");
+            return CompletableFuture.completedFuture(badRequest("Username and id are required"));
+        }
+
+        long id;
+        long waitSeconds;
+        try {
+            id = Long.parseLong(idParam);
+            waitSeconds = request.queryString("wait").map(Long::parseLong).orElse(0L);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid chat id or wait for user: {}", username);
+            return CompletableFuture.completedFuture(badRequest("Invalid id or wait"));
+        }
+        if (waitSeconds < 0 || waitSeconds > maxResultWait.getSeconds()) {
+            return CompletableFuture.completedFuture(badRequest("Wait must be between 0 and " + maxResultWait.getSeconds()));
+        }
+
+        return chatGPTService.getChatResult(username, id, Duration.ofSeconds(waitSeconds))
+                .thenApplyAsync(result -> result
+                        .map(status -> ok(toJson(status)))
+                        .orElseGet(() -> {
+                            log.warn("Chat message {} not found for user: {}", id, username);
+                            return notFound("Chat message not found");
+                        }));
+    }
+
+    /**
+     * Streams the status of a chat message submitted in async mode as Server-Sent Events.
+     * Heartbeat events keep the connection open until a single "result" event carries the
+     * completed chat interaction, or its still pending status once the event wait runs out.
+     *
+     * @param request The HTTP request containing the 'username' and 'id' query parameters.
+     * @return a chunked event stream ending with a "result" or "notFound" event, or a bad
+     *         request if the parameters are invalid.
+     */
+    public Result streamChatResult(Http.Request request) {
+        String username = request.queryString("username").orElse(null);
+        String idParam = request.queryString("id").orElse(null);
+
+        if (username == null || username.trim().isEmpty() || idParam == null) {
+            log.warn("Username or id is missing in the request.");
+            return badRequest("Username and id are required");
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(idParam);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid chat id {} for user: {}", idParam, username);
+            return badRequest("Invalid id");
+        }
+
+        Source<ByteString, ?> events = Source.completionStage(chatGPTService.getChatResult(username, id, eventResultWait))
+                .map(result -> result
+                        .map(status -> EventSource.Event.event(toJson(status)).withName("result"))
+                        .orElseGet(() -> EventSource.Event.event(Json.newObject().put("id", id)).withName("notFound")))
+                .keepAlive(heartbeatInterval, () -> EventSource.Event.event(Json.newObject()).withName("heartbeat"))
+                .via(EventSource.flow());
+
+        return ok().chunked(events).as(Http.MimeTypes.EVENT_STREAM);
+    }
+
+    /**
+     * Answers a batch of chat messages from the request, linked to a username. The body
+     * holds the prompts in order and a mode: "partial" reports failed prompts in place of
+     * their results, while "failFast" rejects the whole batch at the first failed prompt.
+     * Each prompt is charged against the rate limits, as if sent on its own; an invalid
+     * batch is charged once.
+     *
+     * @param request the HTTP request containing the chat messages
+     * @return a CompletionStage with the operation result:
+     *         - success with one result per prompt, in prompt order,
+     *         - bad gateway with the index of the failed prompt in fail-fast mode,
+     *         - too many requests if the prompts exceed the rate limits, or
+     *         - bad request with validation errors.
+     */
+    public CompletionStage<Result> addChatBatch(Http.Request request) {
+        log.info("Received request to add a batch of chat messages.");
+
+        Form<ChatBatchRequestDTO> form = bindForm(ChatBatchRequestDTO.class, request);
+        String username = request.queryString("username").orElse(null);
+        int prompts = form.hasErrors() || form.get().getPrompts() == null ? 1 : form.get().getPrompts().size();
+
+        Optional<Duration> retryAfter = admissionControl.admit(username, request.remoteAddress(), prompts);
+        if (retryAfter.isPresent()) {
+            log.warn("Rate limit exceeded by a batch of {} chat messages for user: {} from {}",
+                    prompts, username, request.remoteAddress());
+            return CompletableFuture.completedFuture(RateLimitFilter.tooManyRequests(retryAfter.get()));
+        }
+
+        if (form.hasErrors()) {
+            log.warn("Chat batch form contains errors: {}", form.errorsAsJson());
+            return CompletableFuture.completedFuture(badRequest(form.errorsAsJson()));
+        }
+
+        if (username == null) {
+            log.warn("Username is missing from the request.");
+        }
+
+        ChatBatchRequestDTO dto = form.get();
+        dto.getPrompts().forEach(prompt -> applyCacheControl(request, prompt));
+
+        return chatGPTService.addChats(dto.getPrompts(), username, dto.isFailFast())
+                .handleAsync((batch, error) -> {
+                    if (error == null) {
+                        log.info("Answered {} of {} batched chat messages for user: {}",
+                                batch.getSucceeded(), dto.getPrompts().size(), username);
+                        return ok(toJson(batch));
+                    }
+                    Throwable cause = error;
+                    while (cause instanceof CompletionException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    if (cause instanceof ChatBatchException) {
+                        int index = ((ChatBatchException) cause).getIndex();
+                        log.warn("Chat batch for user {} failed at prompt {}.", username, index);
+                        return status(BAD_GATEWAY, Json.newObject()
+                                .put("failedIndex", index)
+                                .put("error", cause.getCause() != null ? cause.getCause().getMessage() : cause.getMessage()));
+                    }
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                });
+    }
+
+    /**
+     * Streams the response to a chat message from the request as Server-Sent Events,
+     * emitting each generated delta as soon as it arrives.
+     *
+     * @param request the HTTP request containing the chat message
+     * @return a chunked event stream of response deltas terminated by a "done" event, or by
+     *         an "error" event if the response failed part way, or bad request with
+     *         validation errors.
+     */
+    public Result streamChat(Http.Request request) {
+        log.info("Received request to stream chat message.");
+
+        Form<ChatRequestDTO> form = bindChatRequest(request);
+
+        if (form.hasErrors()) {
+            log.warn("Chat message form contains errors: {}", form.errorsAsJson());
+            return badRequest(form.errorsAsJson());
+        }
+
+        String username = request.queryString("username").orElse(null);
+        if (username == null) {
+            log.warn("Username is missing from the request.");
+        } else {
+            log.info("Streaming chat message for user: {}", username);
+        }
+
+        ChatRequestDTO dto = form.get();
+        applyCacheControl(request, dto);
+
+        Source<ByteString, ?> events = chatGPTService.streamChat(dto, username)
+                .map(delta -> EventSource.Event.event(Json.newObject().put("delta", delta)))
+                .concat(Source.single(EventSource.Event.event(Json.newObject()).withName("done")))
+                .recover(new PFBuilder<Throwable, EventSource.Event>()
+                        .matchAny(e -> {
+                            log.error("Streamed chat message for user {} failed: {}", username, e.getMessage());
+                            return EventSource.Event.event(Json.newObject().put("error", "Failed to generate a response"))
+                                    .withName("error");
+                        })
+                        .build())
+                .via(EventSource.flow());
+
+        return ok().chunked(events).as(Http.MimeTypes.EVENT_STREAM);
+    }
+
+    /**
+     * Retrieves chat interactions for the specified user. When a 'limit' or 'cursor' query
+     * parameter is present, a single page is returned newest first together with the
+     * cursor of the next, older page; otherwise the whole history is streamed as a
+     * chunked JSON array, oldest first.
      *
-     * @param request The HTTP request containing the 'username' query parameter.
-     * @return A CompletionStage containing the Result, either the list of chat interactions
-     *         in JSON format or a bad request if the username is not provided.
+     * @param request The HTTP request containing the 'username' and optional 'limit' and 'cursor' query parameters.
+     * @return A CompletionStage containing the Result, either the chat interactions
+     *         in JSON format, a bad request if the parameters are invalid, or service
+     *         unavailable if too many histories are being streamed already.
      */
     public CompletionStage<Result> getChatsByUser(Http.Request request) {
         log.info("Received request to get chat history for user.");
@@ -88,12 +343,220 @@ public class ChatGPTController extends Controller {
             return CompletableFuture.completedFuture(badRequest("Username is required"));
         }
 
-        log.info("Fetching chat history for user: {}", username);
+        String limitParam = request.queryString("limit").orElse(null);
+        String cursorParam = request.queryString("cursor").orElse(null);
+
+        if (limitParam != null || cursorParam != null) {
+            return getChatPageByUser(username, limitParam, cursorParam);
+        }
+
+        // The slot is claimed before any byte is sent, so a rejected request gets a clean
+        // 503 instead of a truncated JSON array; it is released when the stream terminates.
+        if (!historyStreamLimiter.tryAcquire()) {
+            log.warn("Rejected chat history stream for user {}: too many streams are open", username);
+            return CompletableFuture.completedFuture(
+                    status(SERVICE_UNAVAILABLE, "Too many chat histories are being streamed, please retry later.")
+                            .withHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(HISTORY_STREAM_RETRY_AFTER_SECONDS)));
+        }
+
+        log.info("Streaming chat history for user: {}", username);
+
+        Source<ByteString, ?> history;
+        try {
+            history = chatGPTService.streamAllChatsJson(username);
+        } catch (RuntimeException e) {
+            historyStreamLimiter.release();
+            throw e;
+        }
+        history = history
+                .watchTermination((mat, done) -> {
+                    done.whenComplete((ignored, error) -> {
+                        historyStreamLimiter.release();
+                        if (error != null) {
+                            log.error("Chat history stream for user {} failed: {}", username, error.getMessage());
+                        } else {
+                            log.info("Successfully streamed chat history for user: {}", username);
+                        }
+                    });
+                    return mat;
+                });
+
+        return CompletableFuture.completedFuture(ok().chunked(history).as(Http.MimeTypes.JSON));
+    }
+
+    /**
+     * Retrieves the complete response of one chat interaction of the specified user, for
+     * history entries whose response was truncated to a preview.
+     *
+     * @param request The HTTP request containing the 'username' and 'id' query parameters.
+     * @return A CompletionStage containing the id and full response in JSON format, not found
+     *         if the user has no such chat interaction, or a bad request if the parameters are invalid.
+     */
+    public CompletionStage<Result> getFullResponse(Http.Request request) {
+        String username = request.queryString("username").orElse(null);
+        String idParam = request.queryString("id").orElse(null);
+
+        if (username == null || username.trim().isEmpty() || idParam == null) {
+            log.warn("Username or id is missing in the request.");
+            return CompletableFuture.completedFuture(badRequest("Username and id are required"));
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(idParam);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid chat id {} for user: {}", idParam, username);
+            return CompletableFuture.completedFuture(badRequest("Invalid id"));
+        }
+
+        return chatGPTService.getFullResponse(username, id)
+                .thenApplyAsync(response -> response
+                        .map(text -> ok(Json.newObject().put("id", id).put("response", text)))
+                        .orElseGet(() -> {
+                            log.warn("Chat message {} not found for user: {}", id, username);
+                            return notFound("Chat message not found");
+                        }));
+    }
+
+    /**
+     * Searches the chat history of the specified user for messages and responses matching
+     * the query, best match first.
+     *
+     * @param request The HTTP request containing the 'username' and 'q' and optional 'limit' query parameters.
+     * @return A CompletionStage containing the matching chat interactions with their scores in
+     *         JSON format, a bad request if the parameters are invalid, or 503 while the
+     *         search index is still being built.
+     */
+    public CompletionStage<Result> searchChats(Http.Request request) {
+        String username = request.queryString("username").orElse(null);
+        String query = request.queryString("q").orElse(null);
+
+        if (username == null || username.trim().isEmpty() || query == null || query.trim().isEmpty()) {
+            log.warn("Username or search query is missing in the request.");
+            return CompletableFuture.completedFuture(badRequest("Username and q are required"));
+        }
+
+        int limit;
+        try {
+            limit = request.queryString("limit").map(Integer::parseInt).orElse(DEFAULT_SEARCH_RESULTS);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid search limit for user: {}", username);
+            return CompletableFuture.completedFuture(badRequest("Invalid limit"));
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            return CompletableFuture.completedFuture(badRequest("Limit must be between 1 and " + MAX_SEARCH_RESULTS));
+        }
 
-        return chatGPTService.getAllChatsByUsername(username)
-                .thenApplyAsync(chatInteractions -> {
-                    log.info("Successfully retrieved chat history for user: {}", username);
-                    return ok(Json.toJson(chatInteractions.stream().toList()));
+        if (!chatSearchService.isReady()) {
+            log.warn("Rejected search for user {}: the search index is still being built", username);
+            return CompletableFuture.completedFuture(
+                    status(SERVICE_UNAVAILABLE, "The search index is still being built, please retry later.")
+                            .withHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(SEARCH_RETRY_AFTER_SECONDS)));
+        }
+
+        log.info("Searching chat history for user: {}", username);
+
+        return chatSearchService.search(username, query, limit)
+                .thenApplyAsync(hits -> {
+                    log.info("Search for user {} returned {} results.", username, hits.size());
+                    return ok(toJson(hits));
                 });
     }
+
+    /**
+     * Retrieves a single page of chat interactions for the specified user.
+     *
+     * @param username the username whose history is requested
+     * @param limitParam the requested page size, or null for the default
+     * @param cursorParam the opaque cursor of the page to continue from, or null for the newest page
+     * @return A CompletionStage containing the page in JSON format, or a bad request if the
+     *         limit or cursor is invalid.
+     */
+    private CompletionStage<Result> getChatPageByUser(String username, String limitParam, String cursorParam) {
+        int limit;
+        ChatHistoryCursor before;
+        try {
+            limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            before = cursorParam == null || cursorParam.isEmpty() ? null : ChatHistoryCursor.decode(cursorParam);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid paging parameters for user {}: {}", username, e.getMessage());
+            return CompletableFuture.completedFuture(badRequest("Invalid limit or cursor"));
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            log.warn("Page size {} is out of range for user: {}", limit, username);
+            return CompletableFuture.completedFuture(badRequest("Limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+
+        log.info("Fetching a page of chat history for user: {}", username);
+
+        if (before == null) {
+            return chatGPTService.getRecentChatsJson(username, limit)
+                    .thenApplyAsync(json -> {
+                        log.info("Successfully retrieved the newest chat history page for user: {}", username);
+                        return ok(json).as(Http.MimeTypes.JSON);
+                    });
+        }
+
+        return chatGPTService.getChatsByUsername(username, before, limit)
+                .thenApplyAsync(page -> {
+                    log.info("Successfully retrieved a page of chat history for user: {}", username);
+                    return ok(toJson(page));
+                });
+    }
+
+    /**
+     * Binds and validates the chat request form, recording the binding latency.
+     *
+     * @param request the HTTP request containing the chat message
+     * @return the bound form
+     */
+    private Form<ChatRequestDTO> bindChatRequest(Http.Request request) {
+        return bindForm(ChatRequestDTO.class, request);
+    }
+
+    /**
+     * Binds and validates a form of the given type, recording the binding latency.
+     *
+     * @param type the class of the form
+     * @param request the HTTP request containing the form data
+     * @param <T> the type of the form
+     * @return the bound form
+     */
+    private <T> Form<T> bindForm(Class<T> type, Http.Request request) {
+        long start = System.nanoTime();
+        try {
+            return formFactory.form(type).bindFromRequest(request);
+        } finally {
+            formBindingLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * Converts a response body to JSON, recording the serialization latency.
+     *
+     * @param value the object to convert
+     * @return the JSON tree of the object
+     */
+    private JsonNode toJson(Object value) {
+        long start = System.nanoTime();
+        try {
+            return Json.toJson(value);
+        } finally {
+            jsonSerializationLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * Marks the chat request as bypassing the completion cache when the client sends
+     * "Cache-Control: no-cache".
+     *
+     * @param request the HTTP request
+     * @param dto the bound chat request
+     */
+    private void applyCacheControl(Http.Request request, ChatRequestDTO dto) {
+        request.header(Http.HeaderNames.CACHE_CONTROL)
+                .filter(value -> value.toLowerCase().contains("no-cache"))
+                .ifPresent(value -> dto.setBypassCache(true));
+    }
 }
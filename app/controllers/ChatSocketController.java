@@ -0,0 +1,219 @@
+package controllers;
+
+import akka.NotUsed;
+import akka.japi.pf.PFBuilder;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+import dtos.ChatRequestDTO;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatRole;
+import play.libs.F;
+import play.libs.Json;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.WebSocket;
+import resilience.AdmissionControl;
+import resilience.ConnectionLimiter;
+import services.ChatGPTService;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * ChatSocketController serves a persistent WebSocket chat channel. Each connection is an
+ * Akka Streams flow: JSON prompts tagged with a client-chosen id go in, and the response
+ * deltas of every prompt come out tagged with the same id, so several prompts can be
+ * answered at once over one connection.
+ *
+ * <p>Frames sent by the client: {"id": "...", "chatRole": "user", "message": "...", "bypassCache": false}.
+ * Frames sent by the server: "delta" frames carrying part of a response, one "done" or
+ * "error" frame per prompt, and periodic "heartbeat" frames.
+ */
+@Slf4j
+public class ChatSocketController extends Controller {
+
+    private final ChatGPTService chatGPTService;
+    private final ConnectionLimiter connectionLimiter;
+    private final AdmissionControl admissionControl;
+    private final int maxInFlightPerConnection;
+    private final Duration heartbeatInterval;
+    private final Duration idleTimeout;
+
+    /**
+     * Constructs a ChatSocketController with the given services and configuration.
+     *
+     * @param chatGPTService the service streaming chat responses
+     * @param connectionLimiter the limit on open WebSocket connections
+     * @param admissionControl the rate limits charged for each prompt
+     * @param config the configuration object containing the WebSocket settings
+     */
+    @Inject
+    public ChatSocketController(ChatGPTService chatGPTService, ConnectionLimiter connectionLimiter,
+                                AdmissionControl admissionControl, Config config) {
+        this.chatGPTService = chatGPTService;
+        this.connectionLimiter = connectionLimiter;
+        this.admissionControl = admissionControl;
+        Config socketConfig = config.getConfig("chat.ws");
+        this.maxInFlightPerConnection = socketConfig.getInt("maxInFlightPerConnection");
+        this.heartbeatInterval = socketConfig.getDuration("heartbeatInterval");
+        this.idleTimeout = socketConfig.getDuration("idleTimeout");
+    }
+
+    /**
+     * Opens a chat channel for the user named by the 'username' query parameter.
+     *
+     * @return a WebSocket exchanging JSON frames, or a rejection with bad request if the
+     *         username is missing, forbidden for cross-origin requests, or service
+     *         unavailable when the connection limits are reached
+     */
+    public WebSocket socket() {
+        return WebSocket.Json.acceptOrResult(request -> {
+            String username = request.queryString("username").orElse(null);
+            if (username == null || username.trim().isEmpty()) {
+                log.warn("Username is missing from the WebSocket request.");
+                return reject(badRequest("Username is required"));
+            }
+            if (!isSameOrigin(request)) {
+                log.warn("Rejected cross-origin WebSocket request for user: {}", username);
+                return reject(forbidden("Cross-origin WebSocket requests are not allowed"));
+            }
+            if (!connectionLimiter.hasCapacity(username)) {
+                log.warn("WebSocket connection limit reached, rejecting user: {}", username);
+                return reject(status(SERVICE_UNAVAILABLE, "Too many open chat connections"));
+            }
+
+            return CompletableFuture.completedFuture(F.Either.Right(chatFlow(username, request.remoteAddress())));
+        });
+    }
+
+    /**
+     * Builds the flow of one connection. The connection slot is claimed only once the
+     * flow is materialized, that is once the handshake has succeeded, and released when
+     * the flow terminates, so a handshake that fails or is aborted holds no slot. If the
+     * limits were reached since the handshake was accepted, the connection is closed
+     * after an "error" frame.
+     *
+     * @param username the username of the connection
+     * @param remoteAddress the client IP of the connection
+     * @return the flow from client frames to server frames
+     */
+    Flow<JsonNode, JsonNode, ?> chatFlow(String username, String remoteAddress) {
+        return Flow.fromMaterializer((materializer, attributes) -> {
+            if (!connectionLimiter.tryAcquire(username)) {
+                log.warn("WebSocket connection limit reached, closing connection of user: {}", username);
+                return Flow.fromSinkAndSource(Sink.<JsonNode>cancelled(),
+                        Source.<JsonNode>single(error("", "Too many open chat connections")));
+            }
+            log.info("Opening chat WebSocket for user: {}", username);
+            return openFlow(username, remoteAddress);
+        });
+    }
+
+    /**
+     * Builds the flow of an admitted connection. At most maxInFlightPerConnection prompts
+     * are answered at once; further prompts wait in the socket, which backpressures the
+     * client. Slow readers backpressure the upstream response streams in the same way.
+     *
+     * @param username the username of the connection
+     * @param remoteAddress the client IP of the connection
+     * @return the flow from client frames to server frames, releasing the connection slot
+     *         when it terminates
+     */
+    private Flow<JsonNode, JsonNode, NotUsed> openFlow(String username, String remoteAddress) {
+        return Flow.<JsonNode>create()
+                .idleTimeout(idleTimeout)
+                .flatMapMerge(maxInFlightPerConnection, frame -> answer(frame, username, remoteAddress))
+                .keepAlive(heartbeatInterval, () -> Json.newObject().put("type", "heartbeat"))
+                .watchTermination((mat, done) -> {
+                    done.whenComplete((ignored, error) -> {
+                        connectionLimiter.release(username);
+                        if (error != null) {
+                            log.info("Chat WebSocket for user {} closed: {}", username, error.getMessage());
+                        } else {
+                            log.info("Chat WebSocket for user {} closed.", username);
+                        }
+                    });
+                    return mat;
+                });
+    }
+
+    /**
+     * Answers one prompt frame with its stream of response frames.
+     *
+     * @param frame the prompt frame sent by the client
+     * @param username the username of the connection
+     * @param remoteAddress the client IP of the connection
+     * @return the delta frames of the response followed by a "done" frame, or a single
+     *         "error" frame
+     */
+    private Source<JsonNode, NotUsed> answer(JsonNode frame, String username, String remoteAddress) {
+        String id = frame.path("id").asText("");
+        String message = frame.path("message").asText("");
+        String chatRole = frame.path("chatRole").asText("");
+
+        if (id.isEmpty() || message.trim().isEmpty()) {
+            return Source.<JsonNode>single(error(id, "id and message are required"));
+        }
+        try {
+            ChatRole.fromName(chatRole);
+        } catch (IllegalArgumentException e) {
+            return Source.<JsonNode>single(error(id, "chatRole must be one of system, user, assistant or developer"));
+        }
+
+        Optional<Duration> retryAfter = admissionControl.admit(username, remoteAddress);
+        if (retryAfter.isPresent()) {
+            log.warn("Rate limit exceeded on chat WebSocket for user: {}", username);
+            return Source.<JsonNode>single(error(id, "Too many requests, please slow down.")
+                    .put("retryAfterMillis", retryAfter.get().toMillis()));
+        }
+
+        ChatRequestDTO dto = new ChatRequestDTO(chatRole, message, frame.path("bypassCache").asBoolean(false));
+        return chatGPTService.streamChat(dto, username)
+                .<JsonNode>map(delta -> frame(id, "delta").put("delta", delta))
+                .concat(Source.<JsonNode>single(frame(id, "done")))
+                .recover(new PFBuilder<Throwable, JsonNode>()
+                        .matchAny(e -> {
+                            log.error("Chat WebSocket prompt {} for user {} failed: {}", id, username, e.getMessage());
+                            return error(id, "Failed to generate a response");
+                        })
+                        .build())
+                .mapMaterializedValue(ignored -> NotUsed.getInstance());
+    }
+
+    /**
+     * Checks that a browser request comes from a page of this server, so other sites
+     * cannot open a channel with the user's cookies. Requests without an Origin header
+     * come from non-browser clients and are allowed.
+     *
+     * @param request the WebSocket handshake request
+     * @return true if the request has no Origin header or it matches the Host header
+     */
+    private boolean isSameOrigin(Http.RequestHeader request) {
+        Optional<String> origin = request.header(Http.HeaderNames.ORIGIN);
+        if (origin.isEmpty()) {
+            return true;
+        }
+        String host = origin.get().replaceFirst("^https?://", "");
+        return host.equalsIgnoreCase(request.host());
+    }
+
+    private static CompletionStage<F.Either<Result, Flow<JsonNode, JsonNode, ?>>> reject(Result result) {
+        return CompletableFuture.completedFuture(F.Either.Left(result));
+    }
+
+    private static ObjectNode frame(String id, String type) {
+        return Json.newObject().put("id", id).put("type", type);
+    }
+
+    private static ObjectNode error(String id, String error) {
+        return frame(id, "error").put("error", error);
+    }
+}
@@ -0,0 +1,115 @@
+package controllers;
+
+import akka.stream.javadsl.Compression;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.typesafe.config.Config;
+import dao.ChatExportFilter;
+import export.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+import services.ChatExportService;
+
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+/**
+ * ExportController serves bulk exports of chat interactions to administrators. The
+ * endpoint is disabled unless chat.export.adminToken is set, and requests must send
+ * that token as "Authorization: Bearer &lt;token&gt;".
+ */
+@Slf4j
+public class ExportController extends Controller {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final ChatExportService chatExportService;
+    private final byte[] adminToken;
+
+    /**
+     * Constructs an ExportController with the given service and configuration.
+     *
+     * @param chatExportService the service producing exports
+     * @param config the configuration object containing the admin token
+     */
+    @Inject
+    public ExportController(ChatExportService chatExportService, Config config) {
+        this.chatExportService = chatExportService;
+        this.adminToken = config.getString("chat.export.adminToken").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams all chat interactions, archived ones included, or those selected by the
+     * optional 'username', 'from' and 'to' query parameters. The 'format' query parameter selects
+     * "ndjson" (the default) or "csv". The output is gzip-compressed on the fly when the
+     * client accepts gzip.
+     *
+     * @param request the HTTP request containing the export parameters
+     * @return a chunked export, not found if exports are disabled, unauthorized without the
+     *         admin token, or a bad request if the parameters are invalid
+     */
+    public Result export(Http.Request request) {
+        if (adminToken.length == 0) {
+            return notFound();
+        }
+        if (!isAuthorized(request)) {
+            log.warn("Rejected chat export request from {}", request.remoteAddress());
+            return unauthorized("Admin token required");
+        }
+
+        ExportFormat format;
+        ChatExportFilter filter;
+        try {
+            format = ExportFormat.fromName(request.queryString("format").orElse("ndjson"));
+            filter = ChatExportFilter.parse(request.queryString("username").orElse(null),
+                    request.queryString("from").orElse(null), request.queryString("to").orElse(null));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid chat export request: {}", e.getMessage());
+            return badRequest(e.getMessage());
+        }
+
+        boolean gzip = request.header(Http.HeaderNames.ACCEPT_ENCODING)
+                .map(value -> value.toLowerCase().contains("gzip"))
+                .orElse(false);
+
+        log.info("Exporting chat interactions as {} (user: {}, from: {}, to: {}, gzip: {})",
+                format, filter.getUsername(), filter.getFrom(), filter.getTo(), gzip);
+
+        Source<ByteString, ?> body = chatExportService.export(filter, format)
+                .watchTermination((mat, done) -> {
+                    done.whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            log.error("Chat export failed: {}", error.getMessage());
+                        } else {
+                            log.info("Chat export finished.");
+                        }
+                    });
+                    return mat;
+                });
+
+        String disposition = "attachment; filename=\"chat-interactions." + format.getExtension() + "\"";
+        if (gzip) {
+            return ok().chunked(body.via(Compression.gzip()))
+                    .as(format.getContentType())
+                    .withHeader(Http.HeaderNames.CONTENT_DISPOSITION, disposition)
+                    .withHeader(Http.HeaderNames.CONTENT_ENCODING, "gzip")
+                    .withHeader(Http.HeaderNames.VARY, Http.HeaderNames.ACCEPT_ENCODING);
+        }
+        return ok().chunked(body)
+                .as(format.getContentType())
+                .withHeader(Http.HeaderNames.CONTENT_DISPOSITION, disposition);
+    }
+
+    private boolean isAuthorized(Http.Request request) {
+        Optional<String> authorization = request.header(Http.HeaderNames.AUTHORIZATION);
+        if (authorization.isEmpty() || !authorization.get().startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        byte[] token = authorization.get().substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(token, adminToken);
+    }
+}
@@ -0,0 +1,30 @@
+package controllers;
+
+import play.mvc.Controller;
+import play.mvc.Result;
+import warmup.WarmupService;
+
+import javax.inject.Inject;
+
+/**
+ * HealthController serves the readiness route polled by the load balancer.
+ */
+public class HealthController extends Controller {
+
+    private final WarmupService warmupService;
+
+    @Inject
+    public HealthController(WarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    /**
+     * Reports whether the startup warm-up has finished.
+     *
+     * @return ok with the state of each warm-up step once the node is ready, or service
+     *         unavailable with the same body while it is still warming up
+     */
+    public Result ready() {
+        return status(warmupService.isReady() ? OK : SERVICE_UNAVAILABLE, warmupService.getStatus());
+    }
+}
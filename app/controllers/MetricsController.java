@@ -0,0 +1,184 @@
+package controllers;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import dao.DatabaseExecutionContext;
+import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import metrics.PrometheusTextWriter;
+import play.db.Database;
+import play.mvc.Controller;
+import play.mvc.Result;
+import resilience.AdmissionControl;
+import resilience.ConnectionLimiter;
+import resilience.FairScheduler;
+import resilience.HistoryStreamLimiter;
+import resilience.AimdConcurrencyLimiter;
+import resilience.UpstreamGuard;
+import services.CompletionCache;
+import services.HistoryCache;
+import upstream.UpstreamRouter;
+
+import javax.inject.Inject;
+import java.sql.SQLException;
+
+/**
+ * MetricsController exposes the application metrics in Prometheus text format: the
+ * stage latencies and counters of MetricsRegistry together with the state of the
+ * connection pool, the database executor, the upstream guard, endpoints and scheduler,
+ * the rate limiters and the caches.
+ */
+@Slf4j
+public class MetricsController extends Controller {
+
+    private final MetricsRegistry metrics;
+    private final Database database;
+    private final DatabaseExecutionContext databaseExecutor;
+    private final UpstreamGuard upstreamGuard;
+    private final AdmissionControl admissionControl;
+    private final CompletionCache completionCache;
+    private final HistoryCache historyCache;
+    private final ConnectionLimiter connectionLimiter;
+    private final UpstreamRouter upstreamRouter;
+    private final FairScheduler fairScheduler;
+    private final HistoryStreamLimiter historyStreamLimiter;
+
+    @Inject
+    public MetricsController(MetricsRegistry metrics, Database database, DatabaseExecutionContext databaseExecutor,
+                             UpstreamGuard upstreamGuard, AdmissionControl admissionControl,
+                             CompletionCache completionCache, HistoryCache historyCache,
+                             ConnectionLimiter connectionLimiter, UpstreamRouter upstreamRouter,
+                             FairScheduler fairScheduler, HistoryStreamLimiter historyStreamLimiter) {
+        this.metrics = metrics;
+        this.database = database;
+        this.databaseExecutor = databaseExecutor;
+        this.upstreamGuard = upstreamGuard;
+        this.admissionControl = admissionControl;
+        this.completionCache = completionCache;
+        this.historyCache = historyCache;
+        this.connectionLimiter = connectionLimiter;
+        this.upstreamRouter = upstreamRouter;
+        this.fairScheduler = fairScheduler;
+        this.historyStreamLimiter = historyStreamLimiter;
+    }
+
+    /**
+     * Renders all metrics.
+     *
+     * @return the metrics in Prometheus text format
+     */
+    public Result metrics() {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        metrics.writeTo(writer);
+        writeConnectionPool(writer);
+        writeDatabaseExecutor(writer);
+        writeUpstreamGuard(writer);
+        upstreamRouter.writeTo(writer);
+        writeFairScheduler(writer);
+        writeAdmissionControl(writer);
+        writeCaches(writer);
+        writeWebSockets(writer);
+        writeHistoryStreams(writer);
+        return ok(writer.toString()).as(PrometheusTextWriter.CONTENT_TYPE);
+    }
+
+    private void writeConnectionPool(PrometheusTextWriter writer) {
+        HikariPoolMXBean pool = hikariPool();
+        if (pool == null) {
+            return;
+        }
+        writer.gauge("chat_db_pool_connections_active", "Connections in use.", pool.getActiveConnections())
+                .gauge("chat_db_pool_connections_idle", "Idle connections.", pool.getIdleConnections())
+                .gauge("chat_db_pool_connections_total", "Open connections.", pool.getTotalConnections())
+                .gauge("chat_db_pool_threads_awaiting", "Threads waiting for a connection.",
+                        pool.getThreadsAwaitingConnection());
+    }
+
+    private void writeDatabaseExecutor(PrometheusTextWriter writer) {
+        writer.gauge("chat_db_executor_queued", "Database tasks waiting for a thread or connection permit.", databaseExecutor.getQueuedCount())
+                .gauge("chat_db_executor_active", "Database tasks running.", databaseExecutor.getActiveCount())
+                .gauge("chat_db_executor_max_queued", "Database task queue bound.", databaseExecutor.getMaxQueued())
+                .counter("chat_db_executor_submitted_total", "Database tasks submitted.", databaseExecutor.getSubmittedCount())
+                .counter("chat_db_executor_completed_total", "Database tasks completed.", databaseExecutor.getCompletedCount())
+                .counter("chat_db_executor_rejected_total", "Database tasks rejected because the queue was full.",
+                        databaseExecutor.getRejectedCount());
+    }
+
+    private void writeUpstreamGuard(PrometheusTextWriter writer) {
+        AimdConcurrencyLimiter limiter = upstreamGuard.getLimiter();
+        writer.gauge("chat_upstream_concurrency_limit", "Current adaptive limit on concurrent ChatGPT calls.",
+                        limiter.getLimit())
+                .counter("chat_upstream_concurrency_rejected_total", "ChatGPT calls rejected by the concurrency limit.",
+                        limiter.getRejectedCount());
+        writer.family("chat_upstream_circuit_state", "gauge", "Circuit breaker state, 1 for the current state.");
+        for (String state : new String[]{"closed", "open", "half-open"}) {
+            writer.sample("chat_upstream_circuit_state", "state", state,
+                    state.equalsIgnoreCase(upstreamGuard.getCircuitState()) ? 1 : 0);
+        }
+    }
+
+    private void writeFairScheduler(PrometheusTextWriter writer) {
+        writer.gauge("chat_scheduler_queued", "Upstream calls waiting for their turn.", fairScheduler.getQueuedCount())
+                .gauge("chat_scheduler_running", "Upstream calls started by the scheduler and not finished.",
+                        fairScheduler.getRunningCount())
+                .gauge("chat_scheduler_users_waiting", "Users with upstream calls waiting.",
+                        fairScheduler.getWaitingUserCount())
+                .gauge("chat_scheduler_concurrency_limit", "Current limit on upstream calls started at once.",
+                        fairScheduler.getConcurrencyLimit())
+                .counter("chat_scheduler_expired_total", "Upstream calls dropped because they waited past their deadline.",
+                        fairScheduler.getExpiredCount())
+                .counter("chat_scheduler_rejected_total", "Upstream calls rejected because their user had too many waiting.",
+                        fairScheduler.getRejectedCount());
+    }
+
+    private void writeAdmissionControl(PrometheusTextWriter writer) {
+        writer.family("chat_rate_limit_rejected_total", "counter", "Chat requests rejected by the rate limiter.")
+                .sample("chat_rate_limit_rejected_total", "scope", "user",
+                        admissionControl.getUserLimiter().getRejectedCount())
+                .sample("chat_rate_limit_rejected_total", "scope", "ip",
+                        admissionControl.getIpLimiter().getRejectedCount());
+    }
+
+    private void writeCaches(PrometheusTextWriter writer) {
+        writer.family("chat_cache_hits_total", "counter", "Cache lookups answered from the cache.")
+                .sample("chat_cache_hits_total", "cache", "completion", completionCache.getHitCount())
+                .sample("chat_cache_hits_total", "cache", "history", historyCache.getHitCount());
+        writer.family("chat_cache_misses_total", "counter", "Cache lookups that had to load the value.")
+                .sample("chat_cache_misses_total", "cache", "completion", completionCache.getMissCount())
+                .sample("chat_cache_misses_total", "cache", "history", historyCache.getMissCount());
+    }
+
+    private void writeWebSockets(PrometheusTextWriter writer) {
+        writer.gauge("chat_ws_connections_open", "Open chat WebSocket connections.", connectionLimiter.getOpenCount())
+                .gauge("chat_ws_connections_max", "Limit on open chat WebSocket connections.",
+                        connectionLimiter.getMaxConnections())
+                .counter("chat_ws_connections_rejected_total", "Chat WebSocket connections rejected by the limits.",
+                        connectionLimiter.getRejectedCount());
+    }
+
+    private void writeHistoryStreams(PrometheusTextWriter writer) {
+        writer.gauge("chat_history_streams_open", "Chat history streams reading from a database cursor.",
+                        historyStreamLimiter.getOpenCount())
+                .gauge("chat_history_streams_max", "Limit on concurrent chat history streams.",
+                        historyStreamLimiter.getMaxStreams())
+                .counter("chat_history_streams_rejected_total", "Chat history streams rejected by the limit.",
+                        historyStreamLimiter.getRejectedCount());
+    }
+
+    /**
+     * Returns the statistics of the Hikari pool behind the default database, or null if
+     * the pool is not a HikariCP pool or has not started yet.
+     *
+     * @return the pool statistics, or null
+     */
+    private HikariPoolMXBean hikariPool() {
+        try {
+            if (database.getDataSource().isWrapperFor(HikariDataSource.class)) {
+                return database.getDataSource().unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read connection pool statistics: {}", e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package conversation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import models.ChatInteraction;
+
+/**
+ * One prompt and its response, as replayed to the model for conversational context.
+ * The token estimate is computed once when the turn is recorded.
+ */
+@Getter
+@AllArgsConstructor
+public final class ConversationTurn {
+
+    private final Long chatId;
+    private final String chatRole;
+    private final String message;
+    private final String response;
+    private final int estimatedTokens;
+
+    /**
+     * Creates a turn from a saved chat interaction.
+     *
+     * @param chatInteraction the chat interaction
+     * @return the conversation turn
+     */
+    public static ConversationTurn of(ChatInteraction chatInteraction) {
+        return new ConversationTurn(
+                chatInteraction.getId(),
+                chatInteraction.getChatRole(),
+                chatInteraction.getMessage(),
+                chatInteraction.getFullResponse(),
+                TokenEstimator.estimateMessage(chatInteraction.getMessage())
+                        + TokenEstimator.estimateMessage(chatInteraction.getFullResponse()));
+    }
+}
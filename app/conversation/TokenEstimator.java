@@ -0,0 +1,58 @@
+package conversation;
+
+/**
+ * Fast local estimate of how many model tokens a text uses, without a tokenizer. Each
+ * run of letters and digits counts as one token per four characters (at least one),
+ * and every other visible character counts as one token. This is close to BPE counts
+ * for English prose and errs on the high side for code and punctuation.
+ */
+public final class TokenEstimator {
+
+    /** Tokens added per message for the role and message framing. */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimates the token count of a text.
+     *
+     * @param text the text to measure
+     * @return the estimated token count
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                continue;
+            }
+            tokens += wordTokens(wordLength);
+            wordLength = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(wordLength);
+    }
+
+    /**
+     * Estimates the token count of a message including its framing.
+     *
+     * @param text the message content
+     * @return the estimated token count
+     */
+    public static int estimateMessage(String text) {
+        return estimate(text) + MESSAGE_OVERHEAD;
+    }
+
+    private static int wordTokens(int wordLength) {
+        return wordLength == 0 ? 0 : (wordLength + 3) / 4;
+    }
+}
@@ -0,0 +1,75 @@
+package conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring of a user's most recent conversation turns. Adding a turn to a
+ * full ring overwrites the oldest one.
+ */
+public final class TurnRing {
+
+    private final ConversationTurn[] turns;
+    private int next;
+    private int size;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param capacity the number of turns kept
+     */
+    public TurnRing(int capacity) {
+        this.turns = new ConversationTurn[capacity];
+    }
+
+    /**
+     * Records a turn as the most recent one.
+     *
+     * @param turn the turn to record
+     */
+    public synchronized void add(ConversationTurn turn) {
+        turns[next] = turn;
+        next = (next + 1) % turns.length;
+        size = Math.min(size + 1, turns.length);
+    }
+
+    /**
+     * Returns the most recent turns whose combined token estimate fits the budget, oldest
+     * first. Turns are taken newest first and selection stops at the first turn that
+     * does not fit, so the context never has gaps.
+     *
+     * @param tokenBudget the number of tokens available for context
+     * @return the turns to replay, oldest first
+     */
+    public synchronized List<ConversationTurn> recent(int tokenBudget) {
+        int remaining = tokenBudget;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            ConversationTurn turn = turns[Math.floorMod(next - 1 - i, turns.length)];
+            if (turn.getEstimatedTokens() > remaining) {
+                break;
+            }
+            remaining -= turn.getEstimatedTokens();
+            count++;
+        }
+
+        List<ConversationTurn> selected = new ArrayList<>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            selected.add(turns[Math.floorMod(next - 1 - i, turns.length)]);
+        }
+        return selected;
+    }
+
+    /**
+     * Returns every turn in the ring, oldest first.
+     *
+     * @return the turns held
+     */
+    public synchronized List<ConversationTurn> all() {
+        List<ConversationTurn> all = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            all.add(turns[Math.floorMod(next - 1 - i, turns.length)]);
+        }
+        return all;
+    }
+}
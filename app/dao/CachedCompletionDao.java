@@ -0,0 +1,38 @@
+package dao;
+
+import com.google.inject.ImplementedBy;
+import dao.impl.CachedCompletionDaoImpl;
+import models.CachedCompletion;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+@ImplementedBy(CachedCompletionDaoImpl.class)
+public interface CachedCompletionDao {
+
+    /**
+     * Finds a cached completion by the digest of its prompt.
+     *
+     * @param promptHash the digest of the normalized prompt
+     * @return a CompletionStage containing the cached completion, if present
+     */
+    CompletionStage<Optional<CachedCompletion>> findByPromptHash(String promptHash);
+
+    /**
+     * Inserts or replaces a cached completion.
+     *
+     * @param cachedCompletion the cached completion to store
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    CompletionStage<Void> save(CachedCompletion cachedCompletion);
+
+    /**
+     * Deletes up to limit cached completions created before the given time.
+     *
+     * @param createdBefore the creation time before which entries are deleted
+     * @param limit the maximum number of entries to delete
+     * @return a CompletionStage containing the number of entries deleted
+     */
+    CompletionStage<Integer> deleteCreatedBefore(Timestamp createdBefore, int limit);
+}
@@ -0,0 +1,78 @@
+package dao;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.google.inject.ImplementedBy;
+import dao.impl.ChatArchiveImpl;
+import dtos.ChatInteractionDTO;
+import models.ChatInteraction;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cold storage for chat interactions moved out of the chat_interaction table by the
+ * retention job. Methods block on file I/O and are meant to be called from the database
+ * executor or dispatcher, alongside the queries they complement.
+ */
+@ImplementedBy(ChatArchiveImpl.class)
+public interface ChatArchive {
+
+    /**
+     * Appends chat interactions to the archive segments of their users and months.
+     *
+     * @param chatInteractions the chat interactions to archive
+     * @throws java.io.UncheckedIOException if the archive cannot be written
+     */
+    void append(List<ChatInteraction> chatInteractions);
+
+    /**
+     * Checks whether a user has archived chat interactions.
+     *
+     * @param username the username to check
+     * @return true if the user has an archive
+     */
+    boolean hasArchive(String username);
+
+    /**
+     * Reads one page of archived chat interactions of a user, newest first. Only the
+     * segments and batches whose index entries can contain older interactions are read.
+     *
+     * @param username the username for which to read chat interactions
+     * @param before the cursor to continue from, or null to start at the newest archived interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return the archived chat interactions older than the cursor
+     * @throws java.io.UncheckedIOException if the archive cannot be read
+     */
+    List<ChatInteractionDTO> getChatPage(String username, ChatHistoryCursor before, int limit);
+
+    /**
+     * Reads archived chat interactions of a user by id. Only the batches whose indexed id
+     * range contains one of the ids are read.
+     *
+     * @param username the username the chat interactions must belong to
+     * @param ids the ids of the chat interactions
+     * @return the archived chat interactions found, with full responses, in no particular order
+     * @throws java.io.UncheckedIOException if the archive cannot be read
+     */
+    List<ChatInteractionDTO> getChatsByIds(String username, Collection<Long> ids);
+
+    /**
+     * Streams all archived chat interactions of a user, oldest first, one month segment
+     * at a time.
+     *
+     * @param username the username for which to read chat interactions
+     * @return a Source emitting the archived chat interactions of the user
+     */
+    Source<ChatInteractionDTO, NotUsed> streamChats(String username);
+
+    /**
+     * Streams the archived chat interactions selected by a bulk export filter: those of
+     * one user, or of every user one after the other, each user oldest first. Batches
+     * whose indexed time range lies outside the filter are not read.
+     *
+     * @param filter selects the chat interactions to export
+     * @return a Source emitting the selected archived chat interactions, with full responses
+     */
+    Source<ChatInteractionDTO, NotUsed> streamExport(ChatExportFilter filter);
+}
@@ -0,0 +1,56 @@
+package dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Selects the chat interactions of a bulk export: optionally one user, and optionally a
+ * range of submission times, from inclusive to exclusive.
+ */
+@Getter
+@AllArgsConstructor
+public class ChatExportFilter {
+
+    private final String username;
+    private final Timestamp from;
+    private final Timestamp to;
+
+    /**
+     * Builds a filter from request or command-line parameters. Times are ISO-8601
+     * instants such as 2024-03-01T00:00:00Z, or dates such as 2024-03-01 meaning the
+     * start of that day in UTC.
+     *
+     * @param username the username to export, or null or empty for all users
+     * @param from the earliest submission time to export, or null or empty for no bound
+     * @param to the submission time to stop before, or null or empty for no bound
+     * @return the filter
+     * @throws IllegalArgumentException if a time cannot be parsed
+     */
+    public static ChatExportFilter parse(String username, String from, String to) {
+        return new ChatExportFilter(isBlank(username) ? null : username.trim(), parseTime(from), parseTime(to));
+    }
+
+    private static Timestamp parseTime(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return Timestamp.from(LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant());
+            }
+            return Timestamp.from(Instant.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + value, e);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
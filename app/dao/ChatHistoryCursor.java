@@ -0,0 +1,65 @@
+package dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import dtos.ChatInteractionDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Position in a user's chat history, which is ordered newest first by submission
+ * time and then by id. Clients receive it as an opaque URL-safe token.
+ */
+@Getter
+@AllArgsConstructor
+public class ChatHistoryCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final Timestamp submittedAt;
+    private final long id;
+
+    /**
+     * Creates a cursor positioned at the given chat interaction.
+     *
+     * @param chatInteraction the last chat interaction of a page
+     * @return a cursor selecting the interactions older than the given one
+     */
+    public static ChatHistoryCursor of(ChatInteractionDTO chatInteraction) {
+        return new ChatHistoryCursor(chatInteraction.getSubmittedAt(), chatInteraction.getId());
+    }
+
+    /**
+     * Encodes this cursor as an opaque token.
+     *
+     * @return the URL-safe token
+     */
+    public String encode() {
+        String raw = submittedAt.getTime() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static ChatHistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed history cursor");
+            }
+            long submittedAt = Long.parseLong(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new ChatHistoryCursor(new Timestamp(submittedAt), id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed history cursor", e);
+        }
+    }
+}
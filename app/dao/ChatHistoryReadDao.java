@@ -0,0 +1,107 @@
+package dao;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.google.inject.ImplementedBy;
+import dao.impl.ChatHistoryReadDaoImpl;
+import dtos.ChatInteractionDTO;
+import dtos.ChatJobStatusDTO;
+import models.ChatInteraction;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Read-only queries over chat history that select straight into DTOs, without loading
+ * managed entities.
+ */
+@ImplementedBy(ChatHistoryReadDaoImpl.class)
+public interface ChatHistoryReadDao {
+
+    /**
+     * Retrieves one page of chat interactions for a specific username, newest first.
+     *
+     * @param username the username for which to retrieve chat interactions
+     * @param before the cursor to continue from, or null to start at the newest interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the chat interactions older than the cursor
+     */
+    CompletionStage<List<ChatInteractionDTO>> getChatPage(String username, ChatHistoryCursor before, int limit);
+
+    /**
+     * Retrieves chat interactions of a specific username by id, in no particular order.
+     *
+     * @param username the username the chat interactions must belong to
+     * @param ids the ids of the chat interactions
+     * @return a CompletionStage containing the chat interactions found
+     */
+    CompletionStage<List<ChatInteractionDTO>> getChatsByIds(String username, Collection<Long> ids);
+
+    /**
+     * Retrieves the complete response of one chat interaction, including a response whose
+     * list entry only carries a preview.
+     *
+     * @param username the username the chat interaction must belong to
+     * @param id the id of the chat interaction
+     * @return a CompletionStage containing the full response, or empty if the user has no
+     *         chat interaction with that id
+     */
+    CompletionStage<Optional<String>> getFullResponse(String username, long id);
+
+    /**
+     * Retrieves one chat interaction together with its status, for reporting on a chat
+     * message submitted asynchronously.
+     *
+     * @param username the username the chat interaction must belong to
+     * @param id the id of the chat interaction
+     * @return a CompletionStage containing the status, or empty if the user has no chat
+     *         interaction with that id
+     */
+    CompletionStage<Optional<ChatJobStatusDTO>> getChatJob(String username, long id);
+
+    /**
+     * Streams all chat interactions for a specific username, oldest first. Rows are read
+     * from an open cursor as downstream demands them, so the history is never held in
+     * memory as a whole. The cursor keeps a database connection until the stream ends,
+     * so callers must hold a slot of resilience.HistoryStreamLimiter before building the
+     * stream and release it when the stream terminates.
+     *
+     * @param username the username for which to retrieve chat interactions
+     * @return a Source emitting the chat interactions of the user
+     */
+    Source<ChatInteractionDTO, NotUsed> streamChats(String username);
+
+    /**
+     * Streams the chat interactions of every user with an id above the given one, in id
+     * order and with the full response text, for building and catching up in-memory
+     * indexes.
+     *
+     * @param afterId the id after which to start, or 0 for every chat interaction
+     * @return a Source emitting the chat interactions
+     */
+    Source<ChatInteraction, NotUsed> streamInteractions(long afterId);
+
+    /**
+     * Retrieves one page of a bulk export in id order, with full responses. Every page is
+     * its own short read-only transaction, so an export of any size never holds a
+     * transaction or connection between pages.
+     *
+     * @param filter selects the chat interactions to export
+     * @param afterId the id of the last chat interaction already exported, or 0 to start
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the next chat interactions after afterId
+     */
+    CompletionStage<List<ChatInteractionDTO>> getExportPage(ChatExportFilter filter, long afterId, int limit);
+
+    /**
+     * Tells which of the given chat interactions are still in the table, so that a bulk
+     * export does not emit an interaction both from the archive and from the table.
+     *
+     * @param ids the ids of chat interactions
+     * @return a CompletionStage containing the ids found in the table
+     */
+    CompletionStage<Set<Long>> getLiveIds(Collection<Long> ids);
+}
@@ -4,6 +4,7 @@ import com.google.inject.ImplementedBy;
 import dao.impl.ChatInteractionDaoImpl;
 import models.ChatInteraction;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 
@@ -19,10 +20,56 @@ public interface ChatInteractionDao {
     CompletionStage<Void> save(ChatInteraction chatInteraction);
 
     /**
-     * Retrieves all chat interactions for a specific username.
+     * Saves several chat interactions to the database in a single batched transaction.
      *
-     * @param userId the username for which to retrieve chat interactions
-     * @return a CompletionStage containing a list of chat interactions associated with the user
+     * @param chatInteractions the chat interactions to save
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    CompletionStage<Void> saveAll(List<ChatInteraction> chatInteractions);
+
+    /**
+     * Saves a chat interaction whose response is still pending in its own transaction, so
+     * its id is assigned when the returned stage completes. The interaction is not
+     * published to ChatInteractionEvents until its response is set with updateResponse.
+     *
+     * @param chatInteraction the pending chat interaction to save
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    CompletionStage<Void> savePending(ChatInteraction chatInteraction);
+
+    /**
+     * Writes the response of a chat interaction saved with savePending.
+     *
+     * @param chatInteraction the saved chat interaction, with its response set
+     * @return a CompletionStage indicating the completion of the update
+     */
+    CompletionStage<Void> updateResponse(ChatInteraction chatInteraction);
+
+    /**
+     * Marks a chat interaction saved with savePending as failed, if it is still pending.
+     * The interaction is not published to ChatInteractionEvents.
+     *
+     * @param chatInteraction the saved chat interaction whose response could not be written
+     * @return a CompletionStage indicating the completion of the update
+     */
+    CompletionStage<Void> markFailed(ChatInteraction chatInteraction);
+
+    /**
+     * Marks as failed the chat interactions still pending that were submitted before the
+     * given time, whose jobs were lost with the node running them.
+     *
+     * @param submittedBefore the submission time before which pending interactions are stale
+     * @return a CompletionStage containing the number of interactions marked as failed
+     */
+    CompletionStage<Integer> failPendingBefore(Timestamp submittedBefore);
+
+    /**
+     * Retrieves one page of chat interactions for a specific username, newest first.
+     *
+     * @param username the username for which to retrieve chat interactions
+     * @param before the cursor to continue from, or null to start at the newest interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the chat interactions older than the cursor
      */
-    CompletionStage<List<ChatInteraction>> getAllChatsByUsername(String userId);
+    CompletionStage<List<ChatInteraction>> getChatsByUsername(String username, ChatHistoryCursor before, int limit);
 }
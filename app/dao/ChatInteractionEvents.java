@@ -0,0 +1,72 @@
+package dao;
+
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies in-memory views of chat history (caches, indexes, conversation context)
+ * when ChatInteractionDao has saved an interaction, and when ChatRetentionJob has moved
+ * interactions from the table to the archive.
+ */
+@Singleton
+@Slf4j
+public class ChatInteractionEvents {
+
+    private final List<Consumer<ChatInteraction>> savedListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<ChatInteraction>>> archivedListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener called after each chat interaction is saved.
+     *
+     * @param listener the listener; it runs on the thread completing the save and must not block
+     */
+    public void onSaved(Consumer<ChatInteraction> listener) {
+        savedListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener called after each batch of chat interactions is archived.
+     *
+     * @param listener the listener; it runs on the thread completing the batch and must not block
+     */
+    public void onArchived(Consumer<List<ChatInteraction>> listener) {
+        archivedListeners.add(listener);
+    }
+
+    /**
+     * Notifies all listeners that a chat interaction was saved. A failing listener is
+     * logged and does not affect the others.
+     *
+     * @param chatInteraction the saved chat interaction
+     */
+    public void publishSaved(ChatInteraction chatInteraction) {
+        for (Consumer<ChatInteraction> listener : savedListeners) {
+            try {
+                listener.accept(chatInteraction);
+            } catch (RuntimeException e) {
+                log.error("Chat interaction listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Notifies all listeners that chat interactions were archived and deleted from the
+     * table. A failing listener is logged and does not affect the others.
+     *
+     * @param chatInteractions the archived chat interactions
+     */
+    public void publishArchived(List<ChatInteraction> chatInteractions) {
+        for (Consumer<List<ChatInteraction>> listener : archivedListeners) {
+            try {
+                listener.accept(chatInteractions);
+            } catch (RuntimeException e) {
+                log.error("Chat archive listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
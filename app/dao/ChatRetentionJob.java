@@ -0,0 +1,165 @@
+package dao;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+import models.ChatResponseBody;
+import models.JobLock;
+import play.db.jpa.JPAApi;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically moves chat interactions older than the configured age from the
+ * chat_interaction table into ChatArchive, so the hot table and its indexes only hold
+ * recent history. Each batch is appended to the archive and deleted in the same
+ * transaction; if the delete does not commit, the rows are archived again by the next
+ * run and the archive drops the duplicates on read. Once a batch has committed, it is
+ * published to ChatInteractionEvents so the search index drops it.
+ * <p>
+ * Every node may run the job. Each batch first locks the chat-retention row of the
+ * job_lock table for update, so batches from different nodes run one after another and
+ * each selects only rows the previous one left behind.
+ */
+@Singleton
+@Slf4j
+public class ChatRetentionJob {
+
+    private static final String LOCK_NAME = "chat-retention";
+
+    private final JPAApi jpaApi;
+    private final DatabaseExecutionContext executor;
+    private final ChatArchive archive;
+    private final ChatInteractionEvents events;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    @Inject
+    public ChatRetentionJob(JPAApi jpaApi, DatabaseExecutionContext executor, ChatArchive archive,
+                            ChatInteractionEvents events, ActorSystem actorSystem, Config config,
+                            ApplicationLifecycle lifecycle) {
+        this.jpaApi = jpaApi;
+        this.executor = executor;
+        this.archive = archive;
+        this.events = events;
+
+        Config retentionConfig = config.getConfig("chat.retention");
+        this.maxAge = retentionConfig.getDuration("maxAge");
+        this.batchSize = retentionConfig.getInt("batchSize");
+
+        if (!retentionConfig.getBoolean("enabled")) {
+            return;
+        }
+
+        Duration interval = retentionConfig.getDuration("interval");
+        log.info("Archiving chat interactions older than {} every {}, {} rows per batch.", maxAge, interval, batchSize);
+        Cancellable schedule = actorSystem.scheduler().scheduleWithFixedDelay(
+                retentionConfig.getDuration("initialDelay"), interval, this::run, actorSystem.dispatcher());
+        lifecycle.addStopHook(() -> {
+            stopped = true;
+            schedule.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Archives everything past the retention age, unless the previous run is still busy.
+     */
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Previous chat retention run is still in progress.");
+            return;
+        }
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - maxAge.toMillis());
+        long start = System.nanoTime();
+        archiveOlderThan(cutoff, 0).whenComplete((archived, error) -> {
+            running.set(false);
+            if (error != null) {
+                log.error("Chat retention run failed.", error);
+            } else if (archived > 0) {
+                log.info("Archived {} chat interactions submitted before {} in {} ms.",
+                        archived, cutoff, (System.nanoTime() - start) / 1_000_000);
+            }
+        });
+    }
+
+    /**
+     * Archives one batch at a time until no interaction is older than the cutoff or the
+     * application stops.
+     *
+     * @param cutoff the submission time before which interactions are archived
+     * @param archivedSoFar the number of interactions archived by earlier batches
+     * @return a CompletionStage containing the total number of interactions archived
+     */
+    private CompletionStage<Integer> archiveOlderThan(Timestamp cutoff, int archivedSoFar) {
+        if (stopped) {
+            return CompletableFuture.completedFuture(archivedSoFar);
+        }
+        return executor.supplyAsync(() -> archiveBatch(cutoff))
+                .thenCompose(archived -> {
+                    if (archived.isEmpty()) {
+                        return CompletableFuture.completedFuture(archivedSoFar);
+                    }
+                    events.publishArchived(archived);
+                    return archiveOlderThan(cutoff, archivedSoFar + archived.size());
+                });
+    }
+
+    /**
+     * Appends the oldest batch of expired interactions, with their full responses, to the
+     * archive and deletes them and their compressed response bodies from the database.
+     * The job lock is held from the select until the delete commits.
+     *
+     * @param cutoff the submission time before which interactions are archived
+     * @return the interactions archived, empty when none are left
+     */
+    private List<ChatInteraction> archiveBatch(Timestamp cutoff) {
+        return jpaApi.withTransaction(em -> {
+            lock(em);
+            List<ChatInteraction> batch = em.createQuery("SELECT c, b.body FROM ChatInteraction c " +
+                            ChatResponseBody.LEFT_JOIN + "WHERE c.submittedAt < :cutoff ORDER BY c.id", Object[].class)
+                    .setParameter("cutoff", cutoff)
+                    .setMaxResults(batchSize)
+                    .getResultStream()
+                    .map(ChatResponseBody::withBody)
+                    .collect(Collectors.toList());
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            archive.append(batch);
+            em.createQuery("DELETE FROM ChatResponseBody b WHERE b.id IN :ids")
+                    .setParameter("ids", batch.stream().map(ChatInteraction::getId).collect(Collectors.toList()))
+                    .executeUpdate();
+            batch.forEach(em::remove);
+            return batch;
+        });
+    }
+
+    /**
+     * Locks the job's row for the rest of the transaction, waiting for another node that
+     * holds it. A missing row is inserted, which locks it as well.
+     *
+     * @param em the EntityManager of the batch transaction
+     */
+    private static void lock(EntityManager em) {
+        if (em.find(JobLock.class, LOCK_NAME, LockModeType.PESSIMISTIC_WRITE) == null) {
+            em.persist(new JobLock(LOCK_NAME));
+            em.flush();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package dao;
+
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+import models.ChatResponseBody;
+import play.db.jpa.JPAApi;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Moves long responses of rows written before the compact storage format into the
+ * compressed side table, in short id-ordered batches on the database executor. The
+ * schema changes themselves are applied by conf/sql/004_compact_chat_storage.sql. The
+ * migration is idempotent, so it can be left enabled until it reports completion.
+ */
+@Singleton
+@Slf4j
+public class ChatStorageMigration {
+
+    private final JPAApi jpaApi;
+    private final DatabaseExecutionContext executor;
+    private final int batchSize;
+    private volatile boolean stopped;
+
+    @Inject
+    public ChatStorageMigration(JPAApi jpaApi, DatabaseExecutionContext executor, Config config,
+                                ApplicationLifecycle lifecycle) {
+        this.jpaApi = jpaApi;
+        this.executor = executor;
+        this.batchSize = config.getInt("chat.storage.migration.batchSize");
+        lifecycle.addStopHook(() -> {
+            stopped = true;
+            return CompletableFuture.completedFuture(null);
+        });
+
+        if (config.getBoolean("chat.storage.migration.enabled")) {
+            log.info("Compressing long responses stored inline, {} rows per batch.", batchSize);
+            migrateFrom(0L, 0).whenComplete((migrated, error) -> {
+                if (error != null) {
+                    log.error("Chat storage migration failed.", error);
+                } else {
+                    log.info("Chat storage migration finished, {} responses compressed.", migrated);
+                }
+            });
+        }
+    }
+
+    /**
+     * Migrates the rows after the given id, one batch at a time, until none are left or
+     * the application stops.
+     *
+     * @param afterId the id of the last row already migrated
+     * @param migratedSoFar the number of rows migrated by earlier batches
+     * @return a CompletionStage containing the total number of rows migrated
+     */
+    private CompletionStage<Integer> migrateFrom(long afterId, int migratedSoFar) {
+        if (stopped) {
+            return CompletableFuture.completedFuture(migratedSoFar);
+        }
+        return executor.supplyAsync(() -> migrateBatch(afterId))
+                .thenCompose(batch -> batch.isEmpty()
+                        ? CompletableFuture.completedFuture(migratedSoFar)
+                        : migrateFrom(batch.get(batch.size() - 1).getId(), migratedSoFar + batch.size()));
+    }
+
+    /**
+     * Moves the long responses of one batch into the side table. Setting the response
+     * again splits it into the inline preview and the full text, which is persisted as a
+     * ChatResponseBody; both are flushed when the transaction commits.
+     *
+     * @param afterId the id of the last row already migrated
+     * @return the migrated rows, empty when the migration is complete
+     */
+    private List<ChatInteraction> migrateBatch(long afterId) {
+        return jpaApi.withTransaction(em -> {
+            List<ChatInteraction> batch = em.createQuery("SELECT c FROM ChatInteraction c " +
+                            "WHERE c.id > :afterId AND c.responseTruncated = false AND LENGTH(c.response) > :inlineLength " +
+                            "ORDER BY c.id", ChatInteraction.class)
+                    .setParameter("afterId", afterId)
+                    .setParameter("inlineLength", ChatInteraction.INLINE_RESPONSE_LENGTH)
+                    .setMaxResults(batchSize)
+                    .getResultList();
+            for (ChatInteraction chatInteraction : batch) {
+                chatInteraction.setResponse(chatInteraction.getResponse());
+                em.persist(new ChatResponseBody(chatInteraction, chatInteraction.getResponseBody()));
+            }
+            return batch;
+        });
+    }
+}
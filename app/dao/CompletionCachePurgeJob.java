@@ -0,0 +1,93 @@
+package dao;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically deletes expired entries from the persistent tier of the completion cache.
+ * Reads already ignore entries older than the cache TTL, but nothing else removes them,
+ * so without this job the completion_cache table keeps every response ever cached. Rows
+ * are deleted in small batches, each in its own transaction, so the job never holds
+ * many locks at once.
+ */
+@Singleton
+@Slf4j
+public class CompletionCachePurgeJob {
+
+    private final CachedCompletionDao cachedCompletionDao;
+    private final Duration ttl;
+    private final int batchSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    @Inject
+    public CompletionCachePurgeJob(CachedCompletionDao cachedCompletionDao, ActorSystem actorSystem, Config config,
+                                   ApplicationLifecycle lifecycle) {
+        this.cachedCompletionDao = cachedCompletionDao;
+
+        Config cacheConfig = config.getConfig("chat.cache");
+        this.ttl = cacheConfig.getDuration("ttl");
+        this.batchSize = cacheConfig.getInt("purge.batchSize");
+
+        if (!cacheConfig.getBoolean("enabled") || !cacheConfig.getBoolean("persistent")) {
+            return;
+        }
+
+        Duration interval = cacheConfig.getDuration("purge.interval");
+        log.info("Purging cached completions older than {} every {}, {} rows per batch.", ttl, interval, batchSize);
+        Cancellable schedule = actorSystem.scheduler().scheduleWithFixedDelay(
+                interval, interval, this::run, actorSystem.dispatcher());
+        lifecycle.addStopHook(() -> {
+            stopped = true;
+            schedule.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Deletes every expired entry, unless the previous run is still busy.
+     */
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Previous completion cache purge is still in progress.");
+            return;
+        }
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - ttl.toMillis());
+        purgeOlderThan(cutoff, 0).whenComplete((deleted, error) -> {
+            running.set(false);
+            if (error != null) {
+                log.error("Completion cache purge failed.", error);
+            } else if (deleted > 0) {
+                log.info("Purged {} cached completions created before {}.", deleted, cutoff);
+            }
+        });
+    }
+
+    /**
+     * Deletes one batch at a time until a batch comes back short or the application stops.
+     *
+     * @param cutoff the creation time before which entries are deleted
+     * @param deletedSoFar the number of entries deleted by earlier batches
+     * @return a CompletionStage containing the total number of entries deleted
+     */
+    private CompletionStage<Integer> purgeOlderThan(Timestamp cutoff, int deletedSoFar) {
+        if (stopped) {
+            return CompletableFuture.completedFuture(deletedSoFar);
+        }
+        return cachedCompletionDao.deleteCreatedBefore(cutoff, batchSize)
+                .thenCompose(deleted -> deleted < batchSize
+                        ? CompletableFuture.completedFuture(deletedSoFar + deleted)
+                        : purgeOlderThan(cutoff, deletedSoFar + deleted));
+    }
+}
@@ -0,0 +1,191 @@
+package dao;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor for blocking JPA/JDBC work. It runs on the dedicated "database.dispatcher",
+ * sized to the connection pool, or on JDK virtual threads when enabled. Virtual threads
+ * are not pooled, so a semaphore with one permit per pooled connection keeps the rest
+ * waiting here rather than in the pool's connection timeout. A bulkhead limits the
+ * number of queued tasks: once it is reached, new work is rejected immediately instead
+ * of queueing behind a slow database. Use {@link #supplyAsync} and {@link #runAsync},
+ * which turn a rejection into a failed stage.
+ */
+@Singleton
+@Slf4j
+public class DatabaseExecutionContext implements Executor {
+
+    public static final String DISPATCHER_NAME = "database.dispatcher";
+
+    private final Executor delegate;
+    private final boolean virtualThreads;
+    private final Semaphore connectionPermits;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Constructs a DatabaseExecutionContext from the "database" configuration section.
+     *
+     * @param actorSystem the actor system providing the dispatcher
+     * @param config the configuration object containing the executor settings
+     * @param lifecycle the application lifecycle used to stop virtual-thread executors
+     */
+    @Inject
+    public DatabaseExecutionContext(ActorSystem actorSystem, Config config, ApplicationLifecycle lifecycle) {
+        this.maxQueued = config.getInt("database.maxQueued");
+
+        ExecutorService virtualThreadExecutor = config.getBoolean("database.virtualThreads")
+                ? newVirtualThreadExecutor()
+                : null;
+        if (virtualThreadExecutor != null) {
+            this.delegate = virtualThreadExecutor;
+            this.virtualThreads = true;
+            this.connectionPermits = new Semaphore(config.getInt("fixedConnectionPool"));
+            lifecycle.addStopHook(() -> {
+                virtualThreadExecutor.shutdown();
+                return CompletableFuture.completedFuture(null);
+            });
+        } else {
+            this.delegate = actorSystem.dispatchers().lookup(DISPATCHER_NAME);
+            this.virtualThreads = false;
+            this.connectionPermits = null;
+        }
+
+        log.info("Database work runs on {} with at most {} queued tasks.",
+                virtualThreads ? "virtual threads" : DISPATCHER_NAME, maxQueued);
+    }
+
+    /**
+     * Runs a database task producing a value, like CompletableFuture.supplyAsync on this
+     * executor.
+     *
+     * @param supplier the task to run
+     * @param <T> the result type
+     * @return a CompletableFuture containing the result, failed with a
+     *         RejectedExecutionException if the bulkhead is full
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Runs a database task, like CompletableFuture.runAsync on this executor.
+     *
+     * @param task the task to run
+     * @return a CompletableFuture completing with the task, failed with a
+     *         RejectedExecutionException if the bulkhead is full
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Runs a database task, or rejects it if the bulkhead is full. A task counts as
+     * queued until it holds a thread and, with virtual threads, a connection permit.
+     *
+     * @param task the task to run
+     * @throws RejectedExecutionException if too many tasks are already waiting
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Database executor is saturated (" + maxQueued + " tasks queued)");
+        }
+        submitted.increment();
+
+        try {
+            delegate.execute(() -> {
+                if (connectionPermits != null) {
+                    connectionPermits.acquireUninterruptibly();
+                }
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                    if (connectionPermits != null) {
+                        connectionPermits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when the running JDK supports it. It is
+     * looked up reflectively so the application still compiles and runs on JDK 17.
+     *
+     * @return the executor, or null if virtual threads are unavailable
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on this JDK, falling back to {}.", DISPATCHER_NAME);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dao.impl;
+
+import dao.CachedCompletionDao;
+import dao.DatabaseExecutionContext;
+import lombok.extern.slf4j.Slf4j;
+import models.CachedCompletion;
+import play.db.jpa.JPAApi;
+
+import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Implementation of CachedCompletionDao storing the persistent tier of the
+ * completion cache in the application database.
+ */
+@Slf4j
+public class CachedCompletionDaoImpl implements CachedCompletionDao {
+
+    private final JPAApi jpaApi;
+    private final DatabaseExecutionContext executor;
+
+    @Inject
+    public CachedCompletionDaoImpl(JPAApi jpaApi, DatabaseExecutionContext executor) {
+        this.jpaApi = jpaApi;
+        this.executor = executor;
+    }
+
+    /**
+     * Finds a cached completion by the digest of its prompt.
+     *
+     * @param promptHash the digest of the normalized prompt
+     * @return a CompletionStage containing the cached completion, if present
+     */
+    @Override
+    public CompletionStage<Optional<CachedCompletion>> findByPromptHash(String promptHash) {
+        return executor.supplyAsync(() -> {
+            try {
+                return jpaApi.withTransaction(em -> {
+                    return Optional.ofNullable(em.find(CachedCompletion.class, promptHash));
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Inserts or replaces a cached completion.
+     *
+     * @param cachedCompletion the cached completion to store
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    @Override
+    public CompletionStage<Void> save(CachedCompletion cachedCompletion) {
+        return executor.runAsync(() -> {
+            try {
+                jpaApi.withTransaction(em -> {
+                    em.merge(cachedCompletion);
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+            }
+        });
+    }
+
+    /**
+     * Deletes up to limit expired cached completions in one transaction. The keys are
+     * selected through the created_at index and deleted by primary key, so each batch
+     * locks only the rows it removes.
+     *
+     * @param createdBefore the creation time before which entries are deleted
+     * @param limit the maximum number of entries to delete
+     * @return a CompletionStage containing the number of entries deleted
+     */
+    @Override
+    public CompletionStage<Integer> deleteCreatedBefore(Timestamp createdBefore, int limit) {
+        return executor.supplyAsync(() -> {
+            try {
+                return jpaApi.withTransaction(em -> {
+                    List<String> promptHashes = em.createQuery("SELECT c.promptHash FROM CachedCompletion c " +
+                                    "WHERE c.createdAt < :createdBefore", String.class)
+                            .setParameter("createdBefore", createdBefore)
+                            .setMaxResults(limit)
+                            .getResultList();
+                    if (promptHashes.isEmpty()) {
+                        return 0;
+                    }
+                    return em.createQuery("DELETE FROM CachedCompletion c WHERE c.promptHash IN :promptHashes")
+                            .setParameter("promptHashes", promptHashes)
+                            .executeUpdate();
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * Handles database exceptions by logging the error and throwing a runtime exception.
+     *
+     * @param e the exception that occurred during a database operation
+     */
+    private void handleDatabaseException(Exception e) {
+        log.error("Database operation failed: " + e.getMessage());
+        throw new RuntimeException("Failed to perform database operation", e);
+    }
+}
@@ -0,0 +1,382 @@
+package dao.impl;
+
+import akka.NotUsed;
+import akka.stream.ActorAttributes;
+import akka.stream.javadsl.Source;
+import archive.ArchiveSegment;
+import archive.SegmentIndexEntry;
+import com.typesafe.config.Config;
+import dao.ChatArchive;
+import dao.ChatExportFilter;
+import dao.ChatHistoryCursor;
+import dao.DatabaseExecutionContext;
+import dtos.ChatInteractionDTO;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File-based implementation of ChatArchive. Each user has a directory named after a hash
+ * of the username, holding one ArchiveSegment per month (UTC) of submission time. Lines
+ * are filtered by username on read, and duplicates left by a batch that was archived but
+ * not yet deleted from the table when a run failed are dropped by id. The archive root
+ * must be an absolute path on storage that every node mounts, as any node may archive a
+ * user's rows or read them back; it may only be left empty while retention is disabled,
+ * in which case the archive is empty.
+ */
+@Singleton
+@Slf4j
+public class ChatArchiveImpl implements ChatArchive {
+
+    private static final Comparator<ChatInteractionDTO> OLDEST_FIRST = Comparator
+            .comparing(ChatInteractionDTO::getSubmittedAt)
+            .thenComparing(ChatInteractionDTO::getId);
+
+    private final Path root;
+
+    /**
+     * Constructs a ChatArchiveImpl rooted at "chat.retention.archiveDir".
+     *
+     * @param config the configuration object containing the archive directory
+     * @throws IllegalArgumentException if the directory is relative, or empty while retention is enabled
+     */
+    @Inject
+    public ChatArchiveImpl(Config config) {
+        String archiveDir = config.getString("chat.retention.archiveDir");
+        if (archiveDir.isEmpty()) {
+            if (config.getBoolean("chat.retention.enabled")) {
+                throw new IllegalArgumentException("chat.retention.archiveDir must be set when retention is enabled");
+            }
+            this.root = null;
+        } else {
+            this.root = Paths.get(archiveDir);
+            if (!root.isAbsolute()) {
+                throw new IllegalArgumentException("chat.retention.archiveDir must be an absolute path: " + archiveDir);
+            }
+        }
+    }
+
+    /**
+     * Appends chat interactions to their user-month segments, one new batch per segment,
+     * each sorted oldest first.
+     *
+     * @param chatInteractions the chat interactions to archive
+     */
+    @Override
+    public void append(List<ChatInteraction> chatInteractions) {
+        if (root == null) {
+            throw new IllegalStateException("chat.retention.archiveDir is not set");
+        }
+        Map<String, Map<YearMonth, List<ChatInteractionDTO>>> segments = new LinkedHashMap<>();
+        for (ChatInteraction chatInteraction : chatInteractions) {
+            YearMonth month = YearMonth.from(chatInteraction.getSubmittedAt().toInstant().atZone(ZoneOffset.UTC));
+            segments.computeIfAbsent(chatInteraction.getUsername(), ignored -> new LinkedHashMap<>())
+                    .computeIfAbsent(month, ignored -> new ArrayList<>())
+                    .add(ChatInteractionDTO.toDTO(chatInteraction));
+        }
+
+        try {
+            for (Map.Entry<String, Map<YearMonth, List<ChatInteractionDTO>>> user : segments.entrySet()) {
+                Path userDirectory = userDirectory(user.getKey());
+                for (Map.Entry<YearMonth, List<ChatInteractionDTO>> month : user.getValue().entrySet()) {
+                    List<ChatInteractionDTO> chats = month.getValue();
+                    chats.sort(OLDEST_FIRST);
+                    new ArchiveSegment(userDirectory, month.getKey()).append(chats);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to write chat archive: {}", e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks whether a user has an archive directory.
+     *
+     * @param username the username to check
+     * @return true if the user has an archive
+     */
+    @Override
+    public boolean hasArchive(String username) {
+        return root != null && Files.isDirectory(userDirectory(username));
+    }
+
+    /**
+     * Reads segments newest month first until the page is full. Within a segment, the
+     * batches that can hold interactions older than the cursor are read one by one from
+     * their indexed offsets, latest first, until no remaining batch can hold anything
+     * newer than the page already collected.
+     *
+     * @param username the username for which to read chat interactions
+     * @param before the cursor to continue from, or null to start at the newest archived interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return the archived chat interactions older than the cursor, newest first
+     */
+    @Override
+    public List<ChatInteractionDTO> getChatPage(String username, ChatHistoryCursor before, int limit) {
+        List<ArchiveSegment> segments = new ArrayList<>(segments(username));
+        Collections.reverse(segments);
+
+        List<ChatInteractionDTO> page = new ArrayList<>(limit);
+        for (ArchiveSegment segment : segments) {
+            page.addAll(readNewest(username, segment, before, limit - page.size()));
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Reads archived chat interactions of a user by id, only inflating the batches whose
+     * id range contains one of the ids.
+     *
+     * @param username the username the chat interactions must belong to
+     * @param ids the ids of the chat interactions
+     * @return the archived chat interactions found, in no particular order
+     */
+    @Override
+    public List<ChatInteractionDTO> getChatsByIds(String username, Collection<Long> ids) {
+        Set<Long> wanted = new HashSet<>(ids);
+        Map<Long, ChatInteractionDTO> found = new LinkedHashMap<>();
+        for (ArchiveSegment segment : segments(username)) {
+            try {
+                for (SegmentIndexEntry entry : segment.readIndex()) {
+                    if (found.size() == wanted.size()) {
+                        return new ArrayList<>(found.values());
+                    }
+                    if (wanted.stream().noneMatch(id -> id >= entry.getMinId() && id <= entry.getMaxId())) {
+                        continue;
+                    }
+                    for (ChatInteractionDTO chat : segment.read(entry)) {
+                        if (username.equals(chat.getUsername()) && wanted.contains(chat.getId())) {
+                            found.putIfAbsent(chat.getId(), chat);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Failed to read chat archive segment {} of user {}: {}", segment.getMonth(), username, e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Streams the segments of a user on the database dispatcher, holding one month of
+     * interactions in memory at a time.
+     *
+     * @param username the username for which to read chat interactions
+     * @return a Source emitting the archived chat interactions of the user, oldest first
+     */
+    @Override
+    public Source<ChatInteractionDTO, NotUsed> streamChats(String username) {
+        return Source.single(username)
+                .mapConcat(this::segments)
+                .mapConcat(segment -> readSegment(username, segment, null))
+                .withAttributes(ActorAttributes.dispatcher(DatabaseExecutionContext.DISPATCHER_NAME));
+    }
+
+    /**
+     * Streams the segments selected by the filter on the database dispatcher, holding one
+     * user-month of interactions in memory at a time.
+     *
+     * @param filter selects the chat interactions to export
+     * @return a Source emitting the selected archived chat interactions, each user oldest first
+     */
+    @Override
+    public Source<ChatInteractionDTO, NotUsed> streamExport(ChatExportFilter filter) {
+        return Source.single(filter)
+                .mapConcat(this::exportSegments)
+                .mapConcat(segment -> readExport(segment, filter))
+                .withAttributes(ActorAttributes.dispatcher(DatabaseExecutionContext.DISPATCHER_NAME));
+    }
+
+    /**
+     * Lists the segments of the filtered user, or of every user in directory order.
+     *
+     * @param filter selects the chat interactions to export
+     * @return the segments, each user's oldest month first
+     */
+    private List<ArchiveSegment> exportSegments(ChatExportFilter filter) {
+        if (filter.getUsername() != null) {
+            return segments(filter.getUsername());
+        }
+        if (root == null || !Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> userDirectories = Files.list(root)) {
+            List<ArchiveSegment> segments = new ArrayList<>();
+            for (Path userDirectory : userDirectories.filter(Files::isDirectory).sorted().collect(Collectors.toList())) {
+                segments.addAll(ArchiveSegment.list(userDirectory));
+            }
+            return segments;
+        } catch (IOException e) {
+            log.error("Failed to list chat archive: {}", e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the interactions of one segment selected by an export filter, oldest first.
+     *
+     * @param segment the segment to read
+     * @param filter selects the chat interactions to export
+     * @return the interactions without duplicates
+     */
+    private List<ChatInteractionDTO> readExport(ArchiveSegment segment, ChatExportFilter filter) {
+        Timestamp from = filter.getFrom();
+        Timestamp to = filter.getTo();
+        try {
+            List<ChatInteractionDTO> chats = segment.read(entry ->
+                    (from == null || entry.getLastSubmittedAt() >= from.getTime())
+                            && (to == null || entry.getFirstSubmittedAt() < to.getTime()));
+            Set<Long> seen = new HashSet<>();
+            return chats.stream()
+                    .filter(chat -> filter.getUsername() == null || filter.getUsername().equals(chat.getUsername()))
+                    .filter(chat -> from == null || !chat.getSubmittedAt().before(from))
+                    .filter(chat -> to == null || chat.getSubmittedAt().before(to))
+                    .filter(chat -> seen.add(chat.getId()))
+                    .sorted(OLDEST_FIRST)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Failed to read chat archive segment {}: {}", segment.getMonth(), e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the interactions of one user from one segment, oldest first.
+     *
+     * @param username the username the interactions must belong to
+     * @param segment the segment to read
+     * @param before if not null, only batches and interactions older than this cursor are read
+     * @return the interactions without duplicates
+     */
+    private List<ChatInteractionDTO> readSegment(String username, ArchiveSegment segment, ChatHistoryCursor before) {
+        try {
+            List<ChatInteractionDTO> chats = segment.read(entry ->
+                    before == null || entry.getFirstSubmittedAt() <= before.getSubmittedAt().getTime());
+            Set<Long> seen = new HashSet<>();
+            return chats.stream()
+                    .filter(chat -> username.equals(chat.getUsername()))
+                    .filter(chat -> before == null || isOlder(chat, before))
+                    .filter(chat -> seen.add(chat.getId()))
+                    .sorted(OLDEST_FIRST)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Failed to read chat archive segment {} of user {}: {}", segment.getMonth(), username, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the newest interactions of one user from one segment that are older than the
+     * cursor. Batches are read latest first and reading stops once the next batch ends
+     * before the oldest of the limit interactions collected so far.
+     *
+     * @param username the username the interactions must belong to
+     * @param segment the segment to read
+     * @param before if not null, only batches and interactions older than this cursor are read
+     * @param limit the maximum number of chat interactions to return
+     * @return the interactions without duplicates, newest first
+     */
+    private List<ChatInteractionDTO> readNewest(String username, ArchiveSegment segment, ChatHistoryCursor before,
+                                                int limit) {
+        try {
+            List<SegmentIndexEntry> entries = segment.readIndex().stream()
+                    .filter(entry -> before == null || entry.getFirstSubmittedAt() <= before.getSubmittedAt().getTime())
+                    .sorted(Comparator.comparingLong(SegmentIndexEntry::getLastSubmittedAt).reversed())
+                    .collect(Collectors.toList());
+            Map<Long, ChatInteractionDTO> chats = new HashMap<>();
+            List<ChatInteractionDTO> newest = Collections.emptyList();
+            for (SegmentIndexEntry entry : entries) {
+                if (newest.size() == limit
+                        && entry.getLastSubmittedAt() < newest.get(limit - 1).getSubmittedAt().getTime()) {
+                    break;
+                }
+                for (ChatInteractionDTO chat : segment.read(entry)) {
+                    if (username.equals(chat.getUsername()) && (before == null || isOlder(chat, before))) {
+                        chats.putIfAbsent(chat.getId(), chat);
+                    }
+                }
+                newest = chats.values().stream()
+                        .sorted(OLDEST_FIRST.reversed())
+                        .limit(limit)
+                        .collect(Collectors.toList());
+            }
+            return newest;
+        } catch (IOException e) {
+            log.error("Failed to read chat archive segment {} of user {}: {}", segment.getMonth(), username, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lists the segments of a user.
+     *
+     * @param username the username
+     * @return the segments, oldest month first
+     */
+    private List<ArchiveSegment> segments(String username) {
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return ArchiveSegment.list(userDirectory(username));
+        } catch (IOException e) {
+            log.error("Failed to list chat archive of user {}: {}", username, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isOlder(ChatInteractionDTO chat, ChatHistoryCursor cursor) {
+        int byTime = chat.getSubmittedAt().compareTo(cursor.getSubmittedAt());
+        return byTime < 0 || (byTime == 0 && chat.getId() < cursor.getId());
+    }
+
+    /**
+     * Returns the archive directory of a user. Directory names are hashes so that any
+     * username maps to a safe file name.
+     *
+     * @param username the username
+     * @return the directory holding the user's segments
+     */
+    private Path userDirectory(String username) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(username.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", digest[i]));
+            }
+            return root.resolve(name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package dao.impl;
+
+import akka.NotUsed;
+import akka.stream.ActorAttributes;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import dao.ChatArchive;
+import dao.ChatExportFilter;
+import dao.ChatHistoryCursor;
+import dao.ChatHistoryReadDao;
+import dao.DatabaseExecutionContext;
+import dtos.ChatInteractionDTO;
+import dtos.ChatJobStatusDTO;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+import models.ChatResponseBody;
+import models.ChatStatus;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.Query;
+import play.db.jpa.JPAApi;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of ChatHistoryReadDao. Queries use JPQL constructor expressions, so
+ * rows become ChatInteractionDTOs directly: nothing is registered in the persistence
+ * context, no dirty-checking snapshot is kept and no entity-to-DTO copy is made.
+ * Queries run without a transaction, with read-only and manual-flush hints.
+ */
+@Singleton
+@Slf4j
+public class ChatHistoryReadDaoImpl implements ChatHistoryReadDao {
+
+    private static final String PERSISTENCE_UNIT = "default";
+    private static final String SELECT_DTO = "SELECT new dtos.ChatInteractionDTO(" +
+            "c.id, c.chatRole, c.message, c.response, c.submittedAt, c.username, c.responseTruncated) " +
+            "FROM ChatInteraction c ";
+
+    private final JPAApi jpaApi;
+    private final DatabaseExecutionContext executor;
+    private final ChatArchive archive;
+    private final LatencyHistogram queryLatency;
+    private final int streamFetchSize;
+    private final Duration streamIdleTimeout;
+    private volatile SessionFactory sessionFactory;
+
+    @Inject
+    public ChatHistoryReadDaoImpl(JPAApi jpaApi, DatabaseExecutionContext executor, ChatArchive archive,
+                                  MetricsRegistry metrics, Config config) {
+        this.jpaApi = jpaApi;
+        this.executor = executor;
+        this.archive = archive;
+        this.queryLatency = metrics.stage(Stage.DB_QUERY);
+        this.streamFetchSize = config.getInt("chat.history.stream.fetchSize");
+        this.streamIdleTimeout = config.getDuration("chat.history.stream.idleTimeout");
+    }
+
+    /**
+     * Retrieves one page of chat interactions for a specific username, newest first.
+     * The keyset predicate on (submittedAt, id) lets the composite index serve each page
+     * without scanning the interactions that precede the cursor. A page that runs past the
+     * oldest row in the table is filled from the archive.
+     *
+     * @param username the username for which to retrieve chat interactions
+     * @param before the cursor to continue from, or null to start at the newest interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the chat interactions older than the cursor
+     */
+    @Override
+    public CompletionStage<List<ChatInteractionDTO>> getChatPage(String username, ChatHistoryCursor before, int limit) {
+        return executor.supplyAsync(() -> readOnly(em -> {
+            TypedQuery<ChatInteractionDTO> query;
+            if (before == null) {
+                query = em.createQuery(SELECT_DTO + "WHERE c.username = :username " +
+                        "ORDER BY c.submittedAt DESC, c.id DESC", ChatInteractionDTO.class);
+            } else {
+                query = em.createQuery(SELECT_DTO + "WHERE c.username = :username " +
+                                "AND (c.submittedAt < :submittedAt OR (c.submittedAt = :submittedAt AND c.id < :id)) " +
+                                "ORDER BY c.submittedAt DESC, c.id DESC", ChatInteractionDTO.class)
+                        .setParameter("submittedAt", before.getSubmittedAt())
+                        .setParameter("id", before.getId());
+            }
+            return readOnlyQuery(query)
+                    .setParameter("username", username)
+                    .setMaxResults(limit)
+                    .getResultList();
+        })).thenApplyAsync(page -> {
+            if (page.size() == limit || !archive.hasArchive(username)) {
+                return page;
+            }
+            ChatHistoryCursor archivedBefore = page.isEmpty() ? before : ChatHistoryCursor.of(page.get(page.size() - 1));
+            Set<Long> pageIds = page.stream().map(ChatInteractionDTO::getId).collect(Collectors.toSet());
+            List<ChatInteractionDTO> filled = new ArrayList<>(page);
+            archive.getChatPage(username, archivedBefore, limit - page.size()).stream()
+                    .filter(chat -> !pageIds.contains(chat.getId()))
+                    .forEach(filled::add);
+            return filled;
+        }, executor);
+    }
+
+    /**
+     * Retrieves chat interactions of a specific username by id, in no particular order.
+     * Ids missing from the table are looked up in the archive.
+     *
+     * @param username the username the chat interactions must belong to
+     * @param ids the ids of the chat interactions
+     * @return a CompletionStage containing the chat interactions found
+     */
+    @Override
+    public CompletionStage<List<ChatInteractionDTO>> getChatsByIds(String username, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return executor.supplyAsync(() -> {
+            List<ChatInteractionDTO> chats = readOnly(em -> readOnlyQuery(em.createQuery(SELECT_DTO +
+                            "WHERE c.username = :username AND c.id IN :ids", ChatInteractionDTO.class))
+                    .setParameter("username", username)
+                    .setParameter("ids", ids)
+                    .getResultList());
+            if (chats.size() == ids.size() || !archive.hasArchive(username)) {
+                return chats;
+            }
+            Set<Long> missing = new HashSet<>(ids);
+            chats.forEach(chat -> missing.remove(chat.getId()));
+            List<ChatInteractionDTO> found = new ArrayList<>(chats);
+            found.addAll(archive.getChatsByIds(username, missing));
+            return found;
+        });
+    }
+
+    /**
+     * Retrieves the complete response of one chat interaction. Only this query and the
+     * export join the compressed ChatResponseBody; list queries select the inline preview.
+     * An interaction no longer in the table is looked up in the archive, which keeps full
+     * responses.
+     *
+     * @param username the username the chat interaction must belong to
+     * @param id the id of the chat interaction
+     * @return a CompletionStage containing the full response, or empty if the user has no
+     *         chat interaction with that id
+     */
+    @Override
+    public CompletionStage<Optional<String>> getFullResponse(String username, long id) {
+        return executor.supplyAsync(() -> readOnly(em -> readOnlyQuery(em.createQuery(
+                        "SELECT c.response, b.body, c.responseTruncated FROM ChatInteraction c " +
+                                ChatResponseBody.LEFT_JOIN + "WHERE c.id = :id AND c.username = :username", Object[].class))
+                .setParameter("id", id)
+                .setParameter("username", username)
+                .getResultStream()
+                .findFirst()
+                .map(row -> (Boolean) row[2] ? (String) row[1] : (String) row[0]))
+                .or(() -> archived(username, id).map(ChatInteractionDTO::getResponse)));
+    }
+
+    /**
+     * Retrieves one chat interaction with its status. The response is the inline preview,
+     * as in the history lists. An interaction no longer in the table is looked up in the
+     * archive, where every interaction is complete.
+     *
+     * @param username the username the chat interaction must belong to
+     * @param id the id of the chat interaction
+     * @return a CompletionStage containing the status, or empty if the user has no chat
+     *         interaction with that id
+     */
+    @Override
+    public CompletionStage<Optional<ChatJobStatusDTO>> getChatJob(String username, long id) {
+        return executor.supplyAsync(() -> readOnly(em -> readOnlyQuery(em.createQuery(
+                        "SELECT c.id, c.chatRole, c.message, c.response, c.submittedAt, c.username, " +
+                                "c.responseTruncated, c.status FROM ChatInteraction c " +
+                                "WHERE c.id = :id AND c.username = :username", Object[].class))
+                .setParameter("id", id)
+                .setParameter("username", username)
+                .getResultStream()
+                .findFirst()
+                .map(row -> ChatJobStatusDTO.of(new ChatInteractionDTO((Long) row[0], (String) row[1],
+                                (String) row[2], (String) row[3], (Timestamp) row[4], (String) row[5], (Boolean) row[6]),
+                        (ChatStatus) row[7])))
+                .or(() -> archived(username, id).map(chat -> ChatJobStatusDTO.of(chat, ChatStatus.COMPLETE))));
+    }
+
+    /**
+     * Looks up one chat interaction in the archive.
+     *
+     * @param username the username the chat interaction must belong to
+     * @param id the id of the chat interaction
+     * @return the archived chat interaction, or empty if the user has none with that id
+     */
+    private Optional<ChatInteractionDTO> archived(String username, long id) {
+        if (!archive.hasArchive(username)) {
+            return Optional.empty();
+        }
+        return archive.getChatsByIds(username, Collections.singleton(id)).stream().findFirst();
+    }
+
+    /**
+     * Streams all chat interactions for a specific username, oldest first: the archived
+     * ones month by month, then the rows of the table. Rows come from a forward-only
+     * cursor of a stateless session, so neither the driver nor the persistence context
+     * accumulates them.
+     *
+     * @param username the username for which to retrieve chat interactions
+     * @return a Source emitting the chat interactions of the user
+     */
+    @Override
+    public Source<ChatInteractionDTO, NotUsed> streamChats(String username) {
+        return archive.streamChats(username)
+                .concat(scroll(session -> session.createQuery(SELECT_DTO +
+                                "WHERE c.username = :username ORDER BY c.submittedAt ASC, c.id ASC", ChatInteractionDTO.class)
+                        .setParameter("username", username), row -> (ChatInteractionDTO) row[0]));
+    }
+
+    /**
+     * Streams the chat interactions of every user with an id above the given one, in id
+     * order and with the full response text, for building and catching up in-memory
+     * indexes. The primary key serves the range; the interactions are detached entities.
+     *
+     * @param afterId the id after which to start, or 0 for every chat interaction
+     * @return a Source emitting the chat interactions
+     */
+    @Override
+    public Source<ChatInteraction, NotUsed> streamInteractions(long afterId) {
+        return scroll(session -> session.createQuery("SELECT c, b.body FROM ChatInteraction c " +
+                        ChatResponseBody.LEFT_JOIN + "WHERE c.id > :afterId ORDER BY c.id", Object[].class)
+                .setParameter("afterId", afterId), ChatResponseBody::withBody);
+    }
+
+    /**
+     * Retrieves one page of a bulk export. The primary key, or the (username, id) index
+     * when exporting one user, serves the keyset predicate and order, and the compressed
+     * response bodies are read along with the rows.
+     *
+     * @param filter selects the chat interactions to export
+     * @param afterId the id of the last chat interaction already exported, or 0 to start
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the next chat interactions after afterId
+     */
+    @Override
+    public CompletionStage<List<ChatInteractionDTO>> getExportPage(ChatExportFilter filter, long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT c.id, c.chatRole, c.message, c.response, b.body, " +
+                "c.responseTruncated, c.submittedAt, c.username FROM ChatInteraction c " + ChatResponseBody.LEFT_JOIN +
+                "WHERE c.id > :afterId");
+        if (filter.getUsername() != null) {
+            jpql.append(" AND c.username = :username");
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" AND c.submittedAt >= :from");
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" AND c.submittedAt < :to");
+        }
+        jpql.append(" ORDER BY c.id");
+
+        return executor.supplyAsync(() -> readOnly(em -> {
+            TypedQuery<Object[]> query = readOnlyQuery(em.createQuery(jpql.toString(), Object[].class))
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit);
+            if (filter.getUsername() != null) {
+                query.setParameter("username", filter.getUsername());
+            }
+            if (filter.getFrom() != null) {
+                query.setParameter("from", filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                query.setParameter("to", filter.getTo());
+            }
+            return query.getResultStream()
+                    .map(row -> new ChatInteractionDTO((Long) row[0], (String) row[1], (String) row[2],
+                            (Boolean) row[5] ? (String) row[4] : (String) row[3],
+                            (Timestamp) row[6], (String) row[7], false))
+                    .collect(Collectors.toList());
+        }));
+    }
+
+    /**
+     * Looks up the given ids by primary key.
+     *
+     * @param ids the ids of chat interactions
+     * @return a CompletionStage containing the ids found in the table
+     */
+    @Override
+    public CompletionStage<Set<Long>> getLiveIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        return executor.supplyAsync(() -> readOnly(em -> new HashSet<>(readOnlyQuery(em.createQuery(
+                        "SELECT c.id FROM ChatInteraction c WHERE c.id IN :ids", Long.class))
+                .setParameter("ids", ids)
+                .getResultList())));
+    }
+
+    /**
+     * Emits the results of a query from a forward-only cursor of a stateless session.
+     * Reads run on the database dispatcher, and a consumer that stops pulling for longer
+     * than the idle timeout fails the stream so the connection is returned to the pool.
+     *
+     * @param query creates the query to scroll through
+     * @param mapRow turns the selected values of a row into an element
+     * @return a Source emitting the query results
+     */
+    private <T> Source<T, NotUsed> scroll(Function<StatelessSession, Query<?>> query, Function<Object[], T> mapRow) {
+        return Source.unfoldResource(
+                        () -> Scroll.open(sessionFactory(), query, mapRow, streamFetchSize, queryLatency),
+                        Scroll<T>::next,
+                        Scroll::close)
+                .idleTimeout(streamIdleTimeout)
+                .withAttributes(ActorAttributes.dispatcher(DatabaseExecutionContext.DISPATCHER_NAME));
+    }
+
+    /**
+     * Runs a query without a transaction and records its latency.
+     *
+     * @param block the query to run
+     * @return the query result
+     */
+    private <T> T readOnly(Function<EntityManager, T> block) {
+        long start = System.nanoTime();
+        try {
+            return jpaApi.withTransaction(PERSISTENCE_UNIT, true, block);
+        } catch (PersistenceException e) {
+            handleDatabaseException(e);
+            return null;
+        } finally {
+            queryLatency.recordSince(start);
+        }
+    }
+
+    private static <T> TypedQuery<T> readOnlyQuery(TypedQuery<T> query) {
+        return query.setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    /**
+     * Returns the Hibernate session factory behind the JPA persistence unit.
+     *
+     * @return the session factory
+     */
+    private SessionFactory sessionFactory() {
+        SessionFactory factory = sessionFactory;
+        if (factory == null) {
+            factory = jpaApi.withTransaction(em -> em.getEntityManagerFactory().unwrap(SessionFactory.class));
+            sessionFactory = factory;
+        }
+        return factory;
+    }
+
+    /**
+     * Handles database exceptions by logging the error and throwing a runtime exception.
+     *
+     * @param e the exception that occurred during a database operation
+     */
+    private static void handleDatabaseException(Exception e) {
+        log.error("Database operation failed: " + e.getMessage());
+        throw new RuntimeException("Failed to perform database operation", e);
+    }
+
+    /**
+     * An open read-only cursor over the results of one query.
+     */
+    private static final class Scroll<T> {
+
+        private final StatelessSession session;
+        private final ScrollableResults results;
+        private final Function<Object[], T> mapRow;
+
+        private Scroll(StatelessSession session, ScrollableResults results, Function<Object[], T> mapRow) {
+            this.session = session;
+            this.results = results;
+            this.mapRow = mapRow;
+        }
+
+        static <T> Scroll<T> open(SessionFactory sessionFactory, Function<StatelessSession, Query<?>> query,
+                                  Function<Object[], T> mapRow, int fetchSize, LatencyHistogram queryLatency) {
+            long start = System.nanoTime();
+            StatelessSession session = sessionFactory.openStatelessSession();
+            try {
+                session.beginTransaction();
+                ScrollableResults results = query.apply(session)
+                        .setFetchSize(fetchSize)
+                        .setReadOnly(true)
+                        .scroll(ScrollMode.FORWARD_ONLY);
+                return new Scroll<>(session, results, mapRow);
+            } catch (RuntimeException e) {
+                session.close();
+                handleDatabaseException(e);
+                return null;
+            } finally {
+                queryLatency.recordSince(start);
+            }
+        }
+
+        Optional<T> next() {
+            return results.next() ? Optional.of(mapRow.apply(results.get())) : Optional.empty();
+        }
+
+        void close() {
+            try {
+                results.close();
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
@@ -1,75 +1,297 @@
 package dao.impl;
 
+import akka.stream.Materializer;
+import com.typesafe.config.Config;
+import dao.ChatHistoryCursor;
 import dao.ChatInteractionDao;
+import dao.ChatInteractionEvents;
+import dao.DatabaseExecutionContext;
+import dtos.ChatRequestDTO;
 import lombok.extern.slf4j.Slf4j;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
 import models.ChatInteraction;
+import models.ChatResponseBody;
+import models.ChatStatus;
 import play.db.jpa.JPAApi;
+import play.inject.ApplicationLifecycle;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.Executor;
-
-import static java.util.concurrent.CompletableFuture.runAsync;
-import static java.util.concurrent.CompletableFuture.supplyAsync;
+import java.util.stream.Collectors;
 
 
 /**
  * Implementation of ChatInteractionDao for handling database operations
  * related to chat interactions, including saving and retrieving chats
- * by username.
+ * by username. In write-behind mode, saves are queued and written as JDBC
+ * batches instead of one transaction per interaction. Every save is published through
+ * ChatInteractionEvents once its transaction has committed, even when write-behind
+ * acknowledges it on enqueue, and the time spent in each transaction is recorded in
+ * MetricsRegistry.
  */
+@Singleton
 @Slf4j
 public class ChatInteractionDaoImpl implements ChatInteractionDao {
 
+    private static final String WRITE_BEHIND_MODE = "write-behind";
+    private static final String SELECT_WITH_BODY = "SELECT c, b.body FROM ChatInteraction c " + ChatResponseBody.LEFT_JOIN;
+
     private final JPAApi jpaApi;
-    private final Executor executor;
+    private final DatabaseExecutionContext executor;
+    private final ChatInteractionEvents events;
+    private final int jdbcBatchSize;
+    private final ChatInteractionWriteBehind writeBehind;
+    private final LatencyHistogram saveLatency;
+    private final LatencyHistogram queryLatency;
 
     @Inject
-    public ChatInteractionDaoImpl(JPAApi jpaApi, Executor executor) {
+    public ChatInteractionDaoImpl(JPAApi jpaApi, DatabaseExecutionContext executor, ChatInteractionEvents events,
+                                  MetricsRegistry metrics, Config config,
+                                  Materializer materializer, ApplicationLifecycle lifecycle) {
         this.jpaApi = jpaApi;
         this.executor = executor;
+        this.events = events;
+        this.saveLatency = metrics.stage(Stage.DB_SAVE);
+        this.queryLatency = metrics.stage(Stage.DB_QUERY);
+
+        Config persistenceConfig = config.getConfig("chat.persistence");
+        this.jdbcBatchSize = persistenceConfig.getInt("writeBehind.batchSize");
+        if (WRITE_BEHIND_MODE.equalsIgnoreCase(persistenceConfig.getString("mode"))) {
+            this.writeBehind = new ChatInteractionWriteBehind(
+                    persistenceConfig.getConfig("writeBehind"), materializer, this::saveAll);
+            lifecycle.addStopHook(writeBehind::shutdown);
+        } else {
+            this.writeBehind = null;
+        }
     }
 
     /**
-     * Saves a chat interaction to the database.
+     * Saves a chat interaction to the database, either in its own transaction or through
+     * the write-behind queue. Queued interactions are published by the flush that commits
+     * them, as the returned stage may complete before that.
      *
      * @param chatInteraction the chat interaction to save
      * @return a CompletionStage indicating the completion of the save operation
      */
     @Override
     public CompletionStage<Void> save(ChatInteraction chatInteraction) {
-        return runAsync(() -> {
+        if (writeBehind != null) {
+            return writeBehind.enqueue(chatInteraction);
+        }
+        return executor.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                jpaApi.withTransaction(em -> {
+                    persist(em, chatInteraction);
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+            } finally {
+                saveLatency.recordSince(start);
+            }
+        }).thenRun(() -> events.publishSaved(chatInteraction));
+    }
+
+    /**
+     * Saves several chat interactions in a single transaction and publishes them once it
+     * has committed. Inserts are flushed in JDBC batches, and ids come from the pooled
+     * generator without extra round trips. The write-behind queue flushes through here.
+     *
+     * @param chatInteractions the chat interactions to save
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    @Override
+    public CompletionStage<Void> saveAll(List<ChatInteraction> chatInteractions) {
+        return persistAll(chatInteractions)
+                .thenRun(() -> chatInteractions.forEach(events::publishSaved));
+    }
+
+    /**
+     * Saves a pending chat interaction in its own transaction, bypassing the write-behind
+     * queue so the caller can hand out its id.
+     *
+     * @param chatInteraction the pending chat interaction to save
+     * @return a CompletionStage indicating the completion of the save operation
+     */
+    @Override
+    public CompletionStage<Void> savePending(ChatInteraction chatInteraction) {
+        return persistAll(Collections.singletonList(chatInteraction));
+    }
+
+    /**
+     * Writes the response of a pending chat interaction, including its compressed body if
+     * the response is long, and publishes the completed interaction.
+     *
+     * @param chatInteraction the saved chat interaction, with its response set
+     * @return a CompletionStage indicating the completion of the update
+     */
+    @Override
+    public CompletionStage<Void> updateResponse(ChatInteraction chatInteraction) {
+        return executor.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                jpaApi.withTransaction(em -> {
+                    ChatInteraction saved = em.merge(chatInteraction);
+                    if (chatInteraction.isResponseTruncated()) {
+                        em.persist(new ChatResponseBody(saved, chatInteraction.getResponseBody()));
+                    }
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+            } finally {
+                saveLatency.recordSince(start);
+            }
+        }).thenRun(() -> events.publishSaved(chatInteraction));
+    }
+
+    /**
+     * Marks a pending chat interaction as failed and replaces its placeholder response.
+     * An interaction that is no longer pending is left unchanged.
+     *
+     * @param chatInteraction the saved chat interaction whose response could not be written
+     * @return a CompletionStage indicating the completion of the update
+     */
+    @Override
+    public CompletionStage<Void> markFailed(ChatInteraction chatInteraction) {
+        return executor.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                jpaApi.withTransaction(em -> {
+                    em.createQuery("UPDATE ChatInteraction c SET c.status = :failed, c.response = :response " +
+                                    "WHERE c.id = :id AND c.status = :pending")
+                            .setParameter("failed", ChatStatus.FAILED)
+                            .setParameter("response", ChatRequestDTO.FAILED_RESPONSE)
+                            .setParameter("id", chatInteraction.getId())
+                            .setParameter("pending", ChatStatus.PENDING)
+                            .executeUpdate();
+                });
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+            } finally {
+                saveLatency.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * Marks stale pending chat interactions as failed in one statement, served by the
+     * index on (status_code, submitted_at).
+     *
+     * @param submittedBefore the submission time before which pending interactions are stale
+     * @return a CompletionStage containing the number of interactions marked as failed
+     */
+    @Override
+    public CompletionStage<Integer> failPendingBefore(Timestamp submittedBefore) {
+        return executor.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return jpaApi.withTransaction(em -> em.createQuery(
+                                "UPDATE ChatInteraction c SET c.status = :failed, c.response = :response " +
+                                        "WHERE c.status = :pending AND c.submittedAt < :submittedBefore")
+                        .setParameter("failed", ChatStatus.FAILED)
+                        .setParameter("response", ChatRequestDTO.FAILED_RESPONSE)
+                        .setParameter("pending", ChatStatus.PENDING)
+                        .setParameter("submittedBefore", submittedBefore)
+                        .executeUpdate());
+            } catch (PersistenceException e) {
+                handleDatabaseException(e);
+                return 0;
+            } finally {
+                saveLatency.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * Persists a chat interaction and, if its response is long, its compressed body.
+     *
+     * @param em the entity manager of the current transaction
+     * @param chatInteraction the chat interaction to persist
+     */
+    private static void persist(EntityManager em, ChatInteraction chatInteraction) {
+        em.persist(chatInteraction);
+        if (chatInteraction.isResponseTruncated()) {
+            em.persist(new ChatResponseBody(chatInteraction, chatInteraction.getResponseBody()));
+        }
+    }
+
+    /**
+     * Persists several chat interactions in a single transaction without publishing them.
+     *
+     * @param chatInteractions the chat interactions to persist
+     * @return a CompletionStage indicating the completion of the transaction
+     */
+    private CompletionStage<Void> persistAll(List<ChatInteraction> chatInteractions) {
+        return executor.runAsync(() -> {
+            long start = System.nanoTime();
             try {
                 jpaApi.withTransaction(em -> {
-                    em.persist(chatInteraction);
+                    for (int i = 0; i < chatInteractions.size(); i++) {
+                        persist(em, chatInteractions.get(i));
+                        if ((i + 1) % jdbcBatchSize == 0) {
+                            em.flush();
+                            em.clear();
+                        }
+                    }
                 });
             } catch (PersistenceException e) {
                 handleDatabaseException(e);
+            } finally {
+                saveLatency.recordSince(start);
             }
-        }, executor);
+        });
     }
 
     /**
-     * Retrieves all chat interactions for a specific username.
+     * Retrieves one page of chat interactions for a specific username, newest first.
+     * The keyset predicate on (submittedAt, id) lets the composite index serve each page
+     * without scanning the interactions that precede the cursor. Bodies of long responses
+     * are joined in, as callers replay the full responses.
      *
      * @param username the username for which to retrieve chat interactions
-     * @return a CompletionStage containing a list of chat interactions associated with the user
+     * @param before the cursor to continue from, or null to start at the newest interaction
+     * @param limit the maximum number of chat interactions to return
+     * @return a CompletionStage containing the chat interactions older than the cursor
      */
     @Override
-    public CompletionStage<List<ChatInteraction>> getAllChatsByUsername(String username) {
-        return supplyAsync(() -> {
+    public CompletionStage<List<ChatInteraction>> getChatsByUsername(String username, ChatHistoryCursor before, int limit) {
+        return executor.supplyAsync(() -> {
+            long start = System.nanoTime();
             try {
                 return jpaApi.withTransaction(em -> {
-                    return em.createQuery("SELECT c FROM ChatInteraction c WHERE c.username = :username",
-                                    ChatInteraction.class).setParameter("username", username).getResultList();
+                    TypedQuery<Object[]> query;
+                    if (before == null) {
+                        query = em.createQuery(SELECT_WITH_BODY + "WHERE c.username = :username " +
+                                "ORDER BY c.submittedAt DESC, c.id DESC", Object[].class);
+                    } else {
+                        query = em.createQuery(SELECT_WITH_BODY + "WHERE c.username = :username " +
+                                        "AND (c.submittedAt < :submittedAt OR (c.submittedAt = :submittedAt AND c.id < :id)) " +
+                                        "ORDER BY c.submittedAt DESC, c.id DESC", Object[].class)
+                                .setParameter("submittedAt", before.getSubmittedAt())
+                                .setParameter("id", before.getId());
+                    }
+                    return query.setParameter("username", username)
+                            .setMaxResults(limit)
+                            .getResultStream()
+                            .map(ChatResponseBody::withBody)
+                            .collect(Collectors.toList());
                 });
             } catch (PersistenceException e) {
                 handleDatabaseException(e);
                 return null;
+            } finally {
+                queryLatency.recordSince(start);
             }
-        }, executor);
+        });
     }
 
     /**
@@ -0,0 +1,157 @@
+package dao.impl;
+
+import akka.Done;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded write-behind queue for chat interactions. Queued interactions are grouped by
+ * size or time and handed to a batch writer, so many saves share one transaction and
+ * one JDBC batch. The batch writer is also responsible for publishing the interactions
+ * once they are committed.
+ */
+@Slf4j
+public class ChatInteractionWriteBehind {
+
+    private final Function<List<ChatInteraction>, CompletionStage<Void>> batchWriter;
+    private final boolean ackOnEnqueue;
+    private final SourceQueueWithComplete<PendingWrite> queue;
+    private final CompletionStage<Done> drained;
+
+    /**
+     * Materializes the write-behind stream.
+     *
+     * @param config the write-behind configuration section
+     * @param materializer the materializer running the stream
+     * @param batchWriter persists a batch of interactions in a single transaction
+     */
+    public ChatInteractionWriteBehind(Config config, Materializer materializer,
+                                      Function<List<ChatInteraction>, CompletionStage<Void>> batchWriter) {
+        this.batchWriter = batchWriter;
+        this.ackOnEnqueue = "enqueue".equalsIgnoreCase(config.getString("ack"));
+
+        int queueSize = config.getInt("queueSize");
+        int batchSize = config.getInt("batchSize");
+        Duration flushInterval = config.getDuration("flushInterval");
+
+        Pair<SourceQueueWithComplete<PendingWrite>, CompletionStage<Done>> materialized =
+                Source.<PendingWrite>queue(queueSize, OverflowStrategy.dropNew())
+                        .groupedWithin(batchSize, flushInterval)
+                        .mapAsync(1, this::flush)
+                        .toMat(Sink.ignore(), Keep.both())
+                        .run(materializer);
+        this.queue = materialized.first();
+        this.drained = materialized.second();
+
+        log.info("Write-behind persistence started with queue size {}, batch size {}, flush interval {} and ack on {}",
+                queueSize, batchSize, flushInterval, ackOnEnqueue ? "enqueue" : "flush");
+    }
+
+    /**
+     * Queues a chat interaction for the next batch. If the queue is full or closed, the
+     * interaction is written on its own instead of being dropped.
+     *
+     * @param chatInteraction the chat interaction to save
+     * @return a CompletionStage completing once the interaction is queued or committed,
+     *         depending on the configured acknowledgement mode; when it completes on
+     *         enqueue the interaction has no id yet
+     */
+    public CompletionStage<Void> enqueue(ChatInteraction chatInteraction) {
+        PendingWrite write = new PendingWrite(chatInteraction);
+        CompletionStage<QueueOfferResult> offered;
+        try {
+            offered = queue.offer(write);
+        } catch (RuntimeException e) {
+            offered = CompletableFuture.failedFuture(e);
+        }
+        return offered.handle((result, error) -> {
+            if (error == null && result == QueueOfferResult.enqueued()) {
+                return ackOnEnqueue ? CompletableFuture.<Void>completedFuture(null) : write.committed;
+            }
+            log.warn("Write-behind queue did not accept chat interaction ({}), saving it directly.",
+                    error != null ? error.getMessage() : result);
+            return write(Collections.singletonList(chatInteraction));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Stops accepting interactions and waits until everything already queued is written.
+     *
+     * @return a CompletionStage completing once the queue is drained
+     */
+    public CompletionStage<Done> shutdown() {
+        log.info("Draining write-behind queue.");
+        queue.complete();
+        return drained;
+    }
+
+    /**
+     * Writes one batch and settles the completion of every interaction in it. The returned
+     * stage never fails, so a failed batch does not stop the stream.
+     *
+     * @param batch the queued writes
+     * @return a CompletionStage completing once the batch has been handled
+     */
+    private CompletionStage<Void> flush(List<PendingWrite> batch) {
+        List<ChatInteraction> chatInteractions = batch.stream()
+                .map(write -> write.chatInteraction)
+                .collect(Collectors.toList());
+        log.debug("Flushing {} chat interactions.", chatInteractions.size());
+
+        return write(chatInteractions)
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        log.error("Failed to flush {} chat interactions.", chatInteractions.size(), error);
+                        batch.forEach(write -> write.committed.completeExceptionally(error));
+                    } else {
+                        batch.forEach(write -> write.committed.complete(null));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Hands interactions to the batch writer, turning a synchronous rejection into a
+     * failed stage.
+     *
+     * @param chatInteractions the interactions to write
+     * @return a CompletionStage completing once the interactions are written
+     */
+    private CompletionStage<Void> write(List<ChatInteraction> chatInteractions) {
+        try {
+            return batchWriter.apply(chatInteractions);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * A queued chat interaction together with the completion of its write.
+     */
+    private static final class PendingWrite {
+
+        private final ChatInteraction chatInteraction;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private PendingWrite(ChatInteraction chatInteraction) {
+            this.chatInteraction = chatInteraction;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatBatchItemDTO {
+
+    private int index;
+    private ChatInteractionDTO chat;
+    private String error;
+
+    public static ChatBatchItemDTO succeeded(int index, ChatInteractionDTO chat) {
+        return new ChatBatchItemDTO(index, chat, null);
+    }
+
+    public static ChatBatchItemDTO failed(int index, String error) {
+        return new ChatBatchItemDTO(index, null, error);
+    }
+}
@@ -0,0 +1,33 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatBatchRequestDTO {
+
+    public static final String MODE_FAIL_FAST = "failFast";
+    public static final String MODE_PARTIAL = "partial";
+    public static final int MAX_PROMPTS = 20;
+
+    @NotEmpty
+    @Size(max = MAX_PROMPTS)
+    @Valid
+    private List<ChatRequestDTO> prompts;
+
+    @Pattern(regexp = MODE_FAIL_FAST + "|" + MODE_PARTIAL, message = "must be failFast or partial")
+    private String mode = MODE_PARTIAL;
+
+    public boolean isFailFast() {
+        return MODE_FAIL_FAST.equals(mode);
+    }
+}
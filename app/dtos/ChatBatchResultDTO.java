@@ -0,0 +1,17 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatBatchResultDTO {
+
+    private List<ChatBatchItemDTO> results;
+    private int succeeded;
+    private int failed;
+}
@@ -0,0 +1,16 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatHistoryPageDTO {
+
+    private List<ChatInteractionDTO> items;
+    private String nextCursor;
+}
@@ -1,5 +1,6 @@
 package dtos;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,17 +13,25 @@ import java.sql.Timestamp;
 @Data
 public class ChatInteractionDTO {
 
+    /**
+     * Left out of the JSON while null, which it is for an interaction acknowledged
+     * before its write-behind batch was committed.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long id;
     private String chatRole;
     private String message;
     private String response;
     private Timestamp submittedAt;
     private String username;
+    private boolean responseTruncated;
 
     public static ChatInteractionDTO toDTO(ChatInteraction chatInteraction) {
         ChatInteractionDTO dto = new ChatInteractionDTO();
+        dto.setId(chatInteraction.getId());
         dto.setChatRole(chatInteraction.getChatRole());
         dto.setMessage(chatInteraction.getMessage());
-        dto.setResponse(chatInteraction.getResponse());
+        dto.setResponse(chatInteraction.getFullResponse());
         dto.setUsername(chatInteraction.getUsername());
         dto.setSubmittedAt(chatInteraction.getSubmittedAt());
         return dto;
@@ -0,0 +1,20 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import models.ChatStatus;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatJobStatusDTO {
+
+    private Long id;
+    private String status;
+    private ChatInteractionDTO chat;
+
+    public static ChatJobStatusDTO of(ChatInteractionDTO chat, ChatStatus status) {
+        return new ChatJobStatusDTO(chat.getId(), status.getWireName(), chat);
+    }
+}
@@ -4,7 +4,10 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import models.ChatInteraction;
+import models.ChatRole;
 
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
 import java.sql.Timestamp;
 
 @AllArgsConstructor
@@ -12,16 +15,35 @@ import java.sql.Timestamp;
 @Data
 public class ChatRequestDTO {
 
+    public static final String PENDING_RESPONSE = "Pending";
+    public static final String FAILED_RESPONSE = "Sorry, I couldn't generate a response.";
+    public static final String FALLBACK_RESPONSE_PREFIX = "Please try again later to interact with the ChatBot. ";
+
+    @NotBlank
+    @Pattern(regexp = "\\s*(system|user|assistant|developer)\\s*", flags = Pattern.Flag.CASE_INSENSITIVE,
+            message = "must be one of system, user, assistant or developer")
     private String chatRole;
     private String message;
+    private boolean bypassCache;
 
     public static ChatInteraction toEntity(ChatRequestDTO dto, String username) {
         ChatInteraction chatInteraction = new ChatInteraction();
-        chatInteraction.setChatRole(dto.getChatRole());
+        chatInteraction.setChatRole(ChatRole.fromName(dto.getChatRole()).getWireName());
         chatInteraction.setMessage(dto.getMessage());
-        chatInteraction.setResponse("Pending");
+        chatInteraction.setResponse(PENDING_RESPONSE);
         chatInteraction.setSubmittedAt(new Timestamp(System.currentTimeMillis()));
         chatInteraction.setUsername(username);
         return chatInteraction;
     }
+
+    /**
+     * Tells whether a response is one the application wrote in place of an answer from
+     * ChatGPT, which must not be replayed to the model as conversation context.
+     *
+     * @param response the saved response
+     * @return true for the failure and fallback responses
+     */
+    public static boolean isPlaceholderResponse(String response) {
+        return response == null || FAILED_RESPONSE.equals(response) || response.startsWith(FALLBACK_RESPONSE_PREFIX);
+    }
 }
@@ -0,0 +1,14 @@
+package dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatSearchHitDTO {
+
+    private double score;
+    private ChatInteractionDTO chat;
+}
@@ -0,0 +1,87 @@
+package export;
+
+import akka.stream.Materializer;
+import akka.stream.javadsl.Compression;
+import akka.stream.javadsl.FileIO;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import dao.ChatExportFilter;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+import services.ChatExportService;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line bulk export of chat interactions, for dumps too large or too slow to pull
+ * over HTTP. It starts the application's dependency graph against the configured
+ * database, with the background jobs switched off, and writes the same output as the
+ * export endpoint to a file. An output name ending in ".gz" is gzip-compressed.
+ *
+ * <pre>
+ * sbt "exportChats --out=chats.ndjson.gz"
+ * sbt "exportChats --format=csv --from=2024-01-01 --to=2024-07-01 --out=chats-h1.csv"
+ * sbt "exportChats --username=alice --out=alice.ndjson"
+ * </pre>
+ */
+public final class ChatExportCli {
+
+    private ChatExportCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String out = options.get("out");
+        if (out == null) {
+            System.err.println("Usage: exportChats --out=<file>[.gz] [--format=ndjson|csv] "
+                    + "[--username=<name>] [--from=<date|instant>] [--to=<date|instant>]");
+            System.exit(2);
+        }
+
+        ExportFormat format = ExportFormat.fromName(options.getOrDefault("format", "ndjson"));
+        ChatExportFilter filter = ChatExportFilter.parse(options.get("username"), options.get("from"), options.get("to"));
+        Path path = Paths.get(out);
+
+        Application application = new GuiceApplicationBuilder()
+                .configure("chat.search.enabled", false)
+                .configure("chat.retention.enabled", false)
+                .configure("chat.storage.migration.enabled", false)
+                .configure("chat.warmup.enabled", false)
+                .build();
+        try {
+            Materializer materializer = application.injector().instanceOf(Materializer.class);
+            Source<ByteString, ?> export = application.injector().instanceOf(ChatExportService.class)
+                    .export(filter, format);
+            if (out.endsWith(".gz")) {
+                export = export.via(Compression.gzip());
+            }
+
+            long start = System.nanoTime();
+            long bytes = export.runWith(FileIO.toPath(path), materializer)
+                    .toCompletableFuture()
+                    .get()
+                    .getCount();
+            System.out.printf("Wrote %d bytes of %s to %s in %d ms.%n",
+                    bytes, format.getExtension(), path.toAbsolutePath(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            Await.result(application.asScala().stop(), Duration.Inf());
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,138 @@
+package export;
+
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dtos.ChatInteractionDTO;
+import play.libs.Json;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Output formats of the bulk chat export. Each format turns a page of interactions
+ * into one chunk of output, so the export never holds more than a page in memory.
+ */
+public enum ExportFormat {
+
+    /**
+     * One JSON object per line, with the same fields as the history API.
+     */
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        public ByteString header() {
+            return ByteString.emptyByteString();
+        }
+
+        @Override
+        void append(ByteStringBuilder out, ChatInteractionDTO chat) {
+            try {
+                out.putBytes(Json.mapper().writeValueAsBytes(chat));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.putByte((byte) '\n');
+        }
+    },
+
+    /**
+     * RFC 4180 CSV with a header row; submission times are ISO-8601 instants. Text cells
+     * that a spreadsheet would evaluate as a formula are prefixed with a quote.
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public ByteString header() {
+            return ByteString.fromString("id,chat_role,username,submitted_at,message,response\r\n");
+        }
+
+        @Override
+        void append(ByteStringBuilder out, ChatInteractionDTO chat) {
+            String row = chat.getId() + "," +
+                    csvField(chat.getChatRole()) + "," +
+                    csvField(chat.getUsername()) + "," +
+                    chat.getSubmittedAt().toInstant() + "," +
+                    csvField(chat.getMessage()) + "," +
+                    csvField(chat.getResponse()) + "\r\n";
+            out.putBytes(row.getBytes(StandardCharsets.UTF_8));
+        }
+    };
+
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the bytes written before the first interaction.
+     *
+     * @return the header, empty if the format has none
+     */
+    public abstract ByteString header();
+
+    abstract void append(ByteStringBuilder out, ChatInteractionDTO chat);
+
+    /**
+     * Encodes a page of interactions as one chunk.
+     *
+     * @param chats the interactions, in export order
+     * @return the encoded interactions
+     */
+    public ByteString encode(List<ChatInteractionDTO> chats) {
+        ByteStringBuilder out = new ByteStringBuilder();
+        for (ChatInteractionDTO chat : chats) {
+            append(out, chat);
+        }
+        return out.result();
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Looks up a format by name, ignoring case.
+     *
+     * @param name the format name, "ndjson" or "csv"
+     * @return the format
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static ExportFormat fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unknown export format: " + name);
+        }
+    }
+
+    /**
+     * Quotes a CSV field if it contains a separator, quote or line break. A field starting
+     * with =, +, -, @, a tab or a carriage return is prefixed with a single quote, so
+     * spreadsheets show it as text instead of running it as a formula.
+     *
+     * @param value the field value, may be null
+     * @return the field as it appears in the row
+     */
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
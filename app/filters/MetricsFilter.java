@@ -0,0 +1,43 @@
+package filters;
+
+import akka.stream.Materializer;
+import metrics.InFlightGauge;
+import metrics.MetricsRegistry;
+import play.mvc.Filter;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Tracks the number of HTTP requests in flight. A request counts until its result is
+ * ready; the body of a streamed result may still be sent afterwards.
+ */
+@Singleton
+public class MetricsFilter extends Filter {
+
+    private final InFlightGauge inFlight;
+
+    @Inject
+    public MetricsFilter(Materializer materializer, MetricsRegistry metrics) {
+        super(materializer);
+        this.inFlight = metrics.getHttpRequestsInFlight();
+    }
+
+    @Override
+    public CompletionStage<Result> apply(Function<Http.RequestHeader, CompletionStage<Result>> next,
+                                         Http.RequestHeader requestHeader) {
+        inFlight.enter();
+        CompletionStage<Result> result;
+        try {
+            result = next.apply(requestHeader);
+        } catch (RuntimeException e) {
+            inFlight.exit();
+            throw e;
+        }
+        return result.whenComplete((ignored, error) -> inFlight.exit());
+    }
+}
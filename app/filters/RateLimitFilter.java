@@ -0,0 +1,69 @@
+package filters;
+
+import akka.stream.Materializer;
+import lombok.extern.slf4j.Slf4j;
+import play.mvc.Filter;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import resilience.AdmissionControl;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Rate limits chat submissions per username and per client IP. Requests over the
+ * limit are answered with 429 Too Many Requests and a Retry-After header before they
+ * reach ChatGPTController. Batches are charged one token per prompt by the controller
+ * instead, once their body is parsed.
+ */
+@Singleton
+@Slf4j
+public class RateLimitFilter extends Filter {
+
+    private static final String CHAT_PATH_PREFIX = "/chat/";
+    private static final String BATCH_PATH = "/chat/batch";
+
+    private final AdmissionControl admissionControl;
+
+    @Inject
+    public RateLimitFilter(Materializer materializer, AdmissionControl admissionControl) {
+        super(materializer);
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public CompletionStage<Result> apply(Function<Http.RequestHeader, CompletionStage<Result>> next,
+                                         Http.RequestHeader requestHeader) {
+        if (!"POST".equals(requestHeader.method()) || !requestHeader.path().startsWith(CHAT_PATH_PREFIX)
+                || requestHeader.path().equals(BATCH_PATH)) {
+            return next.apply(requestHeader);
+        }
+
+        String username = requestHeader.queryString("username").orElse(null);
+        Optional<Duration> retryAfter = admissionControl.admit(username, requestHeader.remoteAddress());
+        if (retryAfter.isEmpty()) {
+            return next.apply(requestHeader);
+        }
+
+        log.warn("Rate limit exceeded for user: {} from {}", username, requestHeader.remoteAddress());
+        return CompletableFuture.completedFuture(tooManyRequests(retryAfter.get()));
+    }
+
+    /**
+     * Builds the answer to a request over the rate limits.
+     *
+     * @param retryAfter how long the client should wait
+     * @return 429 Too Many Requests with a Retry-After header in whole seconds
+     */
+    public static Result tooManyRequests(Duration retryAfter) {
+        long retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        return Results.status(Http.Status.TOO_MANY_REQUESTS, "Too many requests, please slow down.")
+                .withHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of operations currently in progress. Every enter() must be paired with an exit().
+ */
+public class InFlightGauge {
+
+    private final LongAdder inFlight = new LongAdder();
+
+    public void enter() {
+        inFlight.increment();
+    }
+
+    public void exit() {
+        inFlight.decrement();
+    }
+
+    public long get() {
+        return inFlight.sum();
+    }
+}
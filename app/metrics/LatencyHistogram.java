@@ -0,0 +1,103 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets from about 65 microseconds to about 137
+ * seconds: every power of two is split into four equal sub-buckets, as in HdrHistogram,
+ * so a bucket is never wider than a quarter of its lower bound. Each bucket is a
+ * LongAdder, so recording never allocates or locks and stays cheap under contention;
+ * buckets are only summed when the histogram is exported.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LOWEST_POWER = 16;
+    private static final int HIGHEST_POWER = 37;
+
+    /**
+     * Upper bounds of the buckets in nanoseconds: 2^16, then four linear steps up to each
+     * following power of two until 2^37. Samples above the last bound fall into the
+     * overflow bucket.
+     */
+    static final long[] BUCKET_BOUNDS_NANOS = bucketBounds();
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one sample.
+     *
+     * @param nanos the measured latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long sample = Math.max(0, nanos);
+        buckets[bucketIndex(sample)].increment();
+        sumNanos.add(sample);
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() reading.
+     *
+     * @param startNanos the System.nanoTime() value taken when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of samples per bucket, the last entry being the overflow bucket.
+     * The counts are read one bucket at a time, so they are not an atomic snapshot.
+     *
+     * @return the per-bucket sample counts
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Finds the bucket of a sample in constant time: the highest set bit of nanos - 1
+     * selects the power of two and the next two bits the sub-bucket, so a sample equal
+     * to a bound falls into the bucket that bound closes.
+     */
+    static int bucketIndex(long nanos) {
+        if (nanos <= 1L << LOWEST_POWER) {
+            return 0;
+        }
+        long below = nanos - 1;
+        int power = 63 - Long.numberOfLeadingZeros(below);
+        if (power >= HIGHEST_POWER) {
+            return BUCKET_BOUNDS_NANOS.length;
+        }
+        int subBucket = (int) (below >>> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (power - LOWEST_POWER) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long[] bucketBounds() {
+        long[] bounds = new long[1 + (HIGHEST_POWER - LOWEST_POWER) * SUB_BUCKETS];
+        bounds[0] = 1L << LOWEST_POWER;
+        int i = 1;
+        for (int power = LOWEST_POWER; power < HIGHEST_POWER; power++) {
+            long step = 1L << (power - SUB_BUCKET_BITS);
+            for (int subBucket = 1; subBucket <= SUB_BUCKETS; subBucket++) {
+                bounds[i++] = (1L << power) + subBucket * step;
+            }
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,67 @@
+package metrics;
+
+import javax.inject.Singleton;
+
+/**
+ * Application-wide latency histograms, in-flight gauges and upstream status counters.
+ * Recording only touches LongAdders, so it is cheap enough to leave on in production;
+ * values are aggregated when the metrics are scraped.
+ */
+@Singleton
+public class MetricsRegistry {
+
+    private final LatencyHistogram[] stageLatencies = new LatencyHistogram[Stage.values().length];
+    private final InFlightGauge httpRequestsInFlight = new InFlightGauge();
+    private final InFlightGauge upstreamCallsInFlight = new InFlightGauge();
+    private final StatusCodeCounter upstreamStatuses = new StatusCodeCounter();
+
+    public MetricsRegistry() {
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the latency histogram of a processing stage.
+     *
+     * @param stage the processing stage
+     * @return the histogram recording the stage's latency
+     */
+    public LatencyHistogram stage(Stage stage) {
+        return stageLatencies[stage.ordinal()];
+    }
+
+    public InFlightGauge getHttpRequestsInFlight() {
+        return httpRequestsInFlight;
+    }
+
+    public InFlightGauge getUpstreamCallsInFlight() {
+        return upstreamCallsInFlight;
+    }
+
+    public StatusCodeCounter getUpstreamStatuses() {
+        return upstreamStatuses;
+    }
+
+    /**
+     * Writes every metric of the registry.
+     *
+     * @param writer the writer receiving the metrics
+     */
+    public void writeTo(PrometheusTextWriter writer) {
+        writer.family("chat_stage_duration_seconds", "histogram", "Latency of request processing stages.");
+        for (Stage stage : Stage.values()) {
+            writer.histogram("chat_stage_duration_seconds", "stage", stage.getLabel(), stage(stage));
+        }
+
+        writer.gauge("chat_http_requests_in_flight", "HTTP requests currently being handled.",
+                httpRequestsInFlight.get());
+        writer.gauge("chat_upstream_calls_in_flight", "ChatGPT API calls currently awaiting a response.",
+                upstreamCallsInFlight.get());
+
+        writer.family("chat_upstream_responses_total", "counter", "ChatGPT API responses by HTTP status code.");
+        upstreamStatuses.forEach((count, status) ->
+                writer.sample("chat_upstream_responses_total", "status", String.valueOf(status), count));
+        writer.sample("chat_upstream_responses_total", "status", "error", upstreamStatuses.getFailureCount());
+    }
+}
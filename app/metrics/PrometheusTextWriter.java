@@ -0,0 +1,146 @@
+package metrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Renders metrics in the Prometheus text exposition format (version 0.0.4).
+ */
+public class PrometheusTextWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String[] BUCKET_LABELS = bucketLabels();
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    /**
+     * Writes the HELP and TYPE lines of a metric family.
+     *
+     * @param name the metric name
+     * @param type the Prometheus type: counter, gauge or histogram
+     * @param help the description of the metric
+     * @return this writer
+     */
+    public PrometheusTextWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes one sample without labels.
+     *
+     * @param name the sample name
+     * @param value the sample value
+     * @return this writer
+     */
+    public PrometheusTextWriter sample(String name, double value) {
+        out.append(name).append(' ');
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes one sample with a single label.
+     *
+     * @param name the sample name
+     * @param label the label name
+     * @param labelValue the label value
+     * @param value the sample value
+     * @return this writer
+     */
+    public PrometheusTextWriter sample(String name, String label, String labelValue, double value) {
+        out.append(name).append('{').append(label).append("=\"");
+        appendEscaped(labelValue);
+        out.append("\"} ");
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a one-sample gauge family.
+     *
+     * @param name the metric name
+     * @param help the description of the metric
+     * @param value the current value
+     * @return this writer
+     */
+    public PrometheusTextWriter gauge(String name, String help, double value) {
+        return family(name, "gauge", help).sample(name, value);
+    }
+
+    /**
+     * Writes a one-sample counter family.
+     *
+     * @param name the metric name
+     * @param help the description of the metric
+     * @param value the current count
+     * @return this writer
+     */
+    public PrometheusTextWriter counter(String name, String help, double value) {
+        return family(name, "counter", help).sample(name, value);
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of a histogram in seconds. The family
+     * header must have been written before.
+     *
+     * @param name the metric name
+     * @param label the label distinguishing this histogram within its family
+     * @param labelValue the label value
+     * @param histogram the histogram to write
+     * @return this writer
+     */
+    public PrometheusTextWriter histogram(String name, String label, String labelValue, LatencyHistogram histogram) {
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{").append(label).append("=\"");
+            appendEscaped(labelValue);
+            out.append("\",le=\"");
+            out.append(BUCKET_LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        sample(name + "_sum", label, labelValue, histogram.getSumNanos() / 1e9);
+        sample(name + "_count", label, labelValue, cumulative);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private static String[] bucketLabels() {
+        long[] bounds = LatencyHistogram.BUCKET_BOUNDS_NANOS;
+        String[] labels = new String[bounds.length + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            labels[i] = BigDecimal.valueOf(bounds[i]).movePointLeft(9).stripTrailingZeros().toPlainString();
+        }
+        labels[bounds.length] = "+Inf";
+        return labels;
+    }
+
+    private void appendValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * Request processing stages whose latency is tracked in MetricsRegistry.
+ */
+public enum Stage {
+
+    FORM_BINDING("form_binding"),
+    UPSTREAM_QUEUE("upstream_queue"),
+    UPSTREAM_CALL("upstream_call"),
+    DB_SAVE("db_save"),
+    DB_QUERY("db_query"),
+    JSON_SERIALIZATION("json_serialization");
+
+    private final String label;
+
+    Stage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
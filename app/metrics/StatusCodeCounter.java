@@ -0,0 +1,60 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Counts HTTP status codes, plus calls that failed without a response. The adder of a
+ * status code is created on its first use; later increments do not allocate.
+ */
+public class StatusCodeCounter {
+
+    private static final int MAX_STATUS = 599;
+
+    private final AtomicReferenceArray<LongAdder> byStatus = new AtomicReferenceArray<>(MAX_STATUS + 1);
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Counts one response with the given status code.
+     *
+     * @param status the HTTP status code
+     */
+    public void record(int status) {
+        if (status < 100 || status > MAX_STATUS) {
+            recordFailure();
+            return;
+        }
+        LongAdder adder = byStatus.get(status);
+        if (adder == null) {
+            byStatus.compareAndSet(status, null, new LongAdder());
+            adder = byStatus.get(status);
+        }
+        adder.increment();
+    }
+
+    /**
+     * Counts one call that ended without a response, such as a timeout or connection error.
+     */
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    /**
+     * Passes the count of every status code seen so far to the consumer.
+     *
+     * @param consumer receives each status code with its count
+     */
+    public void forEach(ObjIntConsumer<Long> consumer) {
+        for (int status = 0; status <= MAX_STATUS; status++) {
+            LongAdder adder = byStatus.get(status);
+            if (adder != null) {
+                consumer.accept(adder.sum(), status);
+            }
+        }
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+}
@@ -0,0 +1,31 @@
+package models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "completion_cache", indexes = {
+        @Index(name = "idx_completion_cache_created_at", columnList = "created_at")
+})
+public class CachedCompletion {
+
+    @Id
+    @Column(name = "prompt_hash", length = 64)
+    private String promptHash;
+
+    @Column(nullable = false, length = 64)
+    private String model;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+}
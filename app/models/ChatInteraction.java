@@ -1,24 +1,44 @@
 package models;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.sql.Timestamp;
 
+/**
+ * A chat message and its response. The role and the status are stored as one-byte
+ * codes. Responses longer than INLINE_RESPONSE_LENGTH keep only a preview in the row;
+ * the full text is held in responseBody and stored compressed as a ChatResponseBody,
+ * which loading an interaction does not read. Queries that need the full text of loaded
+ * interactions join it with ChatResponseBody.LEFT_JOIN.
+ */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @Entity
-@Table(name = "chat_interaction")
+@Table(name = "chat_interaction", indexes = {
+        @Index(name = "idx_chat_interaction_username_submitted_at", columnList = "username, submitted_at, id"),
+        @Index(name = "idx_chat_interaction_username_id", columnList = "username, id"),
+        @Index(name = "idx_chat_interaction_status_submitted_at", columnList = "status_code, submitted_at")
+})
 public class ChatInteraction {
 
+    public static final int INLINE_RESPONSE_LENGTH = 1000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_interaction_id")
+    @GenericGenerator(name = "chat_interaction_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "hibernate_sequence"),
+                    @Parameter(name = "increment_size", value = "50"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     private Long id;
 
-    @Column(name = "chat_role", nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = ChatRoleConverter.class)
+    @Column(name = "role_code", nullable = false)
     private String chatRole;
 
     @Column(nullable = false, columnDefinition = "TEXT")
@@ -27,9 +47,60 @@ public class ChatInteraction {
     @Column(columnDefinition = "TEXT")
     private String response;
 
+    @Column(name = "response_truncated", nullable = false)
+    private boolean responseTruncated;
+
+    @Transient
+    private String responseBody;
+
+    @Convert(converter = ChatStatusConverter.class)
+    @Column(name = "status_code", nullable = false)
+    private ChatStatus status = ChatStatus.COMPLETE;
+
     @Column(name = "submitted_at", nullable = false)
     private Timestamp submittedAt;
 
     @Column(name = "username", nullable = false)
     private String username;
+
+    public ChatInteraction(Long id, String chatRole, String message, String response, Timestamp submittedAt,
+                           String username) {
+        this.id = id;
+        this.chatRole = chatRole;
+        this.message = message;
+        this.submittedAt = submittedAt;
+        this.username = username;
+        setResponse(response);
+    }
+
+    /**
+     * Sets the response. A long response is kept whole in responseBody, to be saved as a
+     * ChatResponseBody, and only its preview stays in the row.
+     *
+     * @param response the full response
+     */
+    public void setResponse(String response) {
+        if (response != null && response.length() > INLINE_RESPONSE_LENGTH) {
+            int previewEnd = Character.isHighSurrogate(response.charAt(INLINE_RESPONSE_LENGTH - 1))
+                    ? INLINE_RESPONSE_LENGTH - 1
+                    : INLINE_RESPONSE_LENGTH;
+            this.response = response.substring(0, previewEnd);
+            this.responseBody = response;
+            this.responseTruncated = true;
+        } else {
+            this.response = response;
+            this.responseBody = null;
+            this.responseTruncated = false;
+        }
+    }
+
+    /**
+     * Returns the complete response, whether it is stored in the row or in the side table.
+     * A long response is only available if the interaction was set or loaded with its body.
+     *
+     * @return the full response
+     */
+    public String getFullResponse() {
+        return responseTruncated ? responseBody : response;
+    }
 }
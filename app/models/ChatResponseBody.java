@@ -0,0 +1,58 @@
+package models;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.*;
+
+/**
+ * The compressed full text of a response too long to keep inline in its
+ * ChatInteraction. It shares the interaction's id and is a separate entity, so loading
+ * an interaction never reads it; queries that need the full text join it explicitly.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "chat_response_body")
+public class ChatResponseBody {
+
+    /**
+     * JPQL join from a ChatInteraction aliased c to its body aliased b, if it has one.
+     */
+    public static final String LEFT_JOIN = "LEFT JOIN ChatResponseBody b ON b.id = c.id ";
+
+    @Id
+    private Long id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "interaction_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ChatInteraction interaction;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "body", columnDefinition = "MEDIUMBLOB")
+    private String body;
+
+    public ChatResponseBody(ChatInteraction interaction, String body) {
+        this.interaction = interaction;
+        this.body = body;
+    }
+
+    /**
+     * Completes an interaction selected together with its body as "c, b.body".
+     *
+     * @param row the interaction and its body, or null if it has none
+     * @return the interaction, with its full response
+     */
+    public static ChatInteraction withBody(Object[] row) {
+        ChatInteraction chatInteraction = (ChatInteraction) row[0];
+        if (chatInteraction.isResponseTruncated()) {
+            chatInteraction.setResponseBody((String) row[1]);
+        }
+        return chatInteraction;
+    }
+}
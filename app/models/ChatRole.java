@@ -0,0 +1,64 @@
+package models;
+
+import java.util.Locale;
+
+/**
+ * Roles a chat message can be sent with, as understood by the chat completions API.
+ * Each role is stored as a one-byte code instead of its name.
+ */
+public enum ChatRole {
+
+    SYSTEM((byte) 1, "system"),
+    USER((byte) 2, "user"),
+    ASSISTANT((byte) 3, "assistant"),
+    DEVELOPER((byte) 4, "developer");
+
+    private final byte code;
+    private final String wireName;
+
+    ChatRole(byte code, String wireName) {
+        this.code = code;
+        this.wireName = wireName;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    /**
+     * Looks up a role by its name, ignoring case and surrounding whitespace.
+     *
+     * @param name the role name
+     * @return the role
+     * @throws IllegalArgumentException if the name is not a known role
+     */
+    public static ChatRole fromName(String name) {
+        String normalized = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        for (ChatRole role : values()) {
+            if (role.wireName.equals(normalized)) {
+                return role;
+            }
+        }
+        throw new IllegalArgumentException("Unknown chat role: " + name);
+    }
+
+    /**
+     * Looks up a role by its stored code.
+     *
+     * @param code the stored code
+     * @return the role
+     * @throws IllegalArgumentException if the code is not a known role
+     */
+    public static ChatRole fromCode(byte code) {
+        for (ChatRole role : values()) {
+            if (role.code == code) {
+                return role;
+            }
+        }
+        throw new IllegalArgumentException("Unknown chat role code: " + code);
+    }
+}
@@ -0,0 +1,21 @@
+package models;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a chat role name as its one-byte ChatRole code.
+ */
+@Converter
+public class ChatRoleConverter implements AttributeConverter<String, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(String chatRole) {
+        return chatRole == null ? null : ChatRole.fromName(chatRole).getCode();
+    }
+
+    @Override
+    public String convertToEntityAttribute(Byte code) {
+        return code == null ? null : ChatRole.fromCode(code).getWireName();
+    }
+}
@@ -0,0 +1,45 @@
+package models;
+
+/**
+ * States of a chat interaction. Interactions answered synchronously are complete when
+ * saved; those submitted asynchronously are pending until their job writes the response,
+ * and failed if it could not. Each state is stored as a one-byte code.
+ */
+public enum ChatStatus {
+
+    COMPLETE((byte) 0, "complete"),
+    PENDING((byte) 1, "pending"),
+    FAILED((byte) 2, "failed");
+
+    private final byte code;
+    private final String wireName;
+
+    ChatStatus(byte code, String wireName) {
+        this.code = code;
+        this.wireName = wireName;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    /**
+     * Looks up a state by its stored code.
+     *
+     * @param code the stored code
+     * @return the state
+     * @throws IllegalArgumentException if the code is not a known state
+     */
+    public static ChatStatus fromCode(byte code) {
+        for (ChatStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown chat status code: " + code);
+    }
+}
@@ -0,0 +1,21 @@
+package models;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a chat status as its one-byte ChatStatus code.
+ */
+@Converter
+public class ChatStatusConverter implements AttributeConverter<ChatStatus, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(ChatStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public ChatStatus convertToEntityAttribute(Byte code) {
+        return code == null ? null : ChatStatus.fromCode(code);
+    }
+}
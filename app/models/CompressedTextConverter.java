@@ -0,0 +1,85 @@
+package models;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores text as deflate-compressed UTF-8. The first byte identifies the codec, so the
+ * format can change without rewriting existing rows.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    private static final byte CODEC_DEFLATE = 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return text == null ? null : compress(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        return data == null ? null : decompress(data);
+    }
+
+    /**
+     * Compresses text into the stored format.
+     *
+     * @param text the text to compress
+     * @return the codec byte followed by the compressed UTF-8 bytes
+     */
+    public static byte[] compress(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            out.write(CODEC_DEFLATE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Restores text from the stored format.
+     *
+     * @param data the codec byte followed by the compressed bytes
+     * @return the original text
+     * @throws IllegalArgumentException if the data uses an unknown codec or is corrupt
+     */
+    public static String decompress(byte[] data) {
+        if (data.length == 0 || data[0] != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown compressed text codec");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed text");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A row that a background job locks for update while it works, so that only one
+ * application node runs that step of the job at a time. The row carries no state; the
+ * row lock held until the transaction ends is the lock.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "job_lock")
+public class JobLock {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+}
@@ -0,0 +1,106 @@
+package resilience;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-username and per-IP admission control for chat requests. Both dimensions are
+ * token buckets; a request is admitted only if both have a token, and a token is only
+ * taken once both have been checked, so requests refused per user do not drain the
+ * budget of their IP. Idle buckets are
+ * evicted periodically so memory only grows with the number of active clients.
+ */
+@Singleton
+@Slf4j
+public class AdmissionControl {
+
+    private final TokenBucketRateLimiter userLimiter;
+    private final TokenBucketRateLimiter ipLimiter;
+
+    /**
+     * Constructs AdmissionControl from the "chat.rateLimit" configuration section.
+     *
+     * @param actorSystem the actor system scheduling the eviction of idle buckets
+     * @param config the configuration object containing the rate limits
+     * @param lifecycle the application lifecycle used to stop the eviction task
+     */
+    @Inject
+    public AdmissionControl(ActorSystem actorSystem, Config config, ApplicationLifecycle lifecycle) {
+        Config rateLimitConfig = config.getConfig("chat.rateLimit");
+        this.userLimiter = new TokenBucketRateLimiter(
+                rateLimitConfig.getDouble("user.tokensPerSecond"), rateLimitConfig.getInt("user.burst"), System::nanoTime);
+        this.ipLimiter = new TokenBucketRateLimiter(
+                rateLimitConfig.getDouble("ip.tokensPerSecond"), rateLimitConfig.getInt("ip.burst"), System::nanoTime);
+
+        Duration evictionInterval = rateLimitConfig.getDuration("evictionInterval");
+        Cancellable eviction = actorSystem.scheduler().scheduleAtFixedRate(evictionInterval, evictionInterval, () -> {
+            int evicted = userLimiter.evictIdle() + ipLimiter.evictIdle();
+            log.debug("Evicted {} idle rate limit buckets.", evicted);
+        }, actorSystem.dispatcher());
+        lifecycle.addStopHook(() -> {
+            eviction.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Charges a request to its username, if any, and its client IP.
+     *
+     * @param username the username of the request, or null if absent
+     * @param remoteAddress the client IP of the request
+     * @return empty if the request is admitted, otherwise how long the client should wait
+     */
+    public Optional<Duration> admit(String username, String remoteAddress) {
+        return admit(username, remoteAddress, 1);
+    }
+
+    /**
+     * Charges a request carrying several prompts, one token per prompt, to its username,
+     * if any, and its client IP. Either all tokens are taken or none.
+     *
+     * @param username the username of the request, or null if absent
+     * @param remoteAddress the client IP of the request
+     * @param prompts the number of prompts in the request
+     * @return empty if the request is admitted, otherwise how long the client should wait
+     */
+    public Optional<Duration> admit(String username, String remoteAddress, int prompts) {
+        long wait = ipLimiter.check(remoteAddress, prompts);
+        if (wait == 0 && username != null) {
+            wait = userLimiter.check(username, prompts);
+        }
+        if (wait > 0) {
+            return Optional.of(Duration.ofNanos(wait));
+        }
+
+        long ipWait = ipLimiter.tryAcquire(remoteAddress, prompts);
+        if (ipWait > 0) {
+            return Optional.of(Duration.ofNanos(ipWait));
+        }
+        if (username != null) {
+            long userWait = userLimiter.tryAcquire(username, prompts);
+            if (userWait > 0) {
+                // a concurrent request took the user's last tokens after the check
+                ipLimiter.release(remoteAddress, prompts);
+                return Optional.of(Duration.ofNanos(userWait));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public TokenBucketRateLimiter getUserLimiter() {
+        return userLimiter;
+    }
+
+    public TokenBucketRateLimiter getIpLimiter() {
+        return ipLimiter;
+    }
+}
@@ -0,0 +1,106 @@
+package resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that adapts with additive increase and multiplicative decrease.
+ * While calls succeed within the latency threshold and the limit is in use, it grows
+ * by one; when a call fails or is slow, it shrinks by the backoff ratio.
+ */
+public class AimdConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit the limit to start with
+     * @param minLimit the lowest the limit may shrink to
+     * @param maxLimit the highest the limit may grow to
+     * @param backoffRatio the factor applied to the limit when a call fails or is slow
+     * @param latencyThresholdNanos calls slower than this count as congestion
+     */
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                  double backoffRatio, long latencyThresholdNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Claims a slot if the number of calls in flight is below the current limit.
+     *
+     * @return true if the call may proceed; it must then report exactly one outcome
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot after a successful call.
+     *
+     * @param latencyNanos how long the call took
+     */
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease();
+        } else if (current * 2 >= limit) {
+            increase();
+        }
+    }
+
+    /**
+     * Releases a slot after a call that failed or timed out.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    /**
+     * Releases a slot without adjusting the limit, for calls whose outcome says nothing
+     * about upstream congestion.
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1);
+    }
+
+    private synchronized void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,102 @@
+package resilience;
+
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of open chat WebSocket connections, in total and per username, so
+ * long-lived connections cannot exhaust server resources.
+ */
+@Singleton
+@Slf4j
+public class ConnectionLimiter {
+
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final AtomicInteger open = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> openPerUser = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs a ConnectionLimiter from the "chat.ws" configuration section.
+     *
+     * @param config the configuration object containing the connection limits
+     */
+    @Inject
+    public ConnectionLimiter(Config config) {
+        this.maxConnections = config.getInt("chat.ws.maxConnections");
+        this.maxConnectionsPerUser = config.getInt("chat.ws.maxConnectionsPerUser");
+    }
+
+    /**
+     * Tells whether a user could open a connection now, counting a rejection if not.
+     * Nothing is claimed, so a handshake that never completes holds no slot.
+     *
+     * @param username the username opening the connection
+     * @return true if neither limit is reached
+     */
+    public boolean hasCapacity(String username) {
+        if (open.get() >= maxConnections || openPerUser.getOrDefault(username, 0) >= maxConnectionsPerUser) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Claims a connection slot for a user if neither limit is reached.
+     *
+     * @param username the username opening the connection
+     * @return true if the connection may be opened; it must then be released exactly once
+     */
+    public boolean tryAcquire(String username) {
+        if (open.incrementAndGet() > maxConnections) {
+            open.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+
+        boolean[] admitted = {false};
+        openPerUser.compute(username, (ignored, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConnectionsPerUser) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        if (!admitted[0]) {
+            open.decrementAndGet();
+            rejected.increment();
+        }
+        return admitted[0];
+    }
+
+    /**
+     * Releases a connection slot claimed with tryAcquire.
+     *
+     * @param username the username that opened the connection
+     */
+    public void release(String username) {
+        openPerUser.computeIfPresent(username, (ignored, count) -> count <= 1 ? null : count - 1);
+        open.decrementAndGet();
+    }
+
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,307 @@
+package resilience;
+
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Fair-share scheduler in front of the upstream API. Calls wait in one FIFO queue per
+ * user and are started by deficit round robin over their estimated token cost: each
+ * round credits every waiting user with a quantum of tokens, and a user may start calls
+ * while its credit covers their cost. A user sending huge prompts therefore gets the
+ * same token throughput as everybody else, and a short question only waits for one
+ * round of other users' calls instead of for everything queued before it.
+ *
+ * <p>At most maxConcurrent calls run at once, and never more than the adaptive limit of
+ * the upstream guard, so calls wait here instead of being rejected by it. A call still
+ * queued when its deadline passes fails with an {@link UpstreamUnavailableException}
+ * without being sent and leaves its user's queue at once. Calls without a username
+ * are queued on their own rather than sharing one anonymous queue, as they are already
+ * limited per client IP by the admission control filter.
+ */
+@Singleton
+@Slf4j
+public class FairScheduler {
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int EXPIRED = 2;
+
+    private final IntSupplier concurrencyLimit;
+    private final int quantum;
+    private final int maxQueuedPerUser;
+    private final Duration maxQueueWait;
+    private final LatencyHistogram queueWait;
+    private final Map<String, UserQueue> queues = new HashMap<>();
+    private final ArrayDeque<UserQueue> active = new ArrayDeque<>();
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private int running;
+    private int queued;
+
+    /**
+     * Constructs a FairScheduler from the "chat.scheduler" configuration section.
+     *
+     * @param upstreamGuard the guard whose adaptive limit caps the running calls
+     * @param metrics the registry recording the queue wait
+     * @param config the configuration object containing the scheduler settings
+     */
+    @Inject
+    public FairScheduler(UpstreamGuard upstreamGuard, MetricsRegistry metrics, Config config) {
+        this(config.getConfig("chat.scheduler"), () -> upstreamGuard.getLimiter().getLimit(),
+                metrics.stage(Stage.UPSTREAM_QUEUE));
+    }
+
+    /**
+     * Constructs a FairScheduler with the given upstream limit.
+     *
+     * @param schedulerConfig the scheduler configuration section
+     * @param upstreamLimit supplies the current upstream concurrency limit
+     * @param queueWait the histogram recording how long started calls waited
+     */
+    FairScheduler(Config schedulerConfig, IntSupplier upstreamLimit, LatencyHistogram queueWait) {
+        int maxConcurrent = schedulerConfig.getInt("maxConcurrent");
+        this.concurrencyLimit = () -> Math.min(maxConcurrent, upstreamLimit.getAsInt());
+        this.quantum = schedulerConfig.getInt("quantum");
+        this.maxQueuedPerUser = schedulerConfig.getInt("maxQueuedPerUser");
+        this.maxQueueWait = schedulerConfig.getDuration("maxQueueWait");
+        this.queueWait = queueWait;
+    }
+
+    /**
+     * Queues an upstream call for a user and starts it when the user's turn comes and a
+     * slot is free.
+     *
+     * @param username the user the call is made for, or null for an anonymous call
+     * @param cost the estimated token cost of the call
+     * @param call starts the call
+     * @param <T> the result type
+     * @return a CompletionStage containing the result of the call, failed with an
+     *         UpstreamUnavailableException if the user has too many calls waiting or the
+     *         call waited longer than maxQueueWait
+     */
+    public <T> CompletionStage<T> submit(String username, int cost, Supplier<CompletionStage<T>> call) {
+        Task<T> task;
+        synchronized (this) {
+            UserQueue queue = username == null ? new UserQueue(null) : queues.computeIfAbsent(username, UserQueue::new);
+            if (queue.tasks.size() >= maxQueuedPerUser) {
+                rejected.increment();
+                log.warn("User {} has {} upstream calls waiting, rejecting call.", username, queue.tasks.size());
+                return CompletableFuture.failedFuture(
+                        new UpstreamUnavailableException("Too many chat messages waiting for a response"));
+            }
+            if (queue.tasks.isEmpty()) {
+                active.addLast(queue);
+            }
+            task = new Task<>(call, Math.max(cost, 1), queue);
+            queue.tasks.addLast(task);
+            queued++;
+        }
+        dispatch();
+        if (task.state.get() == QUEUED) {
+            CompletableFuture.delayedExecutor(maxQueueWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> expire(task));
+        }
+        return task.result;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getWaitingUserCount() {
+        return active.size();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getAsInt();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Starts queued calls while slots are free. Calls that complete synchronously request
+     * another pass instead of recursing, so a burst of immediate failures cannot grow the
+     * stack.
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            while (true) {
+                Task<?> task;
+                synchronized (this) {
+                    if (running >= concurrencyLimit.getAsInt()) {
+                        break;
+                    }
+                    task = next();
+                    if (task == null) {
+                        break;
+                    }
+                    running++;
+                    queued--;
+                }
+                start(task);
+            }
+            missed = dispatchRequests.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Picks the next call by deficit round robin. The user at the head of the ring starts
+     * its oldest call if its credit covers the cost; otherwise it is credited a quantum
+     * and moves to the back. A user whose queue empties leaves the ring and loses its
+     * remaining credit, so idle users cannot save up credit.
+     *
+     * @return the call to start, or null if none is waiting
+     */
+    private Task<?> next() {
+        while (!active.isEmpty()) {
+            UserQueue queue = active.peekFirst();
+            Task<?> head = queue.tasks.peekFirst();
+            if (head == null) {
+                active.pollFirst();
+                removeQueue(queue);
+                continue;
+            }
+            if (head.state.get() == EXPIRED) {
+                queue.tasks.pollFirst();
+                continue;
+            }
+            if (queue.deficit < head.cost) {
+                queue.deficit += quantum;
+                active.addLast(active.pollFirst());
+                continue;
+            }
+            if (!head.state.compareAndSet(QUEUED, STARTED)) {
+                continue;
+            }
+            queue.tasks.pollFirst();
+            queue.deficit -= head.cost;
+            if (queue.tasks.isEmpty()) {
+                active.pollFirst();
+                removeQueue(queue);
+            }
+            return head;
+        }
+        return null;
+    }
+
+    private void removeQueue(UserQueue queue) {
+        if (queue.username != null) {
+            queues.remove(queue.username, queue);
+        }
+    }
+
+    private <T> void start(Task<T> task) {
+        queueWait.recordSince(task.enqueuedAt);
+        CompletionStage<T> call;
+        try {
+            call = task.call.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((result, error) -> {
+            synchronized (this) {
+                running--;
+            }
+            dispatch();
+            if (error != null) {
+                task.result.completeExceptionally(error);
+            } else {
+                task.result.complete(result);
+            }
+        });
+    }
+
+    /**
+     * Fails a call that is still queued at its deadline and removes it from its user's
+     * queue, so it no longer counts against the user's maxQueuedPerUser. A user left
+     * without waiting calls leaves the ring and loses its credit, as in {@link #next()}.
+     *
+     * @param task the call to expire
+     */
+    private void expire(Task<?> task) {
+        if (!task.state.compareAndSet(QUEUED, EXPIRED)) {
+            return;
+        }
+        synchronized (this) {
+            queued--;
+            UserQueue queue = task.queue;
+            queue.tasks.remove(task);
+            if (queue.tasks.isEmpty()) {
+                active.remove(queue);
+                removeQueue(queue);
+            }
+        }
+        expired.increment();
+        log.warn("Upstream call waited longer than {} for a slot, dropping it.", maxQueueWait);
+        task.result.completeExceptionally(new UpstreamUnavailableException(
+                "Chat message waited longer than " + maxQueueWait + " for the upstream"));
+    }
+
+    /**
+     * The waiting calls of one user and the token credit left in the current round.
+     */
+    private static final class UserQueue {
+
+        private final String username;
+        private final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        private long deficit;
+
+        private UserQueue(String username) {
+            this.username = username;
+        }
+    }
+
+    /**
+     * One queued call. Its state moves from queued to either started or expired exactly
+     * once.
+     */
+    private static final class Task<T> {
+
+        private final Supplier<CompletionStage<T>> call;
+        private final int cost;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final UserQueue queue;
+
+        private Task(Supplier<CompletionStage<T>> call, int cost, UserQueue queue) {
+            this.call = call;
+            this.cost = cost;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package resilience;
+
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of chat history streams reading from a database cursor at once.
+ * Each such stream holds a pooled connection until it finishes, so the limit is kept
+ * below the pool size and slow readers cannot starve the other database work.
+ */
+@Singleton
+@Slf4j
+public class HistoryStreamLimiter {
+
+    private final int maxStreams;
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs a HistoryStreamLimiter from "chat.history.stream.maxConcurrent", capped at
+     * one less than the connection pool.
+     *
+     * @param config the configuration object containing the stream limit and pool size
+     */
+    @Inject
+    public HistoryStreamLimiter(Config config) {
+        this(config.getInt("chat.history.stream.maxConcurrent"), config.getInt("fixedConnectionPool"));
+    }
+
+    HistoryStreamLimiter(int maxConcurrent, int poolSize) {
+        this.maxStreams = Math.max(1, Math.min(maxConcurrent, poolSize - 1));
+        if (maxStreams < maxConcurrent) {
+            log.warn("Limiting concurrent history streams to {} to leave a pooled connection free", maxStreams);
+        }
+    }
+
+    /**
+     * Claims a stream slot if the limit is not reached.
+     *
+     * @return true if the stream may be opened; it must then be released exactly once
+     */
+    public boolean tryAcquire() {
+        if (open.incrementAndGet() > maxStreams) {
+            open.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a stream slot claimed with tryAcquire.
+     */
+    public void release() {
+        open.decrementAndGet();
+    }
+
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,172 @@
+package resilience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-key token bucket, implemented as the generic cell rate algorithm: each key keeps
+ * a single "theoretical arrival time" updated with compare-and-set, so admission is
+ * lock-free. Keys live in a ConcurrentHashMap and a key whose bucket has refilled is
+ * indistinguishable from a new one, so idle keys can be evicted without changing
+ * behaviour. Eviction first marks a bucket as evicted with compare-and-set, so a request
+ * racing with it either lands before the mark and keeps the bucket, or sees the mark and
+ * starts a fresh bucket; no token is taken from a bucket that is being dropped.
+ */
+public class TokenBucketRateLimiter {
+
+    private static final long EVICTED = Long.MAX_VALUE;
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param tokensPerSecond the rate at which each bucket refills
+     * @param burst the capacity of each bucket
+     * @param clock the source of monotonic time in nanoseconds
+     */
+    public TokenBucketRateLimiter(double tokensPerSecond, int burst, LongSupplier clock) {
+        this.emissionIntervalNanos = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstNanos = emissionIntervalNanos * burst;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     *
+     * @param key the key to charge
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Takes several tokens at once from the bucket of a key. A request for more tokens
+     * than the burst is admitted only when the bucket is full, and leaves it in debt.
+     *
+     * @param key the key to charge
+     * @param permits the number of tokens to take
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until they are available
+     */
+    public long tryAcquire(String key, int permits) {
+        long cost = emissionIntervalNanos * permits;
+        long tolerance = Math.max(burstNanos, cost);
+        while (true) {
+            AtomicLong theoreticalArrival = buckets.computeIfAbsent(key, ignored -> new AtomicLong(Long.MIN_VALUE));
+            long now = clock.getAsLong();
+            long current = theoreticalArrival.get();
+            if (current == EVICTED) {
+                buckets.remove(key, theoreticalArrival);
+                continue;
+            }
+            long next = Math.max(current, now) + cost;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns how long a request on a key would have to wait, without taking a token.
+     *
+     * @param key the key to check
+     * @return 0 if a token is available, otherwise the nanoseconds until one is
+     */
+    public long check(String key) {
+        return check(key, 1);
+    }
+
+    /**
+     * Returns how long a request for several tokens would have to wait, without taking any.
+     *
+     * @param key the key to check
+     * @param permits the number of tokens the request needs
+     * @return 0 if the tokens are available, otherwise the nanoseconds until they are
+     */
+    public long check(String key, int permits) {
+        AtomicLong theoreticalArrival = buckets.get(key);
+        long current = theoreticalArrival == null ? Long.MIN_VALUE : theoreticalArrival.get();
+        if (current == EVICTED) {
+            return 0;
+        }
+        long cost = emissionIntervalNanos * permits;
+        long now = clock.getAsLong();
+        long wait = Math.max(current, now) + cost - now - Math.max(burstNanos, cost);
+        if (wait > 0) {
+            rejected.increment();
+            return wait;
+        }
+        return 0;
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire} for a request that was then refused
+     * for another reason.
+     *
+     * @param key the key that was charged
+     */
+    public void release(String key) {
+        release(key, 1);
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryAcquire(String, int)} for a request that was
+     * then refused for another reason.
+     *
+     * @param key the key that was charged
+     * @param permits the number of tokens to give back
+     */
+    public void release(String key, int permits) {
+        AtomicLong theoreticalArrival = buckets.get(key);
+        if (theoreticalArrival == null) {
+            return;
+        }
+        long cost = emissionIntervalNanos * permits;
+        while (true) {
+            long current = theoreticalArrival.get();
+            if (current == EVICTED || theoreticalArrival.compareAndSet(current, current - cost)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the keys whose buckets are full again.
+     *
+     * @return the number of keys removed
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLong> bucket : buckets.entrySet()) {
+            AtomicLong theoreticalArrival = bucket.getValue();
+            long current = theoreticalArrival.get();
+            if (current <= now && theoreticalArrival.compareAndSet(current, EVICTED)) {
+                buckets.remove(bucket.getKey(), theoreticalArrival);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,146 @@
+package resilience;
+
+import akka.actor.ActorSystem;
+import akka.pattern.CircuitBreaker;
+import akka.pattern.CircuitBreakerOpenException;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Guards calls to the upstream completion API with a circuit breaker and an adaptive
+ * concurrency limit. When the circuit is open or the limit is saturated, calls fail
+ * immediately with an {@link UpstreamUnavailableException} instead of queueing.
+ */
+@Singleton
+@Slf4j
+public class UpstreamGuard {
+
+    private final CircuitBreaker circuitBreaker;
+    private final AimdConcurrencyLimiter limiter;
+    private final Duration requestTimeout;
+
+    /**
+     * Constructs an UpstreamGuard from the "openai" configuration section.
+     *
+     * @param actorSystem the actor system providing the scheduler for the circuit breaker
+     * @param config the configuration object containing the guard settings
+     */
+    @Inject
+    public UpstreamGuard(ActorSystem actorSystem, Config config) {
+        this.requestTimeout = config.getDuration("openai.requestTimeout");
+
+        Config breakerConfig = config.getConfig("openai.circuitBreaker");
+        this.circuitBreaker = CircuitBreaker.create(actorSystem.scheduler(),
+                        breakerConfig.getInt("maxFailures"),
+                        breakerConfig.getDuration("callTimeout"),
+                        breakerConfig.getDuration("resetTimeout"))
+                .addOnOpenListener(() -> log.warn("Upstream circuit breaker opened."))
+                .addOnHalfOpenListener(() -> log.info("Upstream circuit breaker half-open, probing upstream."))
+                .addOnCloseListener(() -> log.info("Upstream circuit breaker closed."));
+
+        Config limitConfig = config.getConfig("openai.concurrency");
+        this.limiter = new AimdConcurrencyLimiter(
+                limitConfig.getInt("initialLimit"),
+                limitConfig.getInt("minLimit"),
+                limitConfig.getInt("maxLimit"),
+                limitConfig.getDouble("backoffRatio"),
+                limitConfig.getDuration("latencyThreshold").toNanos());
+    }
+
+    /**
+     * Runs an upstream call if the circuit is closed and a concurrency slot is free.
+     *
+     * @param call starts the upstream call
+     * @param <T> the result type
+     * @return a CompletionStage containing the result, failed with an
+     *         UpstreamUnavailableException if the call was not attempted
+     */
+    public <T> CompletionStage<T> call(Supplier<CompletionStage<T>> call) {
+        return callUntilSettled(settled -> call.get().whenComplete((result, error) -> settled.complete(null)));
+    }
+
+    /**
+     * Runs an upstream call that may still have requests in flight once its result is
+     * known, such as a hedged call whose losing request has not answered yet. The result
+     * is returned as soon as it is known, but the concurrency slot is only released when
+     * the call completes the future it is given, so requests the caller no longer waits
+     * for still count against the limit.
+     *
+     * @param call starts the upstream call, and completes the given future once none of
+     *             its requests is in flight any more
+     * @param <T> the result type
+     * @return a CompletionStage containing the result, failed with an
+     *         UpstreamUnavailableException if the call was not attempted
+     */
+    public <T> CompletionStage<T> callUntilSettled(Function<CompletableFuture<Void>, CompletionStage<T>> call) {
+        if (circuitBreaker.isOpen()) {
+            return CompletableFuture.failedFuture(new UpstreamUnavailableException("Upstream circuit breaker is open"));
+        }
+        if (!limiter.tryAcquire()) {
+            log.warn("Upstream concurrency limit of {} reached, rejecting call.", limiter.getLimit());
+            return CompletableFuture.failedFuture(new UpstreamUnavailableException("Upstream concurrency limit reached"));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> settled = new CompletableFuture<>();
+        AtomicBoolean started = new AtomicBoolean();
+        return circuitBreaker.callWithCircuitBreakerCS(() -> {
+                    started.set(true);
+                    try {
+                        return call.apply(settled);
+                    } catch (RuntimeException e) {
+                        settled.complete(null);
+                        throw e;
+                    }
+                })
+                .whenComplete((result, error) -> {
+                    long latencyNanos = System.nanoTime() - start;
+                    if (!started.get()) {
+                        settled.complete(null);
+                    }
+                    settled.whenComplete((ignored, settleError) -> {
+                        if (error == null) {
+                            limiter.onSuccess(latencyNanos);
+                        } else if (unwrap(error) instanceof CircuitBreakerOpenException) {
+                            limiter.onIgnore();
+                        } else {
+                            limiter.onDropped();
+                        }
+                    });
+                });
+    }
+
+    /**
+     * Returns the deadline applied to each upstream request.
+     *
+     * @return the per-request timeout
+     */
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public String getCircuitState() {
+        if (circuitBreaker.isOpen()) {
+            return "open";
+        }
+        return circuitBreaker.isHalfOpen() ? "half-open" : "closed";
+    }
+
+    public AimdConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
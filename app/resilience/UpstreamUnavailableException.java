@@ -0,0 +1,12 @@
+package resilience;
+
+/**
+ * Signals that an upstream call was not attempted because the circuit breaker is open
+ * or the concurrency limit is saturated.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,83 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Append-only postings of one term: document numbers in increasing order with their
+ * term frequencies, stored as variable-length integers with delta-encoded document
+ * numbers. Most postings take two bytes.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int size;
+    private int lastDocument = -1;
+    private int documentFrequency;
+
+    /**
+     * Appends a posting. Document numbers must be added in increasing order.
+     *
+     * @param document the document number
+     * @param termFrequency the number of occurrences of the term in the document
+     */
+    void add(int document, int termFrequency) {
+        writeVarInt(document - lastDocument);
+        writeVarInt(termFrequency);
+        lastDocument = document;
+        documentFrequency++;
+    }
+
+    int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    int getSizeInBytes() {
+        return size;
+    }
+
+    /**
+     * Passes every posting to the consumer in document order.
+     *
+     * @param consumer receives the document number and term frequency of each posting
+     */
+    void forEach(PostingConsumer consumer) {
+        int position = 0;
+        int document = -1;
+        while (position < size) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int termFrequency = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                termFrequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            document += delta;
+            consumer.accept(document, termFrequency);
+        }
+    }
+
+    private void writeVarInt(int value) {
+        if (size + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+
+    @FunctionalInterface
+    interface PostingConsumer {
+
+        void accept(int document, int termFrequency);
+    }
+}
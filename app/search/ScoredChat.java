@@ -0,0 +1,15 @@
+package search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A chat interaction matching a search, with its BM25 score.
+ */
+@Getter
+@AllArgsConstructor
+public class ScoredChat {
+
+    private final long chatId;
+    private final double score;
+}
@@ -0,0 +1,56 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lower-case search terms at every character that is not a letter or
+ * digit. Very short tokens and common English stop words are dropped.
+ */
+public final class Tokenizer {
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "he", "in", "is", "it", "its",
+            "of", "on", "or", "that", "the", "this", "to", "was", "were", "will", "with");
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Tokenizes text into search terms, in order of appearance.
+     *
+     * @param text the text to tokenize, may be null
+     * @return the search terms
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                addTerm(terms, text.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String token) {
+        if (token.length() < MIN_TOKEN_LENGTH || token.length() > MAX_TOKEN_LENGTH) {
+            return;
+        }
+        String term = token.toLowerCase(Locale.ROOT);
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(term);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index over the chat interactions of one user, ranked with Okapi BM25.
+ * Interactions are numbered in the order they are added; postings and document
+ * lengths are kept in primitive form. Removed interactions are only marked as such and
+ * skipped by searches, until compact() drops their postings and renumbers the rest in
+ * id order.
+ */
+public class UserIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_REMOVED_TO_COMPACT = 64;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private long[] chatIds = new long[16];
+    private int[] documentLengths = new int[16];
+    private boolean[] removed = new boolean[16];
+    private int documentCount;
+    private int liveCount;
+    private int removedCount;
+    private long totalLength;
+    private boolean chatIdsAscending = true;
+
+    /**
+     * Adds a chat interaction to the index.
+     *
+     * @param chatId the id of the chat interaction
+     * @param terms the terms of its text, as produced by Tokenizer
+     */
+    public synchronized void add(long chatId, List<String> terms) {
+        if (documentCount == chatIds.length) {
+            chatIds = Arrays.copyOf(chatIds, documentCount * 2);
+            documentLengths = Arrays.copyOf(documentLengths, documentCount * 2);
+            removed = Arrays.copyOf(removed, documentCount * 2);
+        }
+        if (documentCount > 0 && chatId <= chatIds[documentCount - 1]) {
+            chatIdsAscending = false;
+        }
+        int document = documentCount++;
+        chatIds[document] = chatId;
+        documentLengths[document] = terms.size();
+        liveCount++;
+        totalLength += terms.size();
+
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        termFrequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, ignored -> new PostingList()).add(document, frequency));
+    }
+
+    /**
+     * Tells whether a chat interaction has been added and not removed.
+     *
+     * @param chatId the id of the chat interaction
+     * @return true if the interaction is in the index
+     */
+    public synchronized boolean contains(long chatId) {
+        int document = find(chatId);
+        return document >= 0 && !removed[document];
+    }
+
+    /**
+     * Removes a chat interaction from the search results.
+     *
+     * @param chatId the id of the chat interaction
+     * @return true if the interaction was in the index
+     */
+    public synchronized boolean remove(long chatId) {
+        int document = find(chatId);
+        if (document < 0 || removed[document]) {
+            return false;
+        }
+        removed[document] = true;
+        liveCount--;
+        removedCount++;
+        totalLength -= documentLengths[document];
+        return true;
+    }
+
+    /**
+     * Ranks the chat interactions containing any of the query terms with BM25.
+     *
+     * @param queryTerms the terms of the query, as produced by Tokenizer
+     * @param limit the maximum number of results
+     * @return the best matches, highest score first
+     */
+    public synchronized List<ScoredChat> search(List<String> queryTerms, int limit) {
+        if (liveCount == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / liveCount);
+        double[] scores = new double[documentCount];
+        boolean[] matched = new boolean[documentCount];
+
+        for (String term : new LinkedHashSet<>(queryTerms)) {
+            PostingList postingList = postings.get(term);
+            if (postingList == null) {
+                continue;
+            }
+            int documentFrequency = removedCount == 0 ? postingList.getDocumentFrequency() : liveFrequency(postingList);
+            double idf = Math.log(1 + Math.max(0, liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            postingList.forEach((document, termFrequency) -> {
+                if (removed[document]) {
+                    return;
+                }
+                double lengthNorm = K1 * (1 - B + B * documentLengths[document] / averageLength);
+                scores[document] += idf * termFrequency * (K1 + 1) / (termFrequency + lengthNorm);
+                matched[document] = true;
+            });
+        }
+
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1,
+                Comparator.<Integer>comparingDouble(document -> scores[document]).thenComparingInt(document -> document));
+        for (int document = 0; document < documentCount; document++) {
+            if (matched[document]) {
+                best.offer(document);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        List<ScoredChat> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            int document = best.poll();
+            results.add(new ScoredChat(chatIds[document], scores[document]));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * Tells whether compact() would pay off: removed interactions make up a quarter of
+     * the index, or interactions were added out of id order so lookups by id scan.
+     *
+     * @return true if the index should be compacted
+     */
+    public synchronized boolean needsCompaction() {
+        return !chatIdsAscending
+                || removedCount >= MIN_REMOVED_TO_COMPACT && removedCount * 4 >= documentCount;
+    }
+
+    /**
+     * Drops the postings of removed interactions and renumbers the others in increasing
+     * id order, so the index only grows with the interactions it holds and lookups by id
+     * are binary searches again.
+     */
+    public synchronized void compact() {
+        Integer[] order = new Integer[liveCount];
+        for (int document = 0, i = 0; document < documentCount; document++) {
+            if (!removed[document]) {
+                order[i++] = document;
+            }
+        }
+        Arrays.sort(order, Comparator.comparingLong(document -> chatIds[document]));
+        int[] renumbered = new int[documentCount];
+        Arrays.fill(renumbered, -1);
+        int capacity = Math.max(16, liveCount);
+        long[] compactedChatIds = new long[capacity];
+        int[] compactedLengths = new int[capacity];
+        for (int i = 0; i < order.length; i++) {
+            renumbered[order[i]] = i;
+            compactedChatIds[i] = chatIds[order[i]];
+            compactedLengths[i] = documentLengths[order[i]];
+        }
+
+        postings.replaceAll((term, postingList) -> {
+            List<long[]> live = new ArrayList<>();
+            postingList.forEach((document, termFrequency) -> {
+                if (renumbered[document] >= 0) {
+                    live.add(new long[]{renumbered[document], termFrequency});
+                }
+            });
+            if (live.isEmpty()) {
+                return null;
+            }
+            live.sort(Comparator.comparingLong(posting -> posting[0]));
+            PostingList compacted = new PostingList();
+            live.forEach(posting -> compacted.add((int) posting[0], (int) posting[1]));
+            return compacted;
+        });
+        postings.values().removeIf(postingList -> postingList == null);
+
+        chatIds = compactedChatIds;
+        documentLengths = compactedLengths;
+        removed = new boolean[capacity];
+        documentCount = liveCount;
+        removedCount = 0;
+        chatIdsAscending = true;
+    }
+
+    public synchronized int getDocumentCount() {
+        return liveCount;
+    }
+
+    public synchronized int getTermCount() {
+        return postings.size();
+    }
+
+    /**
+     * Counts the postings of a term that belong to interactions not removed, so removed
+     * interactions do not lower the weight of the terms they contained.
+     *
+     * @param postingList the postings of the term
+     * @return the number of live interactions containing the term
+     */
+    private int liveFrequency(PostingList postingList) {
+        int[] frequency = new int[1];
+        postingList.forEach((document, termFrequency) -> {
+            if (!removed[document]) {
+                frequency[0]++;
+            }
+        });
+        return frequency[0];
+    }
+
+    /**
+     * Finds the document number of a chat interaction. The lookup is a binary search
+     * while interactions have been added in increasing id order, a scan otherwise.
+     *
+     * @param chatId the id of the chat interaction
+     * @return the document number, or a negative value if the interaction was never added
+     */
+    private int find(long chatId) {
+        if (chatIdsAscending) {
+            return Math.max(-1, Arrays.binarySearch(chatIds, 0, documentCount, chatId));
+        }
+        for (int i = 0; i < documentCount; i++) {
+            if (chatIds[i] == chatId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,19 @@
+package services;
+
+/**
+ * Thrown when a fail-fast chat batch stops at a prompt that could not be answered.
+ * Nothing from the batch is saved.
+ */
+public class ChatBatchException extends RuntimeException {
+
+    private final int index;
+
+    public ChatBatchException(int index, Throwable cause) {
+        super("Prompt " + index + " of the batch failed: " + cause.getMessage(), cause);
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,28 @@
+package services;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.google.inject.ImplementedBy;
+import dao.ChatExportFilter;
+import export.ExportFormat;
+import services.impl.ChatExportServiceImpl;
+
+/**
+ * Bulk export of chat interactions for compliance and analytics.
+ */
+@ImplementedBy(ChatExportServiceImpl.class)
+public interface ChatExportService {
+
+    /**
+     * Streams the selected chat interactions: those moved to the archive first, user by
+     * user and oldest first, then those still in the table in id order. Pages are read
+     * only as the consumer demands more output, so memory use does not grow with the
+     * export size.
+     *
+     * @param filter selects the chat interactions to export
+     * @param format the output format
+     * @return a Source emitting the encoded export, uncompressed
+     */
+    Source<ByteString, NotUsed> export(ChatExportFilter filter, ExportFormat format);
+}
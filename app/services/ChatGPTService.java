@@ -1,11 +1,19 @@
 package services;
 
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.google.inject.ImplementedBy;
+import dao.ChatHistoryCursor;
+import dtos.ChatBatchResultDTO;
+import dtos.ChatHistoryPageDTO;
 import dtos.ChatInteractionDTO;
+import dtos.ChatJobStatusDTO;
 import dtos.ChatRequestDTO;
 import services.impl.ChatGPTServiceImpl;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -24,10 +32,91 @@ public interface ChatGPTService {
     CompletionStage<ChatInteractionDTO> addChat(ChatRequestDTO dto, String username);
 
     /**
-     * Retrieves all chat messages associated with a specific username.
+     * Saves a new chat message for the specified user with a pending response and
+     * fetches the response in the background.
      *
-     * @param userId the username for which to retrieve chat messages
-     * @return a CompletionStage containing a list of chat interaction data transfer objects
+     * @param dto the chat request data transfer object containing the chat message
+     * @param username the username of the user sending the chat message
+     * @return a CompletionStage containing the pending chat interaction data, or empty if
+     *         too many chat messages are already waiting for a response
+     */
+    CompletionStage<Optional<ChatInteractionDTO>> submitChat(ChatRequestDTO dto, String username);
+
+    /**
+     * Retrieves the status of a chat message submitted with submitChat, waiting a bounded
+     * time for its response if it is still being fetched.
+     *
+     * @param username the username whose chat interaction is requested
+     * @param id the id of the chat interaction
+     * @param wait how long to wait for a pending response
+     * @return a CompletionStage containing the status and chat interaction data, or empty
+     *         if the user has no such chat interaction
+     */
+    CompletionStage<Optional<ChatJobStatusDTO>> getChatResult(String username, long id, Duration wait);
+
+    /**
+     * Answers a batch of chat messages for the specified user and saves the answered
+     * ones in a single batched write.
+     *
+     * @param prompts the chat messages, in order
+     * @param username the username of the user sending the chat messages
+     * @param failFast whether the first failed prompt fails the whole batch instead of
+     *                 being reported in its place
+     * @return a CompletionStage containing one result per prompt, in prompt order; with
+     *         failFast it fails with ChatBatchException if any prompt fails
+     */
+    CompletionStage<ChatBatchResultDTO> addChats(List<ChatRequestDTO> prompts, String username, boolean failFast);
+
+    /**
+     * Streams the response to a new chat message as it is generated. The assembled
+     * response is persisted once the stream terminates, as failed unless the whole
+     * response was received. The stream fails if ChatGPT fails after the first delta.
+     *
+     * @param dto the chat request data transfer object containing the chat message
+     * @param username the username of the user sending the chat message
+     * @return a Source emitting the response deltas in the order they are generated
+     */
+    Source<String, ?> streamChat(ChatRequestDTO dto, String username);
+
+    /**
+     * Retrieves one page of chat messages for a specific username, newest first.
+     *
+     * @param username the username for which to retrieve chat messages
+     * @param before the cursor to continue from, or null to start at the newest message
+     * @param limit the maximum number of chat messages in the page
+     * @return a CompletionStage containing the page and the cursor of the next, older page
+     */
+    CompletionStage<ChatHistoryPageDTO> getChatsByUsername(String username, ChatHistoryCursor before, int limit);
+
+    /**
+     * Retrieves the newest page of chat messages for a specific username as serialized
+     * JSON, served from the history cache when possible.
+     *
+     * @param username the username for which to retrieve chat messages
+     * @param limit the maximum number of chat messages in the page
+     * @return a CompletionStage containing the JSON of the page
+     */
+    CompletionStage<byte[]> getRecentChatsJson(String username, int limit);
+
+    /**
+     * Retrieves the complete response of one chat message. History pages only carry a
+     * preview of long responses, flagged as truncated.
+     *
+     * @param username the username the chat message must belong to
+     * @param id the id of the chat message
+     * @return a CompletionStage containing the full response, or empty if the user has no
+     *         chat message with that id
+     */
+    CompletionStage<Optional<String>> getFullResponse(String username, long id);
+
+    /**
+     * Streams all chat messages associated with a specific username as a JSON array,
+     * oldest first. Each message is serialized as it is read, so memory use does not
+     * grow with the size of the history. The caller must hold a HistoryStreamLimiter slot
+     * until the stream terminates.
+     *
+     * @param username the username for which to retrieve chat messages
+     * @return a Source emitting the JSON array in chunks
      */
-    CompletionStage<List<ChatInteractionDTO>> getAllChatsByUsername(String userId);
+    Source<ByteString, ?> streamAllChatsJson(String username);
 }
@@ -0,0 +1,34 @@
+package services;
+
+import com.google.inject.ImplementedBy;
+import dtos.ChatSearchHitDTO;
+import services.impl.ChatSearchServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Full-text search over each user's chat history, served from an in-memory inverted
+ * index instead of LIKE scans on the database.
+ */
+@ImplementedBy(ChatSearchServiceImpl.class)
+public interface ChatSearchService {
+
+    /**
+     * Searches the messages and responses of a user.
+     *
+     * @param username the username whose history is searched
+     * @param query the search text
+     * @param limit the maximum number of results
+     * @return a CompletionStage containing the matching chat interactions, best match first
+     */
+    CompletionStage<List<ChatSearchHitDTO>> search(String username, String query, int limit);
+
+    /**
+     * Tells whether the index has been fully built from the database. Until then,
+     * searches only cover the part of the history indexed so far.
+     *
+     * @return true once the startup rebuild has finished
+     */
+    boolean isReady();
+}
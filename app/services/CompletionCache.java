@@ -0,0 +1,45 @@
+package services;
+
+import cache.PromptKey;
+import com.google.inject.ImplementedBy;
+import services.impl.CompletionCacheImpl;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Cache of upstream completions keyed on the normalized prompt.
+ */
+@ImplementedBy(CompletionCacheImpl.class)
+public interface CompletionCache {
+
+    /**
+     * Looks up the cached completion for a prompt.
+     *
+     * @param key the normalized prompt
+     * @return a CompletionStage containing the cached response, if present
+     */
+    CompletionStage<Optional<String>> get(PromptKey key);
+
+    /**
+     * Stores the completion for a prompt.
+     *
+     * @param key the normalized prompt
+     * @param response the completion returned by the upstream API
+     */
+    void put(PromptKey key, String response);
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups that had to go upstream.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+}
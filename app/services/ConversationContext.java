@@ -0,0 +1,25 @@
+package services;
+
+import com.google.inject.ImplementedBy;
+import conversation.ConversationTurn;
+import services.impl.ConversationContextImpl;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Provides the recent conversation of a user as context for the next prompt.
+ */
+@ImplementedBy(ConversationContextImpl.class)
+public interface ConversationContext {
+
+    /**
+     * Returns the most recent turns of a user's conversation that fit the context token
+     * budget alongside the next message.
+     *
+     * @param username the username of the user sending the message
+     * @param message the message about to be sent
+     * @return a CompletionStage containing the turns to replay, oldest first
+     */
+    CompletionStage<List<ConversationTurn>> contextFor(String username, String message);
+}
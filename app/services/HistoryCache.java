@@ -0,0 +1,47 @@
+package services;
+
+import com.google.inject.ImplementedBy;
+import services.impl.HistoryCacheImpl;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of each user's most recent chat history page, held as serialized
+ * JSON so repeat reads skip both the database and serialization.
+ */
+@ImplementedBy(HistoryCacheImpl.class)
+public interface HistoryCache {
+
+    /**
+     * Returns the cached JSON of a user's newest history page, loading and caching it on
+     * a miss.
+     *
+     * @param username the username whose history is requested
+     * @param limit the page size
+     * @param loader loads and serializes the page on a miss
+     * @return a CompletionStage containing the serialized page
+     */
+    CompletionStage<byte[]> getOrLoad(String username, int limit, Supplier<CompletionStage<byte[]>> loader);
+
+    /**
+     * Drops everything cached for a user.
+     *
+     * @param username the username whose history changed
+     */
+    void invalidate(String username);
+
+    /**
+     * Returns the number of reads answered from the cache.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of reads that had to load the page.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+}
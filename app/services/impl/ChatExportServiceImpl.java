@@ -0,0 +1,90 @@
+package services.impl;
+
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.typesafe.config.Config;
+import dao.ChatArchive;
+import dao.ChatExportFilter;
+import dao.ChatHistoryReadDao;
+import dtos.ChatInteractionDTO;
+import export.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import services.ChatExportService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of ChatExportService. The export first reads the archive segments the
+ * filter selects, then walks the table in keyset pages of chat.export.pageSize rows,
+ * each read in its own short transaction, and encodes each page as one chunk of output.
+ * Archived interactions still in the table, left by a retention batch whose delete did
+ * not commit, are only exported from the table.
+ */
+@Singleton
+@Slf4j
+public class ChatExportServiceImpl implements ChatExportService {
+
+    private final ChatHistoryReadDao chatHistoryReadDao;
+    private final ChatArchive archive;
+    private final int pageSize;
+
+    /**
+     * Constructs a ChatExportServiceImpl with the specified dependencies.
+     *
+     * @param chatHistoryReadDao the read-only queries over chat history
+     * @param archive the archive of interactions moved out of the table
+     * @param config the configuration object containing the export settings
+     */
+    @Inject
+    public ChatExportServiceImpl(ChatHistoryReadDao chatHistoryReadDao, ChatArchive archive, Config config) {
+        this.chatHistoryReadDao = chatHistoryReadDao;
+        this.archive = archive;
+        this.pageSize = config.getInt("chat.export.pageSize");
+    }
+
+    /**
+     * Streams the header of the format followed by one encoded chunk per page, archived
+     * pages first.
+     *
+     * @param filter selects the chat interactions to export
+     * @param format the output format
+     * @return a Source emitting the encoded export, uncompressed
+     */
+    @Override
+    public Source<ByteString, NotUsed> export(ChatExportFilter filter, ExportFormat format) {
+        Source<List<ChatInteractionDTO>, NotUsed> archived = archive.streamExport(filter)
+                .grouped(pageSize)
+                .mapAsync(1, page -> chatHistoryReadDao
+                        .getLiveIds(page.stream().map(ChatInteractionDTO::getId).collect(Collectors.toList()))
+                        .thenApply(liveIds -> page.stream()
+                                .filter(chat -> !liveIds.contains(chat.getId()))
+                                .collect(Collectors.toList())))
+                .filter(page -> !page.isEmpty());
+
+        Source<List<ChatInteractionDTO>, NotUsed> live = Source.<Long, List<ChatInteractionDTO>>unfoldAsync(0L, afterId -> {
+                    if (afterId < 0) {
+                        return CompletableFuture.completedFuture(Optional.empty());
+                    }
+                    return chatHistoryReadDao.getExportPage(filter, afterId, pageSize)
+                            .thenApply(page -> {
+                                if (page.isEmpty()) {
+                                    return Optional.empty();
+                                }
+                                // A short page is the last one, so stop without another query.
+                                long next = page.size() < pageSize ? -1L : page.get(page.size() - 1).getId();
+                                return Optional.of(Pair.create(next, page));
+                            });
+                });
+        Source<ByteString, NotUsed> pages = archived.concat(live).map(format::encode);
+
+        ByteString header = format.header();
+        return header.isEmpty() ? pages : Source.single(header).concat(pages);
+    }
+}
@@ -1,20 +1,57 @@
 package services.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import akka.NotUsed;
+import akka.japi.pf.PFBuilder;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import cache.PromptKey;
+import cache.SingleFlight;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.typesafe.config.Config;
+import conversation.ConversationTurn;
+import conversation.TokenEstimator;
+import dao.ChatHistoryCursor;
+import dao.ChatHistoryReadDao;
 import dao.ChatInteractionDao;
+import dtos.ChatBatchItemDTO;
+import dtos.ChatBatchResultDTO;
+import dtos.ChatHistoryPageDTO;
 import dtos.ChatInteractionDTO;
+import dtos.ChatJobStatusDTO;
 import dtos.ChatRequestDTO;
 import lombok.extern.slf4j.Slf4j;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
 import models.ChatInteraction;
+import models.ChatStatus;
+import play.inject.ApplicationLifecycle;
 import play.libs.Json;
-import play.libs.ws.WSClient;
+import resilience.FairScheduler;
+import resilience.UpstreamGuard;
+import services.ChatBatchException;
 import services.ChatGPTService;
+import services.CompletionCache;
+import services.ConversationContext;
+import services.HistoryCache;
+import upstream.UpstreamRouter;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -26,24 +63,79 @@ import java.util.stream.Collectors;
 public class ChatGPTServiceImpl implements ChatGPTService {
 
     private final ChatInteractionDao chatInteractionDao;
-    private final WSClient wsClient;
-    private final String apiKey;
-    private final String apiUrl;
+    private final ChatHistoryReadDao chatHistoryReadDao;
+    private final CompletionCache completionCache;
+    private final ConversationContext conversationContext;
+    private final HistoryCache historyCache;
+    private final UpstreamGuard upstreamGuard;
+    private final UpstreamRouter upstreamRouter;
+    private final FairScheduler fairScheduler;
+    private final String model;
+    private final int expectedCompletionTokens;
+    private final int batchParallelism;
+    private final Materializer materializer;
+    private final ChatJobQueue chatJobs;
+    private final ConcurrentHashMap<Long, CompletableFuture<ChatInteractionDTO>> runningJobs = new ConcurrentHashMap<>();
+    private final SingleFlight<PromptKey, String> inFlightCompletions = new SingleFlight<>();
+    private final LatencyHistogram jsonSerializationLatency;
 
     /**
      * Constructs a ChatGPTServiceImpl with the specified dependencies.
      *
      * @param chatInteractionDao the DAO for chat interactions
-     * @param wsClient the WSClient for making HTTP requests
+     * @param chatHistoryReadDao the read-only DTO queries over chat history
+     * @param completionCache the cache of upstream completions
+     * @param conversationContext the source of recent turns replayed as context
+     * @param historyCache the cache of serialized history pages
+     * @param upstreamGuard the circuit breaker and concurrency limit around ChatGPT calls
+     * @param upstreamRouter the router spreading ChatGPT calls over the upstream endpoints
+     * @param fairScheduler the per-user fair queue in front of ChatGPT calls
+     * @param metrics the registry recording serialization metrics
+     * @param materializer the materializer running batch fan-outs and the job queue
+     * @param lifecycle the application lifecycle used to drain the job queue
      * @param config the configuration object containing API settings
      */
     @Inject
-    public ChatGPTServiceImpl(ChatInteractionDao chatInteractionDao, WSClient wsClient, Config config) {
+    public ChatGPTServiceImpl(ChatInteractionDao chatInteractionDao, ChatHistoryReadDao chatHistoryReadDao,
+                              CompletionCache completionCache, ConversationContext conversationContext,
+                              HistoryCache historyCache,
+                              UpstreamGuard upstreamGuard, UpstreamRouter upstreamRouter, FairScheduler fairScheduler,
+                              MetricsRegistry metrics,
+                              Materializer materializer, ApplicationLifecycle lifecycle, Config config) {
         this.chatInteractionDao = chatInteractionDao;
-        this.wsClient = wsClient;
-        this.apiKey = config.getString("openai.apiKey");
-        this.apiUrl = config.getString("openai.apiUrl");
-        log.debug("ChatGPTServiceImpl initialized with API URL: {} and API Key: {}", apiUrl, "********");
+        this.chatHistoryReadDao = chatHistoryReadDao;
+        this.completionCache = completionCache;
+        this.conversationContext = conversationContext;
+        this.historyCache = historyCache;
+        this.upstreamGuard = upstreamGuard;
+        this.upstreamRouter = upstreamRouter;
+        this.fairScheduler = fairScheduler;
+        this.jsonSerializationLatency = metrics.stage(Stage.JSON_SERIALIZATION);
+        this.model = config.getString("openai.model");
+        this.expectedCompletionTokens = config.getInt("chat.scheduler.expectedCompletionTokens");
+        this.batchParallelism = config.getInt("chat.batch.parallelism");
+        this.materializer = materializer;
+        this.chatJobs = new ChatJobQueue(config.getConfig("chat.async"), materializer);
+        lifecycle.addStopHook(chatJobs::shutdown);
+        failStalePendingChats(config.getDuration("chat.async.pendingTimeout"));
+    }
+
+    /**
+     * Marks as failed the chat messages left pending by a node that stopped before
+     * answering them. Only messages older than the timeout are touched, so jobs still
+     * queued on other nodes are left to finish.
+     *
+     * @param pendingTimeout how long a chat message may stay pending
+     */
+    private void failStalePendingChats(Duration pendingTimeout) {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - pendingTimeout.toMillis());
+        chatInteractionDao.failPendingBefore(cutoff).whenComplete((failed, error) -> {
+            if (error != null) {
+                log.error("Failed to expire stale pending chat messages: {}", error.getMessage());
+            } else if (failed > 0) {
+                log.warn("Marked {} chat messages pending since before {} as failed.", failed, cutoff);
+            }
+        });
     }
 
     /**
@@ -58,18 +150,8 @@ public class ChatGPTServiceImpl implements ChatGPTService {
         log.info("Adding chat message for user: {}", username);
         log.debug("Chat message: {}, Role: {}", dto.getMessage(), dto.getChatRole());
 
-        return fetchChatGPTResponse(dto.getMessage(), dto.getChatRole())
-                .exceptionally(error -> {
-                    log.error("Error fetching response from ChatGPT: {}", error.getMessage(), error);
-                    return "Please try again later to interact with the ChatBot. " +
-                            "This is mock response for message \"" + dto.getMessage() + "\"";
-                })
+        return answer(dto, username)
                 .thenComposeAsync(gptResponse -> {
-                    if (gptResponse == null || gptResponse.isEmpty()) {
-                        log.warn("Received an empty response from ChatGPT.");
-                        gptResponse = "Sorry, I couldn't generate a response.";
-                    }
-
                     log.debug("ChatGPT response received: {}", gptResponse);
                     ChatInteraction chatInteraction = ChatRequestDTO.toEntity(dto, username);
                     chatInteraction.setResponse(gptResponse);
@@ -77,69 +159,521 @@ public class ChatGPTServiceImpl implements ChatGPTService {
                     return chatInteractionDao.save(chatInteraction)
                             .thenApplyAsync(ignored -> {
                                 log.info("Chat message saved successfully for user: {}", username);
-                                return new ChatInteractionDTO(
-                                        chatInteraction.getChatRole(),
-                                        chatInteraction.getMessage(),
-                                        chatInteraction.getResponse(),
-                                        chatInteraction.getSubmittedAt(),
-                                        chatInteraction.getUsername()
-                                );
+                                return ChatInteractionDTO.toDTO(chatInteraction);
                             });
                 });
     }
 
     /**
-     * Retrieves all chat messages associated with a specific username.
+     * Saves a chat message with a pending response and queues a background job that
+     * fetches the response from ChatGPT and writes it to the saved interaction.
+     *
+     * @param dto the chat request data transfer object
+     * @param username the username of the user sending the chat message
+     * @return a CompletionStage containing the pending chat interaction data, or empty if
+     *         the job queue is full and nothing was saved
+     */
+    @Override
+    public CompletionStage<Optional<ChatInteractionDTO>> submitChat(ChatRequestDTO dto, String username) {
+        if (!chatJobs.tryReserve()) {
+            log.warn("Chat job queue is full, rejecting asynchronous chat message for user: {}", username);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        log.info("Submitting asynchronous chat message for user: {}", username);
+        ChatInteraction chatInteraction = ChatRequestDTO.toEntity(dto, username);
+        chatInteraction.setStatus(ChatStatus.PENDING);
+
+        return chatInteractionDao.savePending(chatInteraction)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        chatJobs.release();
+                    }
+                })
+                .thenApply(ignored -> {
+                    // savePending publishes no save event, so the cached newest page would
+                    // not show the pending message until the job finishes.
+                    historyCache.invalidate(username);
+                    Long id = chatInteraction.getId();
+                    ChatInteractionDTO pending = ChatInteractionDTO.toDTO(chatInteraction);
+                    CompletableFuture<ChatInteractionDTO> completion = new CompletableFuture<>();
+                    runningJobs.put(id, completion);
+
+                    chatJobs.submit(() -> answer(dto, username)
+                            .thenCompose(gptResponse -> {
+                                chatInteraction.setResponse(gptResponse);
+                                chatInteraction.setStatus(ChatStatus.COMPLETE);
+                                return chatInteractionDao.updateResponse(chatInteraction);
+                            })
+                            .handle((done, error) -> error == null
+                                    ? CompletableFuture.<Void>completedFuture(null)
+                                    : markFailed(chatInteraction, error))
+                            .thenCompose(Function.identity())
+                            .whenComplete((done, error) -> {
+                                runningJobs.remove(id);
+                                if (error != null) {
+                                    completion.completeExceptionally(error);
+                                } else {
+                                    log.info("Asynchronous chat message {} completed for user: {}", id, username);
+                                    completion.complete(ChatInteractionDTO.toDTO(chatInteraction));
+                                }
+                            }));
+                    return Optional.of(pending);
+                });
+    }
+
+    /**
+     * Records that the job of a chat message failed, so its status is reported as failed
+     * instead of pending.
+     *
+     * @param chatInteraction the pending chat interaction
+     * @param error the failure of the job
+     * @return a CompletionStage failed with the job's failure once the status is written
+     */
+    private CompletionStage<Void> markFailed(ChatInteraction chatInteraction, Throwable error) {
+        log.error("Failed to complete chat message {} for user {}", chatInteraction.getId(),
+                chatInteraction.getUsername(), error);
+        chatInteraction.setResponse(ChatRequestDTO.FAILED_RESPONSE);
+        chatInteraction.setStatus(ChatStatus.FAILED);
+        return chatInteractionDao.markFailed(chatInteraction)
+                .handle((ignored, markError) -> {
+                    if (markError != null) {
+                        log.error("Failed to mark chat message {} as failed: {}", chatInteraction.getId(),
+                                markError.getMessage());
+                    }
+                    historyCache.invalidate(chatInteraction.getUsername());
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                });
+    }
+
+    /**
+     * Retrieves the status of a chat message submitted with submitChat. While its job is
+     * running on this node, the call waits up to the given time for it to complete before
+     * falling back to the stored interaction.
+     *
+     * @param username the username whose chat interaction is requested
+     * @param id the id of the chat interaction
+     * @param wait how long to wait for a running job
+     * @return a CompletionStage containing the status, or empty if the user has no such
+     *         chat interaction
+     */
+    @Override
+    public CompletionStage<Optional<ChatJobStatusDTO>> getChatResult(String username, long id, Duration wait) {
+        CompletableFuture<ChatInteractionDTO> running = runningJobs.get(id);
+        if (running == null || wait.isZero() || wait.isNegative()) {
+            return loadChatResult(username, id);
+        }
+        return running.copy()
+                .completeOnTimeout(null, wait.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(error -> null)
+                .thenCompose(chat -> chat != null && chat.getUsername().equals(username)
+                        ? CompletableFuture.completedFuture(Optional.of(ChatJobStatusDTO.of(chat, ChatStatus.COMPLETE)))
+                        : loadChatResult(username, id));
+    }
+
+    /**
+     * Reads the status of a chat interaction from the database.
+     *
+     * @param username the username whose chat interaction is requested
+     * @param id the id of the chat interaction
+     * @return a CompletionStage containing the status, or empty if the user has no such
+     *         chat interaction
+     */
+    private CompletionStage<Optional<ChatJobStatusDTO>> loadChatResult(String username, long id) {
+        return chatHistoryReadDao.getChatJob(username, id);
+    }
+
+    /**
+     * Resolves the response to a chat message with the user's conversation context. A
+     * failed or empty response is replaced by a fallback message, so the returned stage
+     * does not fail because of the ChatGPT API.
+     *
+     * @param dto the chat request data transfer object
+     * @param username the username of the user sending the chat message
+     * @return a CompletionStage containing the response to save
+     */
+    private CompletionStage<String> answer(ChatRequestDTO dto, String username) {
+        return contextFor(dto, username)
+                .thenCompose(context -> resolveResponse(dto, context, username))
+                .exceptionally(error -> {
+                    log.error("Error fetching response from ChatGPT: {}", error.getMessage(), error);
+                    return fallbackResponse(dto.getMessage());
+                })
+                .thenApply(gptResponse -> {
+                    if (gptResponse == null || gptResponse.isEmpty()) {
+                        log.warn("Received an empty response from ChatGPT.");
+                        return ChatRequestDTO.FAILED_RESPONSE;
+                    }
+                    return gptResponse;
+                });
+    }
+
+    /**
+     * Answers a batch of chat messages. Prompts are resolved through the completion cache
+     * and the ChatGPT API with at most the configured number in flight at once, and the
+     * results keep prompt order. Prompts of a batch are independent questions, so no
+     * conversation context is sent. The answered prompts are saved in one batched write.
+     *
+     * @param prompts the chat messages, in order
+     * @param username the username of the user sending the chat messages
+     * @param failFast whether the first failed prompt fails the whole batch instead of
+     *                 being reported in its place
+     * @return a CompletionStage containing one result per prompt, in prompt order
+     */
+    @Override
+    public CompletionStage<ChatBatchResultDTO> addChats(List<ChatRequestDTO> prompts, String username, boolean failFast) {
+        log.info("Adding a batch of {} chat messages for user: {} ({})", prompts.size(), username,
+                failFast ? "fail fast" : "partial results");
+
+        return Source.range(0, prompts.size() - 1)
+                .mapAsync(batchParallelism, index -> {
+                    ChatRequestDTO dto = prompts.get(index);
+                    return resolveResponse(dto, Collections.emptyList(), username)
+                            .handle((gptResponse, error) -> {
+                                if (error == null && gptResponse != null && !gptResponse.isEmpty()) {
+                                    ChatInteraction chatInteraction = ChatRequestDTO.toEntity(dto, username);
+                                    chatInteraction.setResponse(gptResponse);
+                                    return new BatchOutcome(index, chatInteraction, null);
+                                }
+                                Throwable cause = error == null ? new IllegalStateException("Empty response")
+                                        : error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause() : error;
+                                log.warn("Prompt {} of the batch for user {} failed: {}", index, username, cause.getMessage());
+                                if (failFast) {
+                                    throw new ChatBatchException(index, cause);
+                                }
+                                return new BatchOutcome(index, null, cause.getMessage());
+                            });
+                })
+                .runWith(Sink.seq(), materializer)
+                .thenCompose(outcomes -> {
+                    List<ChatInteraction> answered = outcomes.stream()
+                            .filter(outcome -> outcome.chatInteraction != null)
+                            .map(outcome -> outcome.chatInteraction)
+                            .collect(Collectors.toList());
+                    CompletionStage<Void> saved = answered.isEmpty()
+                            ? CompletableFuture.completedFuture(null)
+                            : chatInteractionDao.saveAll(answered);
+                    return saved.thenApply(ignored -> {
+                        List<ChatBatchItemDTO> results = outcomes.stream()
+                                .map(outcome -> outcome.chatInteraction != null
+                                        ? ChatBatchItemDTO.succeeded(outcome.index, ChatInteractionDTO.toDTO(outcome.chatInteraction))
+                                        : ChatBatchItemDTO.failed(outcome.index, outcome.error))
+                                .collect(Collectors.toList());
+                        log.info("Saved {} of {} batched chat messages for user: {}", answered.size(), outcomes.size(), username);
+                        return new ChatBatchResultDTO(results, answered.size(), outcomes.size() - answered.size());
+                    });
+                });
+    }
+
+    /**
+     * Streams the ChatGPT response for a new chat message and persists the assembled
+     * response once the stream terminates. A failure before the first delta is answered
+     * with the fallback response; a failure after it fails the stream, so the client sees
+     * an error instead of a silently shortened answer. Unless the upstream stream ran to
+     * its end, the interaction is saved as failed with the part that was received.
+     *
+     * @param dto the chat request data transfer object
+     * @param username the username of the user sending the chat message
+     * @return a Source emitting the response deltas as they arrive from ChatGPT
+     */
+    @Override
+    public Source<String, ?> streamChat(ChatRequestDTO dto, String username) {
+        log.info("Streaming chat message for user: {}", username);
+        log.debug("Chat message: {}, Role: {}", dto.getMessage(), dto.getChatRole());
+
+        ChatInteraction chatInteraction = ChatRequestDTO.toEntity(dto, username);
+        PromptKey promptKey = PromptKey.of(dto.getChatRole(), dto.getMessage(), model);
+        StringBuilder assembled = new StringBuilder();
+        AtomicBoolean fromCache = new AtomicBoolean(false);
+        AtomicBoolean upstreamCompleted = new AtomicBoolean(false);
+        AtomicBoolean fellBack = new AtomicBoolean(false);
+
+        CompletionStage<Source<String, NotUsed>> deltas = contextFor(dto, username).thenCompose(context -> {
+            if (dto.isBypassCache() || !context.isEmpty()) {
+                return streamChatGPTResponse(context, dto.getMessage(), dto.getChatRole(), username);
+            }
+            return completionCache.get(promptKey).thenCompose(cached -> {
+                if (cached.isPresent()) {
+                    log.debug("Serving streamed chat message from the completion cache.");
+                    fromCache.set(true);
+                    return CompletableFuture.completedFuture(Source.single(cached.get()));
+                }
+                return streamChatGPTResponse(context, dto.getMessage(), dto.getChatRole(), username);
+            });
+        });
+
+        return Source.completionStageSource(deltas)
+                .concat(Source.lazySource(() -> {
+                    upstreamCompleted.set(true);
+                    return Source.<String>empty();
+                }))
+                .recover(new PFBuilder<Throwable, String>()
+                        .match(Exception.class, error -> assembled.length() == 0, error -> {
+                            log.error("Error streaming response from ChatGPT: {}", error.getMessage(), error);
+                            fellBack.set(true);
+                            return fallbackResponse(dto.getMessage());
+                        })
+                        .build())
+                .filter(delta -> !delta.isEmpty())
+                .map(delta -> {
+                    assembled.append(delta);
+                    return delta;
+                })
+                .watchTermination((mat, done) -> {
+                    done.whenComplete((ignored, error) -> {
+                        String gptResponse = assembled.toString();
+                        boolean complete = error == null && upstreamCompleted.get();
+                        if (gptResponse.isEmpty()) {
+                            log.warn("Received an empty streamed response from ChatGPT.");
+                            gptResponse = ChatRequestDTO.FAILED_RESPONSE;
+                            complete = false;
+                        } else if (!complete && !fellBack.get()) {
+                            log.warn("Streamed chat message for user {} ended after {} characters, before ChatGPT finished: {}",
+                                    username, gptResponse.length(), error == null ? "client disconnected" : error.getMessage());
+                        } else if (complete && !fromCache.get()) {
+                            completionCache.put(promptKey, gptResponse);
+                        }
+                        chatInteraction.setResponse(gptResponse);
+                        chatInteraction.setStatus(complete ? ChatStatus.COMPLETE : ChatStatus.FAILED);
+                        chatInteractionDao.save(chatInteraction)
+                                .whenComplete((saved, saveError) -> {
+                                    if (saveError != null) {
+                                        log.error("Failed to save streamed chat message for user: {}", username, saveError);
+                                    } else {
+                                        log.info("Streamed chat message saved successfully for user: {}", username);
+                                    }
+                                });
+                    });
+                    return mat;
+                });
+    }
+
+    /**
+     * Retrieves one page of chat messages for a specific username, newest first. One extra
+     * row is requested to learn whether an older page exists without a count query.
      *
      * @param username the username for which to retrieve chat messages
-     * @return a CompletionStage containing a list of chat interaction data transfer objects
+     * @param before the cursor to continue from, or null to start at the newest message
+     * @param limit the maximum number of chat messages in the page
+     * @return a CompletionStage containing the page and the cursor of the next, older page
      */
     @Override
-    public CompletionStage<List<ChatInteractionDTO>> getAllChatsByUsername(String username) {
-        log.info("Retrieving all chat messages for user: {}", username);
-        return chatInteractionDao.getAllChatsByUsername(username)
+    public CompletionStage<ChatHistoryPageDTO> getChatsByUsername(String username, ChatHistoryCursor before, int limit) {
+        log.info("Retrieving a page of {} chat messages for user: {}", limit, username);
+        return chatHistoryReadDao.getChatPage(username, before, limit + 1)
                 .thenApply(chatInteractions -> {
-                    log.debug("Retrieved {} chat messages for user: {}", chatInteractions.size(), username);
-                    return chatInteractions.stream()
-                            .map(ChatInteractionDTO::toDTO)
-                            .collect(Collectors.toList());
+                    boolean hasMore = chatInteractions.size() > limit;
+                    List<ChatInteractionDTO> page = hasMore ? chatInteractions.subList(0, limit) : chatInteractions;
+                    String nextCursor = hasMore ? ChatHistoryCursor.of(page.get(page.size() - 1)).encode() : null;
+                    log.debug("Retrieved {} chat messages for user: {}, more available: {}", page.size(), username, hasMore);
+                    return new ChatHistoryPageDTO(page, nextCursor);
                 });
     }
 
     /**
-     * Fetches a response from the ChatGPT API based on the user's message.
+     * Retrieves the newest page of chat messages for a specific username as serialized
+     * JSON. Pages are read through the history cache, which is invalidated whenever an
+     * interaction of the user is saved.
      *
-     * @param userMessage the message from the user
-     * @param role the role of the message (e.g., user, assistant)
+     * @param username the username for which to retrieve chat messages
+     * @param limit the maximum number of chat messages in the page
+     * @return a CompletionStage containing the JSON of the page
+     */
+    @Override
+    public CompletionStage<byte[]> getRecentChatsJson(String username, int limit) {
+        return historyCache.getOrLoad(username, limit, () -> getChatsByUsername(username, null, limit)
+                .thenApply(page -> {
+                    long start = System.nanoTime();
+                    try {
+                        return Json.mapper().writeValueAsBytes(page);
+                    } catch (JsonProcessingException e) {
+                        throw new RuntimeException("Failed to serialize chat history", e);
+                    } finally {
+                        jsonSerializationLatency.recordSince(start);
+                    }
+                }));
+    }
+
+    /**
+     * Retrieves the complete response of one chat message.
+     *
+     * @param username the username the chat message must belong to
+     * @param id the id of the chat message
+     * @return a CompletionStage containing the full response, or empty if the user has no
+     *         chat message with that id
+     */
+    @Override
+    public CompletionStage<Optional<String>> getFullResponse(String username, long id) {
+        log.info("Retrieving the full response of chat message {} for user: {}", id, username);
+        return chatHistoryReadDao.getFullResponse(username, id);
+    }
+
+    /**
+     * Streams all chat messages associated with a specific username as a JSON array,
+     * oldest first. Every interaction is serialized on its own, and the array brackets and separators are added around the elements.
+     *
+     * @param username the username for which to retrieve chat messages
+     * @return a Source emitting the JSON array in chunks
+     */
+    @Override
+    public Source<ByteString, ?> streamAllChatsJson(String username) {
+        log.info("Streaming all chat messages for user: {}", username);
+        return chatHistoryReadDao.streamChats(username)
+                .map(dto -> {
+                    long start = System.nanoTime();
+                    try {
+                        return ByteString.fromArrayUnsafe(Json.mapper().writeValueAsBytes(dto));
+                    } finally {
+                        jsonSerializationLatency.recordSince(start);
+                    }
+                })
+                .intersperse(ByteString.fromString("["), ByteString.fromString(","), ByteString.fromString("]"));
+    }
+
+    /**
+     * Loads the conversation context for a chat message. A failure to load it degrades to
+     * a single-turn prompt instead of failing the message.
+     *
+     * @param dto the chat request data transfer object
+     * @param username the username of the user sending the chat message
+     * @return a CompletionStage containing the turns to replay, oldest first
+     */
+    private CompletionStage<List<ConversationTurn>> contextFor(ChatRequestDTO dto, String username) {
+        return conversationContext.contextFor(username, dto.getMessage())
+                .exceptionally(error -> {
+                    log.warn("Failed to load conversation context for user {}: {}", username, error.getMessage());
+                    return Collections.emptyList();
+                });
+    }
+
+    /**
+     * Resolves the response to a chat message from the completion cache, falling back to
+     * the ChatGPT API on a miss or when the request bypasses the cache. Concurrent misses
+     * for the same prompt share a single upstream call. Only successful upstream responses
+     * are cached. Messages sent with conversation context depend on that context, so they
+     * always go upstream.
+     *
+     * @param dto the chat request data transfer object
+     * @param context the conversation turns to replay, oldest first
+     * @param username the username of the user sending the chat message
+     * @return a CompletionStage containing the response
+     */
+    private CompletionStage<String> resolveResponse(ChatRequestDTO dto, List<ConversationTurn> context, String username) {
+        if (!context.isEmpty()) {
+            log.debug("Sending chat message with {} turns of context.", context.size());
+            return fetchChatGPTResponse(context, dto.getMessage(), dto.getChatRole(), username);
+        }
+        PromptKey promptKey = PromptKey.of(dto.getChatRole(), dto.getMessage(), model);
+        if (dto.isBypassCache()) {
+            log.debug("Chat message bypasses the completion cache.");
+            return fetchAndCache(promptKey, dto, username);
+        }
+        return completionCache.get(promptKey)
+                .thenCompose(cached -> {
+                    if (cached.isPresent()) {
+                        log.debug("Serving chat message from the completion cache.");
+                        return CompletableFuture.completedFuture(cached.get());
+                    }
+                    return inFlightCompletions.execute(promptKey, () -> fetchAndCache(promptKey, dto, username));
+                });
+    }
+
+    /**
+     * Fetches a response from the ChatGPT API and stores it in the completion cache.
+     *
+     * @param promptKey the normalized prompt
+     * @param dto the chat request data transfer object
+     * @param username the username of the user sending the chat message
      * @return a CompletionStage containing the response from ChatGPT
      */
-    private CompletionStage<String> fetchChatGPTResponse(String userMessage, String role) {
-        log.debug("Fetching response from ChatGPT API for message: {} and role: {}", userMessage, role);
-
-        JsonNode requestPayload = Json.newObject()
-                .put("model", "gpt-3.5-turbo")
-                .putArray("messages")
-                .add(Json.newObject()
-                        .put("role", role)
-                        .put("content", userMessage)
-                );
-
-        return wsClient.url(apiUrl)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .addHeader("Content-Type", "application/json")
-                .post(requestPayload)
-                .thenApplyAsync(response -> {
-                    log.debug("Received response from ChatGPT API with status: {}", response.getStatus());
-                    if (response.getStatus() == 200) {
-                        String gptResponse = response.asJson()
-                                .get("choices").get(0).get("message").get("content").asText();
-                        log.debug("ChatGPT response content: {}", gptResponse);
-                        return gptResponse;
-                    } else {
-                        log.error("Failed to fetch ChatGPT response. Status: {}, Body: {}",
-                                response.getStatus(), response.getBody());
-                        throw new RuntimeException("Failed to fetch ChatGPT response: " + response.getBody());
+    private CompletionStage<String> fetchAndCache(PromptKey promptKey, ChatRequestDTO dto, String username) {
+        return fetchChatGPTResponse(Collections.emptyList(), dto.getMessage(), dto.getChatRole(), username)
+                .thenApply(gptResponse -> {
+                    if (gptResponse != null && !gptResponse.isEmpty()) {
+                        completionCache.put(promptKey, gptResponse);
                     }
+                    return gptResponse;
                 });
     }
+
+    /**
+     * Fetches a response from the ChatGPT API based on the user's message. The call waits
+     * for the user's turn in the fair scheduler, is routed to the cheapest upstream
+     * endpoint, bounded by the request deadline, and fails fast while the upstream guard
+     * is open.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message (e.g., user, assistant)
+     * @param username the username the call is scheduled for
+     * @return a CompletionStage containing the response from ChatGPT
+     */
+    private CompletionStage<String> fetchChatGPTResponse(List<ConversationTurn> context, String userMessage, String role,
+                                                         String username) {
+        return fairScheduler.submit(username, estimateCost(context, userMessage),
+                () -> upstreamGuard.callUntilSettled(settled -> upstreamRouter.complete(context, userMessage, role, settled)));
+    }
+
+    /**
+     * Opens a streaming completion against the ChatGPT API and exposes the content
+     * deltas of the server-sent events it returns. Opening the stream waits for the
+     * user's turn in the fair scheduler and goes through the upstream guard; the request
+     * deadline bounds the whole streamed response.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message (e.g., user, assistant)
+     * @param username the username the call is scheduled for
+     * @return a CompletionStage containing a Source of response deltas
+     */
+    private CompletionStage<Source<String, NotUsed>> streamChatGPTResponse(List<ConversationTurn> context,
+                                                                           String userMessage, String role,
+                                                                           String username) {
+        return fairScheduler.submit(username, estimateCost(context, userMessage),
+                () -> upstreamGuard.call(() -> upstreamRouter.stream(context, userMessage, role)));
+    }
+
+    /**
+     * Estimates the token cost of an upstream call: the replayed context, the message and
+     * the expected length of the completion.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @return the estimated number of tokens
+     */
+    private int estimateCost(List<ConversationTurn> context, String userMessage) {
+        int tokens = TokenEstimator.estimateMessage(userMessage) + expectedCompletionTokens;
+        for (ConversationTurn turn : context) {
+            tokens += turn.getEstimatedTokens();
+        }
+        return tokens;
+    }
+
+    /**
+     * The result of one prompt of a batch: either an answered interaction or an error.
+     */
+    private static final class BatchOutcome {
+
+        private final int index;
+        private final ChatInteraction chatInteraction;
+        private final String error;
+
+        private BatchOutcome(int index, ChatInteraction chatInteraction, String error) {
+            this.index = index;
+            this.chatInteraction = chatInteraction;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Builds the response returned when ChatGPT could not be reached.
+     *
+     * @param userMessage the message from the user
+     * @return the fallback response
+     */
+    private String fallbackResponse(String userMessage) {
+        return ChatRequestDTO.FALLBACK_RESPONSE_PREFIX +
+                "This is mock response for message \"" + userMessage + "\"";
+    }
 }
@@ -0,0 +1,132 @@
+package services.impl;
+
+import akka.Done;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue of background chat jobs worked off by a fixed number of workers, so
+ * asynchronous chat messages are answered without holding a request open and without
+ * more than that many of them waiting on the ChatGPT API at once. Callers reserve a slot
+ * before doing any work for a job, which lets a full queue be refused up front.
+ */
+@Slf4j
+public class ChatJobQueue {
+
+    private final int capacity;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final SourceQueueWithComplete<Supplier<CompletionStage<?>>> queue;
+    private final CompletionStage<Done> drained;
+
+    /**
+     * Materializes the job stream.
+     *
+     * @param config the job queue configuration section
+     * @param materializer the materializer running the stream
+     */
+    public ChatJobQueue(Config config, Materializer materializer) {
+        this.capacity = config.getInt("queueSize");
+        int workers = config.getInt("workers");
+
+        Pair<SourceQueueWithComplete<Supplier<CompletionStage<?>>>, CompletionStage<Done>> materialized =
+                Source.<Supplier<CompletionStage<?>>>queue(capacity, OverflowStrategy.dropNew())
+                        .mapAsyncUnordered(workers, this::run)
+                        .toMat(Sink.ignore(), Keep.both())
+                        .run(materializer);
+        this.queue = materialized.first();
+        this.drained = materialized.second();
+
+        log.info("Chat job queue started with {} workers and room for {} jobs.", workers, capacity);
+    }
+
+    /**
+     * Reserves a slot for a job that will be submitted later.
+     *
+     * @return true if a slot was reserved, false if the queue is full
+     */
+    public boolean tryReserve() {
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a reserved slot whose job will not be submitted.
+     */
+    public void release() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Queues a job on a previously reserved slot. If the queue has been closed, the job
+     * runs on its own instead of being dropped.
+     *
+     * @param job starts the job and returns its completion
+     */
+    public void submit(Supplier<CompletionStage<?>> job) {
+        queue.offer(job).whenComplete((result, error) -> {
+            if (error != null || result != QueueOfferResult.enqueued()) {
+                log.warn("Chat job queue did not accept a job ({}), running it directly.",
+                        error != null ? error.getMessage() : result);
+                run(job);
+            }
+        });
+    }
+
+    /**
+     * Stops accepting jobs and waits until everything already queued has finished.
+     *
+     * @return a CompletionStage completing once the queue is drained
+     */
+    public CompletionStage<Done> shutdown() {
+        log.info("Draining chat job queue with {} pending jobs.", pending.get());
+        queue.complete();
+        return drained;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Runs one job and frees its slot once it finishes. The returned stage never fails,
+     * so a failed job does not stop the stream.
+     *
+     * @param job the job to run
+     * @return a CompletionStage completing once the job has finished
+     */
+    private CompletionStage<Void> run(Supplier<CompletionStage<?>> job) {
+        CompletionStage<?> completion;
+        try {
+            completion = job.get();
+        } catch (RuntimeException e) {
+            completion = CompletableFuture.failedFuture(e);
+        }
+        return completion.handle((ignored, error) -> {
+            pending.decrementAndGet();
+            if (error != null) {
+                log.error("Chat job failed: {}", error.getMessage(), error);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,294 @@
+package services.impl;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.stream.Materializer;
+import com.typesafe.config.Config;
+import dao.ChatHistoryReadDao;
+import dao.ChatInteractionEvents;
+import dtos.ChatInteractionDTO;
+import dtos.ChatSearchHitDTO;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+import models.ChatStatus;
+import play.inject.ApplicationLifecycle;
+import search.ScoredChat;
+import search.Tokenizer;
+import search.UserIndex;
+import services.ChatSearchService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the ChatSearchService interface keeping one BM25 inverted index per
+ * user. The indexes are rebuilt from the database at startup and updated from save and
+ * archive notifications, so they cover the completed interactions of the chat_interaction
+ * table. Notifications received while the rebuild runs are held back and applied
+ * afterwards. Saves and archivals made by other nodes are picked up by a periodic
+ * catch-up scan of new ids and by dropping matches no longer in the table; the same run
+ * compacts indexes holding many removed interactions. Only matching ids come from the
+ * index; the interactions themselves are loaded by primary key.
+ */
+@Singleton
+@Slf4j
+public class ChatSearchServiceImpl implements ChatSearchService {
+
+    private final ChatHistoryReadDao chatHistoryReadDao;
+    private final Materializer materializer;
+    private final boolean enabled;
+    private final Map<String, UserIndex> indexes = new ConcurrentHashMap<>();
+    private final Object rebuildLock = new Object();
+    private final AtomicBoolean catchingUp = new AtomicBoolean();
+    private List<ChatInteraction> savedDuringRebuild = new ArrayList<>();
+    private List<ChatInteraction> archivedDuringRebuild = new ArrayList<>();
+    private volatile boolean ready;
+    private volatile long catchUpFrom;
+    private volatile long highestScannedId;
+
+    /**
+     * Constructs a ChatSearchServiceImpl, starts rebuilding the index and schedules the
+     * catch-up scans.
+     *
+     * @param chatHistoryReadDao the read queries used to rebuild the index and load results
+     * @param events the save and archive notifications used to keep the index current
+     * @param materializer the materializer running the rebuild and catch-up streams
+     * @param actorSystem the actor system scheduling the catch-up scans
+     * @param config the configuration object containing search settings
+     * @param lifecycle the application lifecycle cancelling the catch-up scans on stop
+     */
+    @Inject
+    public ChatSearchServiceImpl(ChatHistoryReadDao chatHistoryReadDao, ChatInteractionEvents events,
+                                 Materializer materializer, ActorSystem actorSystem, Config config,
+                                 ApplicationLifecycle lifecycle) {
+        this.chatHistoryReadDao = chatHistoryReadDao;
+        this.materializer = materializer;
+        this.enabled = config.getBoolean("chat.search.enabled");
+        if (!enabled) {
+            return;
+        }
+        events.onSaved(this::onSaved);
+        events.onArchived(this::onArchived);
+        rebuild();
+
+        Duration interval = config.getDuration("chat.search.catchUpInterval");
+        Cancellable schedule = actorSystem.scheduler().scheduleWithFixedDelay(
+                interval, interval, this::catchUp, actorSystem.dispatcher());
+        lifecycle.addStopHook(() -> {
+            schedule.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Searches the messages and responses of a user with BM25 ranking. Matches that are
+     * no longer in the table, because they were archived by another node, are dropped
+     * from the results and from the index.
+     *
+     * @param username the username whose history is searched
+     * @param query the search text
+     * @param limit the maximum number of results
+     * @return a CompletionStage containing the matching chat interactions, best match first
+     */
+    @Override
+    public CompletionStage<List<ChatSearchHitDTO>> search(String username, String query, int limit) {
+        UserIndex index = indexes.get(username);
+        List<String> terms = Tokenizer.tokenize(query);
+        if (!enabled || index == null || terms.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        List<ScoredChat> matches = index.search(terms, limit);
+        log.debug("Search for user {} matched {} of {} chat messages.", username, matches.size(), index.getDocumentCount());
+        List<Long> ids = matches.stream().map(ScoredChat::getChatId).collect(Collectors.toList());
+
+        return chatHistoryReadDao.getLiveIds(ids)
+                .thenCompose(liveIds -> {
+                    ids.stream().filter(id -> !liveIds.contains(id)).forEach(index::remove);
+                    return chatHistoryReadDao.getChatsByIds(username, liveIds);
+                })
+                .thenApply(chats -> {
+                    Map<Long, ChatInteractionDTO> byId = chats.stream()
+                            .collect(Collectors.toMap(ChatInteractionDTO::getId, Function.identity()));
+                    List<ChatSearchHitDTO> hits = new ArrayList<>(matches.size());
+                    for (ScoredChat match : matches) {
+                        ChatInteractionDTO chat = byId.get(match.getChatId());
+                        if (chat != null) {
+                            hits.add(new ChatSearchHitDTO(match.getScore(), chat));
+                        }
+                    }
+                    return hits;
+                });
+    }
+
+    /**
+     * Tells whether the startup rebuild has finished. A disabled search is always ready,
+     * as it answers every query with no results.
+     *
+     * @return true once searches cover the whole table
+     */
+    @Override
+    public boolean isReady() {
+        return ready || !enabled;
+    }
+
+    /**
+     * Reads every chat interaction from the database into the index, then applies the
+     * saves and archivals that were notified meanwhile.
+     */
+    private void rebuild() {
+        log.info("Rebuilding the chat search index.");
+        long start = System.nanoTime();
+        Scan scan = new Scan(0);
+        chatHistoryReadDao.streamInteractions(0)
+                .runForeach(scan::index, materializer)
+                .whenComplete((done, error) -> {
+                    List<ChatInteraction> saved;
+                    List<ChatInteraction> archived;
+                    synchronized (rebuildLock) {
+                        saved = savedDuringRebuild;
+                        archived = archivedDuringRebuild;
+                        savedDuringRebuild = null;
+                        archivedDuringRebuild = null;
+                    }
+                    saved.forEach(this::index);
+                    archived.forEach(this::unindex);
+                    scan.finish(scan.highestId);
+                    ready = true;
+                    if (error != null) {
+                        log.error("Failed to rebuild the chat search index; searches cover new chat messages only.", error);
+                    } else {
+                        log.info("Chat search index rebuilt for {} users in {} ms.",
+                                indexes.size(), (System.nanoTime() - start) / 1_000_000);
+                    }
+                });
+    }
+
+    /**
+     * Indexes the completed interactions saved since the last scans, on any node, then
+     * compacts the indexes that need it. Ids are assigned before rows commit, so a row
+     * may commit after a higher id has been scanned: every id range is scanned by two
+     * consecutive runs, and the scans never move past an interaction still pending.
+     */
+    private void catchUp() {
+        if (!ready || !catchingUp.compareAndSet(false, true)) {
+            return;
+        }
+        Scan scan = new Scan(highestScannedId);
+        chatHistoryReadDao.streamInteractions(catchUpFrom)
+                .runForeach(scan::index, materializer)
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        log.warn("Chat search catch-up failed; retrying from id {} next time.", catchUpFrom, error);
+                    } else {
+                        scan.finish(scan.highestIdBefore);
+                        if (scan.indexed > 0) {
+                            log.debug("Chat search catch-up indexed {} chat messages saved by other nodes.", scan.indexed);
+                        }
+                    }
+                    indexes.values().forEach(index -> {
+                        if (index.needsCompaction()) {
+                            index.compact();
+                        }
+                    });
+                    catchingUp.set(false);
+                });
+    }
+
+    private void onSaved(ChatInteraction chatInteraction) {
+        synchronized (rebuildLock) {
+            if (savedDuringRebuild != null) {
+                savedDuringRebuild.add(chatInteraction);
+                return;
+            }
+        }
+        index(chatInteraction);
+    }
+
+    private void onArchived(List<ChatInteraction> chatInteractions) {
+        synchronized (rebuildLock) {
+            if (archivedDuringRebuild != null) {
+                archivedDuringRebuild.addAll(chatInteractions);
+                return;
+            }
+        }
+        chatInteractions.forEach(this::unindex);
+    }
+
+    private void unindex(ChatInteraction chatInteraction) {
+        UserIndex index = indexes.get(chatInteraction.getUsername());
+        if (index != null) {
+            index.remove(chatInteraction.getId());
+        }
+    }
+
+    /**
+     * Adds a completed chat interaction to its user's index unless it is already there.
+     *
+     * @param chatInteraction the chat interaction
+     * @return true if it was added
+     */
+    private boolean index(ChatInteraction chatInteraction) {
+        if (chatInteraction.getStatus() != ChatStatus.COMPLETE) {
+            return false;
+        }
+        List<String> terms = Tokenizer.tokenize(chatInteraction.getMessage());
+        terms.addAll(Tokenizer.tokenize(chatInteraction.getFullResponse()));
+        UserIndex index = indexes.computeIfAbsent(chatInteraction.getUsername(), ignored -> new UserIndex());
+        synchronized (index) {
+            if (index.contains(chatInteraction.getId())) {
+                return false;
+            }
+            index.add(chatInteraction.getId(), terms);
+            return true;
+        }
+    }
+
+    /**
+     * One pass over the table, tracking where the next catch-up must start.
+     */
+    private final class Scan {
+
+        private final long highestIdBefore;
+        private long highestId;
+        private long lowestPendingId = Long.MAX_VALUE;
+        private int indexed;
+
+        private Scan(long highestIdBefore) {
+            this.highestIdBefore = highestIdBefore;
+            this.highestId = highestIdBefore;
+        }
+
+        private void index(ChatInteraction chatInteraction) {
+            highestId = Math.max(highestId, chatInteraction.getId());
+            if (chatInteraction.getStatus() == ChatStatus.PENDING) {
+                lowestPendingId = Math.min(lowestPendingId, chatInteraction.getId());
+            }
+            if (ChatSearchServiceImpl.this.index(chatInteraction)) {
+                indexed++;
+            }
+        }
+
+        /**
+         * Moves the catch-up start to the given id, or to just before the first pending
+         * interaction if that comes earlier.
+         *
+         * @param scannedTwice the highest id the next catch-up need not scan again
+         */
+        private void finish(long scannedTwice) {
+            catchUpFrom = Math.max(catchUpFrom, Math.min(scannedTwice, lowestPendingId - 1));
+            highestScannedId = highestId;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package services.impl;
+
+import cache.LruTtlCache;
+import cache.PromptKey;
+import com.typesafe.config.Config;
+import dao.CachedCompletionDao;
+import lombok.extern.slf4j.Slf4j;
+import models.CachedCompletion;
+import services.CompletionCache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of the CompletionCache interface with a size- and TTL-bounded LRU
+ * tier in memory and an optional persistent tier in the application database.
+ */
+@Singleton
+@Slf4j
+public class CompletionCacheImpl implements CompletionCache {
+
+    private final boolean enabled;
+    private final boolean persistent;
+    private final Duration ttl;
+    private final LruTtlCache<PromptKey, String> memory;
+    private final CachedCompletionDao cachedCompletionDao;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a CompletionCacheImpl with the specified dependencies.
+     *
+     * @param cachedCompletionDao the DAO for the persistent tier
+     * @param config the configuration object containing cache settings
+     */
+    @Inject
+    public CompletionCacheImpl(CachedCompletionDao cachedCompletionDao, Config config) {
+        this.cachedCompletionDao = cachedCompletionDao;
+        Config cacheConfig = config.getConfig("chat.cache");
+        this.enabled = cacheConfig.getBoolean("enabled");
+        this.persistent = cacheConfig.getBoolean("persistent");
+        this.ttl = cacheConfig.getDuration("ttl");
+        this.memory = new LruTtlCache<>(cacheConfig.getInt("maxEntries"), ttl.toNanos());
+        log.debug("CompletionCacheImpl initialized (enabled: {}, persistent: {}, ttl: {})", enabled, persistent, ttl);
+    }
+
+    /**
+     * Looks up the cached completion for a prompt, first in memory and then, if enabled,
+     * in the persistent tier. Persistent hits are promoted into memory.
+     *
+     * @param key the normalized prompt
+     * @return a CompletionStage containing the cached response, if present
+     */
+    @Override
+    public CompletionStage<Optional<String>> get(PromptKey key) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String cached = memory.get(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        if (!persistent) {
+            misses.increment();
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return cachedCompletionDao.findByPromptHash(key.digest())
+                .thenApply(stored -> stored
+                        .filter(entry -> entry.getCreatedAt().toInstant().plus(ttl).isAfter(Instant.now()))
+                        .map(CachedCompletion::getResponse))
+                .exceptionally(error -> {
+                    log.warn("Failed to read persistent completion cache: {}", error.getMessage());
+                    return Optional.empty();
+                })
+                .thenApply(response -> {
+                    if (response.isPresent()) {
+                        hits.increment();
+                        memory.put(key, response.get());
+                    } else {
+                        misses.increment();
+                    }
+                    return response;
+                });
+    }
+
+    /**
+     * Stores the completion for a prompt in memory and, if enabled, writes it to the
+     * persistent tier in the background.
+     *
+     * @param key the normalized prompt
+     * @param response the completion returned by the upstream API
+     */
+    @Override
+    public void put(PromptKey key, String response) {
+        if (!enabled) {
+            return;
+        }
+
+        memory.put(key, response);
+
+        if (persistent) {
+            CachedCompletion entry = new CachedCompletion(key.digest(), key.getModel(), response,
+                    new Timestamp(System.currentTimeMillis()));
+            cachedCompletionDao.save(entry)
+                    .exceptionally(error -> {
+                        log.warn("Failed to write persistent completion cache: {}", error.getMessage());
+                        return null;
+                    });
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,167 @@
+package services.impl;
+
+import cache.LruTtlCache;
+import com.typesafe.config.Config;
+import conversation.ConversationTurn;
+import conversation.TokenEstimator;
+import conversation.TurnRing;
+import dao.ChatInteractionDao;
+import dao.ChatInteractionEvents;
+import dtos.ChatRequestDTO;
+import lombok.extern.slf4j.Slf4j;
+import models.ChatInteraction;
+import models.ChatStatus;
+import services.ConversationContext;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Implementation of the ConversationContext interface keeping a ring of recent turns
+ * per user in memory. Rings are updated when interactions are saved and seeded with a
+ * single bounded query the first time a user is seen, so building the context never
+ * reloads the full history. A ring is dropped once its user has neither sent a message
+ * nor had one saved for the idle TTL. Only completed interactions answered by ChatGPT
+ * are replayed; pending, failed and fallback responses are left out.
+ * <p>
+ * Interactions saved while a ring is being seeded are collected aside and appended to
+ * the seed, skipping those the seed query already returned, so a seed never drops or
+ * repeats a turn.
+ */
+@Singleton
+@Slf4j
+public class ConversationContextImpl implements ConversationContext {
+
+    private final ChatInteractionDao chatInteractionDao;
+    private final boolean enabled;
+    private final int maxTurns;
+    private final int maxTokens;
+    private final LruTtlCache<String, TurnRing> rings;
+    private final Map<String, TurnRing> seeding = new HashMap<>();
+    private final Object seedLock = new Object();
+
+    /**
+     * Constructs a ConversationContextImpl with the specified dependencies.
+     *
+     * @param chatInteractionDao the DAO used to seed the ring of a user
+     * @param events the save notifications used to keep rings current
+     * @param config the configuration object containing context settings
+     */
+    @Inject
+    public ConversationContextImpl(ChatInteractionDao chatInteractionDao, ChatInteractionEvents events, Config config) {
+        this.chatInteractionDao = chatInteractionDao;
+        Config contextConfig = config.getConfig("chat.context");
+        this.enabled = contextConfig.getBoolean("enabled");
+        this.maxTurns = contextConfig.getInt("maxTurns");
+        this.maxTokens = contextConfig.getInt("maxTokens");
+        this.rings = new LruTtlCache<>(contextConfig.getInt("maxUsers"), contextConfig.getDuration("idleTtl").toNanos(), true);
+        events.onSaved(this::record);
+    }
+
+    /**
+     * Returns the most recent turns of a user's conversation that fit the context token
+     * budget alongside the next message.
+     *
+     * @param username the username of the user sending the message
+     * @param message the message about to be sent
+     * @return a CompletionStage containing the turns to replay, oldest first
+     */
+    @Override
+    public CompletionStage<List<ConversationTurn>> contextFor(String username, String message) {
+        int budget = maxTokens - TokenEstimator.estimateMessage(message);
+        if (!enabled || username == null || budget <= 0) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        TurnRing ring = rings.get(username);
+        if (ring != null) {
+            return CompletableFuture.completedFuture(ring.recent(budget));
+        }
+
+        log.debug("Seeding conversation context for user: {}", username);
+        TurnRing savedMeanwhile;
+        synchronized (seedLock) {
+            savedMeanwhile = seeding.computeIfAbsent(username, ignored -> new TurnRing(maxTurns));
+        }
+        return chatInteractionDao.getChatsByUsername(username, null, maxTurns)
+                .thenApply(chatInteractions -> {
+                    synchronized (seedLock) {
+                        TurnRing installed = rings.get(username);
+                        if (installed != null) {
+                            return installed.recent(budget);
+                        }
+                        TurnRing seeded = new TurnRing(maxTurns);
+                        Set<Long> seededIds = new HashSet<>();
+                        for (int i = chatInteractions.size() - 1; i >= 0; i--) {
+                            if (isReplayable(chatInteractions.get(i))) {
+                                seeded.add(ConversationTurn.of(chatInteractions.get(i)));
+                                seededIds.add(chatInteractions.get(i).getId());
+                            }
+                        }
+                        for (ConversationTurn turn : savedMeanwhile.all()) {
+                            if (!seededIds.contains(turn.getChatId())) {
+                                seeded.add(turn);
+                            }
+                        }
+                        rings.put(username, seeded);
+                        seeding.remove(username, savedMeanwhile);
+                        return seeded.recent(budget);
+                    }
+                })
+                .whenComplete((turns, error) -> {
+                    if (error != null) {
+                        synchronized (seedLock) {
+                            seeding.remove(username, savedMeanwhile);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Appends a saved interaction to the ring of its user, if that ring is in memory or
+     * being seeded. Users without a ring are seeded from the database on their next
+     * message.
+     *
+     * @param chatInteraction the saved chat interaction
+     */
+    private void record(ChatInteraction chatInteraction) {
+        if (!enabled || chatInteraction.getUsername() == null || !isReplayable(chatInteraction)) {
+            return;
+        }
+        ConversationTurn turn = ConversationTurn.of(chatInteraction);
+        TurnRing ring = rings.get(chatInteraction.getUsername());
+        if (ring != null) {
+            ring.add(turn);
+            return;
+        }
+        synchronized (seedLock) {
+            ring = rings.get(chatInteraction.getUsername());
+            if (ring == null) {
+                ring = seeding.get(chatInteraction.getUsername());
+            }
+            if (ring != null) {
+                ring.add(turn);
+            }
+        }
+    }
+
+    /**
+     * Tells whether an interaction is worth replaying to the model: it has been answered,
+     * and the answer came from ChatGPT rather than a failure placeholder.
+     *
+     * @param chatInteraction the chat interaction
+     * @return true if it belongs in the conversation context
+     */
+    private static boolean isReplayable(ChatInteraction chatInteraction) {
+        return chatInteraction.getStatus() == ChatStatus.COMPLETE
+                && !ChatRequestDTO.isPlaceholderResponse(chatInteraction.getFullResponse());
+    }
+}
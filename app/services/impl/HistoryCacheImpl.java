@@ -0,0 +1,116 @@
+package services.impl;
+
+import cache.LruTtlCache;
+import com.typesafe.config.Config;
+import dao.ChatInteractionEvents;
+import lombok.extern.slf4j.Slf4j;
+import services.HistoryCache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of the HistoryCache interface bounded by user count, entry size and
+ * time to live. Entries are invalidated whenever an interaction of their user is saved
+ * by this node; saves on other nodes are only picked up once the entry expires, so the
+ * time to live bounds how stale a page can be unless users are routed to one node.
+ */
+@Singleton
+@Slf4j
+public class HistoryCacheImpl implements HistoryCache {
+
+    private final boolean enabled;
+    private final int maxEntryBytes;
+    private final LruTtlCache<String, UserHistory> histories;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a HistoryCacheImpl with the specified dependencies.
+     *
+     * @param events the save notifications used to invalidate entries
+     * @param config the configuration object containing cache settings
+     */
+    @Inject
+    public HistoryCacheImpl(ChatInteractionEvents events, Config config) {
+        Config cacheConfig = config.getConfig("chat.historyCache");
+        this.enabled = cacheConfig.getBoolean("enabled");
+        this.maxEntryBytes = (int) cacheConfig.getBytes("maxEntryBytes").longValue();
+        this.histories = new LruTtlCache<>(cacheConfig.getInt("maxUsers"), cacheConfig.getDuration("ttl").toNanos());
+        events.onSaved(chatInteraction -> invalidate(chatInteraction.getUsername()));
+    }
+
+    /**
+     * Returns the cached JSON of a user's newest history page, loading and caching it on
+     * a miss. A page loaded while the user's history changed is returned but not cached.
+     *
+     * @param username the username whose history is requested
+     * @param limit the page size
+     * @param loader loads and serializes the page on a miss
+     * @return a CompletionStage containing the serialized page
+     */
+    @Override
+    public CompletionStage<byte[]> getOrLoad(String username, int limit, Supplier<CompletionStage<byte[]>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        UserHistory history = histories.get(username);
+        if (history == null) {
+            history = new UserHistory();
+            histories.put(username, history);
+        }
+
+        byte[] cached = history.pages.get(limit);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.increment();
+        UserHistory loadingFor = history;
+        return loader.get().thenApply(json -> {
+            if (json.length <= maxEntryBytes && histories.get(username) == loadingFor) {
+                loadingFor.pages.put(limit, json);
+            }
+            return json;
+        });
+    }
+
+    /**
+     * Drops everything cached for a user.
+     *
+     * @param username the username whose history changed
+     */
+    @Override
+    public void invalidate(String username) {
+        if (username != null) {
+            histories.invalidate(username);
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Serialized history pages of one user, by page size. An entry is replaced rather
+     * than cleared on invalidation, so a load that started before the invalidation
+     * cannot write into the new entry.
+     */
+    private static final class UserHistory {
+
+        private final ConcurrentHashMap<Integer, byte[]> pages = new ConcurrentHashMap<>();
+    }
+}
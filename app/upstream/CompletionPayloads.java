@@ -0,0 +1,74 @@
+package upstream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import conversation.ConversationTurn;
+import play.libs.Json;
+
+import java.util.List;
+
+/**
+ * Builds chat completion requests and reads chat completion responses in the format of
+ * the OpenAI chat completions API.
+ */
+public final class CompletionPayloads {
+
+    private CompletionPayloads() {
+    }
+
+    /**
+     * Builds the request payload for a message and its context. Each context turn is
+     * replayed as the original prompt followed by the assistant response.
+     *
+     * @param model the model to complete with
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @param stream whether the completion should be streamed back as server-sent events
+     * @return the JSON request payload
+     */
+    public static JsonNode buildRequest(String model, List<ConversationTurn> context, String userMessage,
+                                        String role, boolean stream) {
+        ObjectNode requestPayload = Json.newObject()
+                .put("model", model);
+        if (stream) {
+            requestPayload.put("stream", true);
+        }
+        ArrayNode messages = requestPayload.putArray("messages");
+        for (ConversationTurn turn : context) {
+            messages.add(Json.newObject()
+                    .put("role", turn.getChatRole())
+                    .put("content", turn.getMessage()));
+            messages.add(Json.newObject()
+                    .put("role", "assistant")
+                    .put("content", turn.getResponse()));
+        }
+        messages.add(Json.newObject()
+                .put("role", role)
+                .put("content", userMessage)
+        );
+        return requestPayload;
+    }
+
+    /**
+     * Extracts the message content from a complete chat completion response.
+     *
+     * @param response the JSON response body
+     * @return the content of the first choice
+     */
+    public static String parseContent(JsonNode response) {
+        return response.get("choices").get(0).get("message").get("content").asText();
+    }
+
+    /**
+     * Extracts the content delta from a single streamed completion chunk.
+     *
+     * @param data the JSON data of a server-sent event
+     * @return the content delta, or an empty string if the chunk carries none
+     */
+    public static String parseStreamDelta(String data) {
+        JsonNode content = Json.parse(data).path("choices").path(0).path("delta").path("content");
+        return content.isTextual() ? content.asText() : "";
+    }
+}
@@ -0,0 +1,61 @@
+package upstream;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latency samples of an endpoint, kept in a ring so a percentile tracks
+ * the endpoint's current behaviour rather than its whole history. The percentile is
+ * recomputed on every sample and read without locking.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private final double percentile;
+    private final long[] sorted;
+    private int next;
+    private int count;
+    private volatile long percentileNanos;
+    private volatile int sampleCount;
+
+    /**
+     * Creates an empty window.
+     *
+     * @param size the number of recent samples kept
+     * @param percentile the percentile to track, between 0 and 1
+     */
+    public LatencyWindow(int size, double percentile) {
+        this.samples = new long[size];
+        this.sorted = new long[size];
+        this.percentile = percentile;
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one once the window is full.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int rank = (int) Math.ceil(percentile * count) - 1;
+        percentileNanos = sorted[Math.max(rank, 0)];
+        sampleCount = count;
+    }
+
+    /**
+     * Returns the tracked percentile of the samples in the window.
+     *
+     * @return the percentile in nanoseconds, or zero while the window is empty
+     */
+    public long getPercentileNanos() {
+        return percentileNanos;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+}
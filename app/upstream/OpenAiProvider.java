@@ -0,0 +1,188 @@
+package upstream;
+
+import akka.NotUsed;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.JsonNode;
+import conversation.ConversationTurn;
+import lombok.extern.slf4j.Slf4j;
+import metrics.InFlightGauge;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.Stage;
+import metrics.StatusCodeCounter;
+import play.libs.Json;
+import play.libs.ws.InMemoryBodyWritable;
+import play.libs.ws.WSClient;
+import play.libs.ws.WSResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Provider for an endpoint speaking the OpenAI chat completions API, which is also
+ * served by Azure OpenAI, most self-hosted model servers and the load-test stub.
+ */
+@Slf4j
+public class OpenAiProvider implements UpstreamProvider {
+
+    private static final int MAX_STREAM_LINE_LENGTH = 64 * 1024;
+    private static final String STREAM_DATA_PREFIX = "data:";
+    private static final String STREAM_DONE_MARKER = "[DONE]";
+
+    private final String name;
+    private final String url;
+    private final String apiKey;
+    private final String model;
+    private final Duration requestTimeout;
+    private final WSClient wsClient;
+    private final Materializer materializer;
+    private final LatencyHistogram upstreamLatency;
+    private final InFlightGauge upstreamCallsInFlight;
+    private final StatusCodeCounter upstreamStatuses;
+
+    /**
+     * Constructs a provider for one endpoint.
+     *
+     * @param name the name identifying the endpoint
+     * @param url the chat completions URL
+     * @param apiKey the bearer token sent with each request
+     * @param model the model to complete with
+     * @param requestTimeout the deadline of each request, including a whole streamed response
+     * @param wsClient the WSClient for making HTTP requests
+     * @param materializer the materializer draining the bodies of rejected streams
+     * @param metrics the registry recording upstream latency, status codes and in-flight calls
+     */
+    public OpenAiProvider(String name, String url, String apiKey, String model, Duration requestTimeout,
+                          WSClient wsClient, Materializer materializer, MetricsRegistry metrics) {
+        this.name = name;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.requestTimeout = requestTimeout;
+        this.wsClient = wsClient;
+        this.materializer = materializer;
+        this.upstreamLatency = metrics.stage(Stage.UPSTREAM_CALL);
+        this.upstreamCallsInFlight = metrics.getUpstreamCallsInFlight();
+        this.upstreamStatuses = metrics.getUpstreamStatuses();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public CompletionStage<String> complete(List<ConversationTurn> context, String userMessage, String role) {
+        log.debug("Fetching response from {} for message: {} and role: {}", name, userMessage, role);
+
+        JsonNode requestPayload = CompletionPayloads.buildRequest(model, context, userMessage, role, false);
+
+        return observeUpstream(() -> wsClient.url(url)
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Content-Type", "application/json")
+                .setRequestTimeout(requestTimeout)
+                .post(requestPayload))
+                .thenApplyAsync(response -> {
+                    log.debug("Received response from {} with status: {}", name, response.getStatus());
+                    if (response.getStatus() == 200) {
+                        String gptResponse = CompletionPayloads.parseContent(response.asJson());
+                        log.debug("ChatGPT response content: {}", gptResponse);
+                        return gptResponse;
+                    } else {
+                        log.error("Failed to fetch ChatGPT response from {}. Status: {}, Body: {}",
+                                name, response.getStatus(), response.getBody());
+                        throw new RuntimeException("Failed to fetch ChatGPT response: " + response.getBody());
+                    }
+                });
+    }
+
+    @Override
+    public CompletionStage<Source<String, NotUsed>> stream(List<ConversationTurn> context, String userMessage, String role) {
+        log.debug("Streaming response from {} for message: {} and role: {}", name, userMessage, role);
+
+        JsonNode requestPayload = CompletionPayloads.buildRequest(model, context, userMessage, role, true);
+
+        return observeUpstream(() -> wsClient.url(url)
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Accept", "text/event-stream")
+                .setRequestTimeout(requestTimeout)
+                .setMethod("POST")
+                .setBody(new InMemoryBodyWritable(ByteString.fromString(Json.stringify(requestPayload)), "application/json"))
+                .stream())
+                .thenApply(response -> {
+                    log.debug("Opened stream on {} with status: {}", name, response.getStatus());
+                    if (response.getStatus() != 200) {
+                        log.error("Failed to open ChatGPT stream on {}. Status: {}", name, response.getStatus());
+                        // The body must be consumed, or its connection is never returned to the pool.
+                        response.getBodyAsSource().runWith(Sink.ignore(), materializer);
+                        throw new RuntimeException("Failed to open ChatGPT stream. Status: " + response.getStatus());
+                    }
+                    return response.getBodyAsSource()
+                            .via(Framing.delimiter(ByteString.fromString("\n"), MAX_STREAM_LINE_LENGTH, FramingTruncation.ALLOW))
+                            .map(line -> line.utf8String().trim())
+                            .filter(line -> line.startsWith(STREAM_DATA_PREFIX))
+                            .map(line -> line.substring(STREAM_DATA_PREFIX.length()).trim())
+                            .takeWhile(data -> !STREAM_DONE_MARKER.equals(data))
+                            .map(CompletionPayloads::parseStreamDelta)
+                            .mapMaterializedValue(ignored -> NotUsed.getInstance());
+                });
+    }
+
+    /**
+     * Sends concurrent HEAD requests to the endpoint. Any HTTP response, whatever its
+     * status, means a TLS connection was opened and returned to the keep-alive pool.
+     */
+    @Override
+    public CompletionStage<Void> warmUp(int connections) {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            requests[i] = wsClient.url(url)
+                    .setRequestTimeout(requestTimeout)
+                    .execute("HEAD")
+                    .toCompletableFuture();
+        }
+        return CompletableFuture.allOf(requests);
+    }
+
+    /**
+     * Records the latency, status code and in-flight count of an upstream request. For a
+     * streamed response, the latency covers the time until the response headers arrive.
+     *
+     * @param request sends the request
+     * @return the CompletionStage of the response
+     */
+    private CompletionStage<WSResponse> observeUpstream(Supplier<CompletionStage<WSResponse>> request) {
+        long start = System.nanoTime();
+        upstreamCallsInFlight.enter();
+        CompletionStage<WSResponse> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            upstreamCallsInFlight.exit();
+            upstreamStatuses.recordFailure();
+            throw e;
+        }
+        return response.whenComplete((result, error) -> {
+            upstreamLatency.recordSince(start);
+            upstreamCallsInFlight.exit();
+            if (error != null) {
+                upstreamStatuses.recordFailure();
+            } else {
+                upstreamStatuses.record(result.getStatus());
+            }
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package upstream;
+
+/**
+ * Peak-sensitive exponentially weighted moving average of an endpoint's latency, used as
+ * its load-balancing cost. A sample above the current average replaces it at once, so a
+ * slowing endpoint is avoided immediately; lower samples pull the average down
+ * gradually, weighted by the time since the previous sample. The cost multiplies the
+ * average by the number of outstanding requests plus one, so an endpoint that is busy
+ * looks as expensive as it will be for the next request.
+ */
+public class PeakEwma {
+
+    /**
+     * Cost of an endpoint that has requests outstanding but has never answered one, high
+     * enough that any endpoint with a measured latency is preferred.
+     */
+    static final double UNMEASURED_PENALTY = 1e18;
+
+    private final double decayNanos;
+    private double ewmaNanos;
+    private long lastSampleNanos;
+    private int pending;
+
+    /**
+     * Creates an estimator without samples.
+     *
+     * @param decayNanos the time constant over which past samples lose weight, in nanoseconds
+     * @param nowNanos the current System.nanoTime() value
+     */
+    public PeakEwma(long decayNanos, long nowNanos) {
+        this.decayNanos = decayNanos;
+        this.lastSampleNanos = nowNanos;
+    }
+
+    /**
+     * Counts a request sent to the endpoint.
+     */
+    public synchronized void begin() {
+        pending++;
+    }
+
+    /**
+     * Counts a finished request and folds its latency into the average.
+     *
+     * @param latencyNanos the latency of the request, or a penalty for a failed request
+     * @param nowNanos the current System.nanoTime() value
+     */
+    public synchronized void end(long latencyNanos, long nowNanos) {
+        pending--;
+        observe(latencyNanos, nowNanos);
+    }
+
+    /**
+     * Counts a finished request whose latency should not be sampled, such as a streamed
+     * response whose latency only covers its headers.
+     */
+    public synchronized void endUnsampled() {
+        pending--;
+    }
+
+    /**
+     * Returns the cost of sending one more request to the endpoint.
+     *
+     * @param nowNanos the current System.nanoTime() value
+     * @return the expected latency scaled by the outstanding requests
+     */
+    public synchronized double cost(long nowNanos) {
+        observe(0, nowNanos);
+        if (ewmaNanos == 0 && pending > 0) {
+            return UNMEASURED_PENALTY + pending;
+        }
+        return ewmaNanos * (pending + 1);
+    }
+
+    public synchronized double getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Folds one sample into the average. Reading the cost folds in a zero sample, so the
+     * average of an endpoint that is not answering requests decays towards zero and a
+     * slow endpoint gets probed again after a while instead of being starved forever.
+     *
+     * @param sampleNanos the sample in nanoseconds
+     * @param nowNanos the current System.nanoTime() value
+     */
+    private void observe(long sampleNanos, long nowNanos) {
+        if (sampleNanos > ewmaNanos) {
+            ewmaNanos = sampleNanos;
+        } else {
+            double weight = Math.exp(-Math.max(nowNanos - lastSampleNanos, 0) / decayNanos);
+            ewmaNanos = ewmaNanos * weight + sampleNanos * (1 - weight);
+        }
+        lastSampleNanos = Math.max(nowNanos, lastSampleNanos);
+    }
+}
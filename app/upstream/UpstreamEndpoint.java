@@ -0,0 +1,138 @@
+package upstream;
+
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A provider together with the latency statistics UpstreamRouter routes and hedges by:
+ * its peak-EWMA cost, a window of recent latencies for the hedging delay, and the
+ * histogram and counters exported on the metrics route.
+ */
+public class UpstreamEndpoint {
+
+    private final UpstreamProvider provider;
+    private final long failurePenaltyNanos;
+    private final PeakEwma cost;
+    private final LatencyWindow recentLatencies;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * Creates the statistics of one endpoint.
+     *
+     * @param provider the provider calling the endpoint
+     * @param decayNanos the time constant of the peak-EWMA cost
+     * @param failurePenaltyNanos the latency charged to the cost for a failed request
+     * @param windowSize the number of recent latencies kept for the hedging percentile
+     * @param percentile the percentile of recent latencies after which a request is hedged
+     */
+    public UpstreamEndpoint(UpstreamProvider provider, long decayNanos, long failurePenaltyNanos,
+                            int windowSize, double percentile) {
+        this.provider = provider;
+        this.failurePenaltyNanos = failurePenaltyNanos;
+        this.cost = new PeakEwma(decayNanos, System.nanoTime());
+        this.recentLatencies = new LatencyWindow(windowSize, percentile);
+    }
+
+    /**
+     * Counts a request sent to the endpoint.
+     *
+     * @return the System.nanoTime() value at which the request started
+     */
+    long begin() {
+        requests.increment();
+        cost.begin();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the outcome of a request. A failure is charged to the cost as at least the
+     * failure penalty, so an endpoint that fails fast does not look fast.
+     *
+     * @param startNanos the value returned by {@link #begin()}
+     * @param success whether the endpoint answered successfully
+     */
+    void end(long startNanos, boolean success) {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        if (success) {
+            latency.record(elapsed);
+            recentLatencies.record(elapsed);
+            cost.end(elapsed, now);
+        } else {
+            failures.increment();
+            cost.end(Math.max(elapsed, failurePenaltyNanos), now);
+        }
+    }
+
+    /**
+     * Records the opening of a streamed response. Its latency only covers the response
+     * headers, so it is not mixed into the statistics of complete responses.
+     *
+     * @param success whether the endpoint accepted the stream
+     */
+    void endStream(boolean success) {
+        if (success) {
+            cost.endUnsampled();
+        } else {
+            failures.increment();
+            cost.end(failurePenaltyNanos, System.nanoTime());
+        }
+    }
+
+    void countHedge() {
+        hedges.increment();
+    }
+
+    void countHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    double cost(long nowNanos) {
+        return cost.cost(nowNanos);
+    }
+
+    public UpstreamProvider getProvider() {
+        return provider;
+    }
+
+    public String getName() {
+        return provider.getName();
+    }
+
+    public double getEwmaNanos() {
+        return cost.getEwmaNanos();
+    }
+
+    public int getPending() {
+        return cost.getPending();
+    }
+
+    public LatencyWindow getRecentLatencies() {
+        return recentLatencies;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+}
@@ -0,0 +1,60 @@
+package upstream;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import conversation.ConversationTurn;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * One endpoint able to answer chat completions. UpstreamRouter spreads calls over the
+ * configured providers; implementations only talk to their endpoint and leave
+ * retries, hedging and circuit breaking to the router and the upstream guard.
+ */
+public interface UpstreamProvider {
+
+    /**
+     * Returns the name identifying this endpoint in logs and metrics.
+     *
+     * @return the endpoint name
+     */
+    String getName();
+
+    /**
+     * Returns the model this endpoint completes with.
+     *
+     * @return the model name
+     */
+    String getModel();
+
+    /**
+     * Requests a complete chat completion.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @return a CompletionStage containing the response content, failed if the endpoint
+     *         did not answer successfully
+     */
+    CompletionStage<String> complete(List<ConversationTurn> context, String userMessage, String role);
+
+    /**
+     * Opens a streamed chat completion.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @return a CompletionStage containing the Source of content deltas once the endpoint
+     *         has accepted the request, failed if it did not
+     */
+    CompletionStage<Source<String, NotUsed>> stream(List<ConversationTurn> context, String userMessage, String role);
+
+    /**
+     * Opens connections to the endpoint ahead of the first calls.
+     *
+     * @param connections the number of connections to open
+     * @return a CompletionStage completing once the connections have been attempted
+     */
+    CompletionStage<Void> warmUp(int connections);
+}
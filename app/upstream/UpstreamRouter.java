@@ -0,0 +1,377 @@
+package upstream;
+
+import akka.NotUsed;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import conversation.ConversationTurn;
+import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import metrics.PrometheusTextWriter;
+import play.libs.ws.WSClient;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads chat completions over the configured upstream endpoints. Each call goes to the
+ * cheaper of two randomly picked endpoints by peak-EWMA cost (all of them when there are
+ * only two), so slow or busy endpoints get less traffic as soon as they slow down.
+ *
+ * <p>Complete responses are hedged: if the chosen endpoint has not answered within the
+ * configured percentile of its recent latencies, the same request is sent to another
+ * endpoint and the first answer wins. A slow request is never hedged on its own
+ * endpoint, which would only double that endpoint's load; a failed request is retried
+ * at once, on the same endpoint if there is no other. Hedges are limited to a fraction
+ * of all calls so a slow upstream is not hit with twice the load. The losing request
+ * is cancelled on our side: its answer is discarded when it arrives, since Play WS
+ * cannot abort an HTTP request in flight. Callers that limit upstream concurrency are
+ * told when it has finished, so it keeps its slot until then.
+ *
+ * <p>Streamed responses are routed the same way but not hedged, as the first deltas may
+ * already have reached the client when the other endpoint would answer.
+ */
+@Singleton
+@Slf4j
+public class UpstreamRouter {
+
+    private final List<UpstreamEndpoint> endpoints;
+    private final List<List<UpstreamEndpoint>> alternatives;
+    private final boolean hedgingEnabled;
+    private final int hedgingMinSamples;
+    private final double hedgingBudget;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * Constructs an UpstreamRouter over the endpoints of the "openai" configuration
+     * section. Endpoints without their own apiKey or model use openai.apiKey and
+     * openai.model.
+     *
+     * @param wsClient the WSClient for making HTTP requests
+     * @param materializer the materializer used by the providers for streamed responses
+     * @param metrics the registry recording upstream latency, status codes and in-flight calls
+     * @param config the configuration object containing the endpoints and routing settings
+     */
+    @Inject
+    public UpstreamRouter(WSClient wsClient, Materializer materializer, MetricsRegistry metrics, Config config) {
+        this(config.getConfigList("openai.endpoints").stream()
+                        .map(endpoint -> (UpstreamProvider) new OpenAiProvider(
+                                endpoint.getString("name"),
+                                endpoint.getString("url"),
+                                endpoint.hasPath("apiKey") ? endpoint.getString("apiKey") : config.getString("openai.apiKey"),
+                                endpoint.hasPath("model") ? endpoint.getString("model") : config.getString("openai.model"),
+                                config.getDuration("openai.requestTimeout"),
+                                wsClient, materializer, metrics))
+                        .collect(Collectors.toList()),
+                config.getConfig("openai"));
+    }
+
+    /**
+     * Constructs an UpstreamRouter over the given providers.
+     *
+     * @param providers the providers to route between
+     * @param openaiConfig the configuration section containing "routing" and "hedging"
+     */
+    UpstreamRouter(List<UpstreamProvider> providers, Config openaiConfig) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one upstream endpoint must be configured");
+        }
+        Config routingConfig = openaiConfig.getConfig("routing");
+        Config hedgingConfig = openaiConfig.getConfig("hedging");
+        long decayNanos = routingConfig.getDuration("decayTime").toNanos();
+        long failurePenaltyNanos = routingConfig.getDuration("failurePenalty").toNanos();
+        int windowSize = hedgingConfig.getInt("windowSize");
+        double percentile = hedgingConfig.getDouble("percentile");
+
+        List<UpstreamEndpoint> configured = new ArrayList<>();
+        for (UpstreamProvider provider : providers) {
+            configured.add(new UpstreamEndpoint(provider, decayNanos, failurePenaltyNanos, windowSize, percentile));
+        }
+        this.endpoints = Collections.unmodifiableList(configured);
+
+        List<List<UpstreamEndpoint>> others = new ArrayList<>();
+        for (UpstreamEndpoint endpoint : endpoints) {
+            List<UpstreamEndpoint> rest = new ArrayList<>(endpoints);
+            if (rest.size() > 1) {
+                rest.remove(endpoint);
+            }
+            others.add(rest);
+        }
+        this.alternatives = others;
+
+        this.hedgingEnabled = hedgingConfig.getBoolean("enabled");
+        this.hedgingMinSamples = hedgingConfig.getInt("minSamples");
+        this.hedgingBudget = hedgingConfig.getDouble("budget");
+
+        log.info("Routing upstream calls over {} endpoints: {}; hedging {}.", endpoints.size(),
+                endpoints.stream().map(UpstreamEndpoint::getName).collect(Collectors.joining(", ")),
+                hedgingEnabled ? "at p" + Math.round(percentile * 100) + " for up to " + hedgingBudget
+                        + " of calls" : "disabled");
+    }
+
+    /**
+     * Requests a complete chat completion from the cheapest endpoint, hedged on another
+     * endpoint if it is slow or fails.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @return a CompletionStage containing the first successful response, failed with the
+     *         last error if every attempt failed
+     */
+    public CompletionStage<String> complete(List<ConversationTurn> context, String userMessage, String role) {
+        return complete(context, userMessage, role, new CompletableFuture<>());
+    }
+
+    /**
+     * Requests a complete chat completion like complete, and also reports when every
+     * request sent for it, including a losing hedge, has finished.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @param settled completed once no request of this call is in flight any more
+     * @return a CompletionStage containing the first successful response, failed with the
+     *         last error if every attempt failed
+     */
+    public CompletionStage<String> complete(List<ConversationTurn> context, String userMessage, String role,
+                                            CompletableFuture<Void> settled) {
+        return new HedgedCall(provider -> provider.complete(context, userMessage, role), settled).start();
+    }
+
+    /**
+     * Opens a streamed chat completion on the cheapest endpoint.
+     *
+     * @param context the conversation turns to replay, oldest first
+     * @param userMessage the message from the user
+     * @param role the role of the message
+     * @return a CompletionStage containing the Source of content deltas
+     */
+    public CompletionStage<Source<String, NotUsed>> stream(List<ConversationTurn> context, String userMessage, String role) {
+        UpstreamEndpoint endpoint = choose(null);
+        endpoint.begin();
+        CompletionStage<Source<String, NotUsed>> stream;
+        try {
+            stream = endpoint.getProvider().stream(context, userMessage, role);
+        } catch (RuntimeException e) {
+            stream = CompletableFuture.failedFuture(e);
+        }
+        return stream.whenComplete((source, error) -> endpoint.endStream(error == null));
+    }
+
+    /**
+     * Opens connections to every endpoint ahead of the first calls.
+     *
+     * @param connectionsPerEndpoint the number of connections to open to each endpoint
+     * @return a CompletionStage completing once every endpoint has been warmed
+     */
+    public CompletionStage<Void> warmUp(int connectionsPerEndpoint) {
+        return CompletableFuture.allOf(endpoints.stream()
+                .map(endpoint -> endpoint.getProvider().warmUp(connectionsPerEndpoint).toCompletableFuture())
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    public List<UpstreamEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Writes the latency histogram, cost and counters of every endpoint.
+     *
+     * @param writer the writer receiving the metrics
+     */
+    public void writeTo(PrometheusTextWriter writer) {
+        writer.family("chat_upstream_endpoint_duration_seconds", "histogram",
+                "Latency of complete responses per upstream endpoint.");
+        for (UpstreamEndpoint endpoint : endpoints) {
+            writer.histogram("chat_upstream_endpoint_duration_seconds", "endpoint", endpoint.getName(),
+                    endpoint.getLatency());
+        }
+        writer.family("chat_upstream_endpoint_requests_total", "counter", "Requests sent per upstream endpoint.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_endpoint_requests_total", "endpoint",
+                endpoint.getName(), endpoint.getRequestCount()));
+        writer.family("chat_upstream_endpoint_failures_total", "counter", "Failed requests per upstream endpoint.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_endpoint_failures_total", "endpoint",
+                endpoint.getName(), endpoint.getFailureCount()));
+        writer.family("chat_upstream_endpoint_pending", "gauge", "Outstanding requests per upstream endpoint.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_endpoint_pending", "endpoint",
+                endpoint.getName(), endpoint.getPending()));
+        writer.family("chat_upstream_endpoint_ewma_seconds", "gauge",
+                "Peak-EWMA latency per upstream endpoint, the basis of its routing cost.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_endpoint_ewma_seconds", "endpoint",
+                endpoint.getName(), endpoint.getEwmaNanos() / 1e9));
+        writer.family("chat_upstream_endpoint_hedge_delay_seconds", "gauge",
+                "Recent latency percentile after which a request to the endpoint is hedged.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_endpoint_hedge_delay_seconds", "endpoint",
+                endpoint.getName(), endpoint.getRecentLatencies().getPercentileNanos() / 1e9));
+        writer.family("chat_upstream_hedges_total", "counter", "Hedged requests sent per upstream endpoint.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_hedges_total", "endpoint",
+                endpoint.getName(), endpoint.getHedgeCount()));
+        writer.family("chat_upstream_hedge_wins_total", "counter",
+                "Hedged requests that answered first, per upstream endpoint.");
+        endpoints.forEach(endpoint -> writer.sample("chat_upstream_hedge_wins_total", "endpoint",
+                endpoint.getName(), endpoint.getHedgeWinCount()));
+    }
+
+    /**
+     * Picks the cheaper of two random endpoints, or of the only two.
+     *
+     * @param exclude an endpoint to avoid, or null; it is only returned when it is the
+     *                sole endpoint
+     * @return the chosen endpoint
+     */
+    UpstreamEndpoint choose(UpstreamEndpoint exclude) {
+        List<UpstreamEndpoint> candidates = exclude == null ? endpoints : alternatives.get(endpoints.indexOf(exclude));
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        int first = 0;
+        int second = 1;
+        if (size > 2) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            first = random.nextInt(size);
+            second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+        }
+        long now = System.nanoTime();
+        UpstreamEndpoint a = candidates.get(first);
+        UpstreamEndpoint b = candidates.get(second);
+        return a.cost(now) <= b.cost(now) ? a : b;
+    }
+
+    /**
+     * Returns the delay after which a request to the endpoint is hedged.
+     *
+     * @param endpoint the endpoint of the first request
+     * @return the delay in nanoseconds, or a negative value if the request is only hedged
+     *         when it fails
+     */
+    private long hedgeDelayNanos(UpstreamEndpoint endpoint) {
+        LatencyWindow recent = endpoint.getRecentLatencies();
+        if (!hedgingEnabled || recent.getSampleCount() < hedgingMinSamples) {
+            return -1;
+        }
+        return recent.getPercentileNanos();
+    }
+
+    /**
+     * Takes a hedge from the budget if the hedges so far stay within their share of calls.
+     *
+     * @return true if a hedge may be sent
+     */
+    private boolean tryHedge() {
+        while (true) {
+            long sent = hedges.get();
+            if (sent >= hedgingBudget * calls.get()) {
+                return false;
+            }
+            if (hedges.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * One logical call with at most one hedge. The outstanding count includes a hedge
+     * being decided, so the call only fails once no attempt can still succeed.
+     */
+    private final class HedgedCall {
+
+        private final Function<UpstreamProvider, CompletionStage<String>> call;
+        private final CompletableFuture<Void> settled;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean hedged = new AtomicBoolean();
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private UpstreamEndpoint primary;
+        private volatile Throwable lastError;
+
+        private HedgedCall(Function<UpstreamProvider, CompletionStage<String>> call, CompletableFuture<Void> settled) {
+            this.call = call;
+            this.settled = settled;
+        }
+
+        private CompletionStage<String> start() {
+            calls.incrementAndGet();
+            primary = choose(null);
+            outstanding.incrementAndGet();
+            send(primary, false);
+            long delay = hedgeDelayNanos(primary);
+            if (delay >= 0 && !result.isDone()) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> hedge(false));
+            }
+            return result;
+        }
+
+        /**
+         * Sends the request to another endpoint, unless it was answered, already hedged or
+         * the hedge budget is spent.
+         *
+         * @param afterFailure whether the primary request failed, rather than being slow;
+         *                     only then may the hedge go to the primary's own endpoint
+         */
+        private void hedge(boolean afterFailure) {
+            outstanding.incrementAndGet();
+            UpstreamEndpoint backup = choose(primary);
+            if (result.isDone() || !hedgingEnabled || backup == primary && !afterFailure
+                    || !hedged.compareAndSet(false, true) || !tryHedge()) {
+                release();
+                return;
+            }
+            log.debug("Hedging upstream call to {} on {}.", primary.getName(), backup.getName());
+            backup.countHedge();
+            send(backup, true);
+        }
+
+        private void send(UpstreamEndpoint endpoint, boolean isHedge) {
+            long start = endpoint.begin();
+            CompletionStage<String> attempt;
+            try {
+                attempt = call.apply(endpoint.getProvider());
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            attempt.whenComplete((response, error) -> {
+                endpoint.end(start, error == null);
+                if (error == null) {
+                    if (answered.compareAndSet(false, true)) {
+                        if (isHedge) {
+                            endpoint.countHedgeWin();
+                        }
+                        result.complete(response);
+                    }
+                } else {
+                    log.debug("Upstream call to {} failed: {}", endpoint.getName(), error.getMessage());
+                    lastError = error;
+                    hedge(true);
+                }
+                release();
+            });
+        }
+
+        private void release() {
+            if (outstanding.decrementAndGet() == 0) {
+                if (lastError != null) {
+                    result.completeExceptionally(lastError);
+                }
+                settled.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package warmup;
+
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import dao.ChatHistoryCursor;
+import dtos.ChatBatchResultDTO;
+import dtos.ChatHistoryPageDTO;
+import dtos.ChatInteractionDTO;
+import dtos.ChatJobStatusDTO;
+import dtos.ChatRequestDTO;
+import models.ChatStatus;
+import play.libs.Json;
+import services.ChatGPTService;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * In-memory ChatGPTService answering with canned data, so warm-up requests run through
+ * ChatGPTController without calling the ChatGPT API or writing to the database.
+ */
+class StubChatGPTService implements ChatGPTService {
+
+    private static final String RESPONSE = "This is a warm-up response.";
+
+    private final List<ChatInteractionDTO> history = new ArrayList<>();
+
+    StubChatGPTService() {
+        long now = System.currentTimeMillis();
+        for (long id = 1; id <= 20; id++) {
+            history.add(new ChatInteractionDTO(id, "user", "Warm-up message " + id, RESPONSE,
+                    new Timestamp(now - id * 1000), "warmup", false));
+        }
+    }
+
+    @Override
+    public CompletionStage<ChatInteractionDTO> addChat(ChatRequestDTO dto, String username) {
+        return CompletableFuture.completedFuture(new ChatInteractionDTO(0L, dto.getChatRole(), dto.getMessage(),
+                RESPONSE, new Timestamp(System.currentTimeMillis()), username, false));
+    }
+
+    @Override
+    public CompletionStage<Optional<ChatInteractionDTO>> submitChat(ChatRequestDTO dto, String username) {
+        return addChat(dto, username).thenApply(Optional::of);
+    }
+
+    @Override
+    public CompletionStage<Optional<ChatJobStatusDTO>> getChatResult(String username, long id, Duration wait) {
+        return CompletableFuture.completedFuture(Optional.of(ChatJobStatusDTO.of(history.get(0), ChatStatus.COMPLETE)));
+    }
+
+    @Override
+    public CompletionStage<ChatBatchResultDTO> addChats(List<ChatRequestDTO> prompts, String username, boolean failFast) {
+        return CompletableFuture.completedFuture(new ChatBatchResultDTO(Collections.emptyList(), 0, 0));
+    }
+
+    @Override
+    public Source<String, ?> streamChat(ChatRequestDTO dto, String username) {
+        return Source.single(RESPONSE);
+    }
+
+    @Override
+    public CompletionStage<ChatHistoryPageDTO> getChatsByUsername(String username, ChatHistoryCursor before, int limit) {
+        List<ChatInteractionDTO> items = history.subList(0, Math.min(limit, history.size()));
+        String nextCursor = ChatHistoryCursor.of(items.get(items.size() - 1)).encode();
+        return CompletableFuture.completedFuture(new ChatHistoryPageDTO(items, nextCursor));
+    }
+
+    @Override
+    public CompletionStage<byte[]> getRecentChatsJson(String username, int limit) {
+        return getChatsByUsername(username, null, limit)
+                .thenApply(page -> Json.stringify(Json.toJson(page)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public CompletionStage<Optional<String>> getFullResponse(String username, long id) {
+        return CompletableFuture.completedFuture(Optional.of(RESPONSE));
+    }
+
+    @Override
+    public Source<ByteString, ?> streamAllChatsJson(String username) {
+        return Source.single(ByteString.fromString(Json.stringify(Json.toJson(history))));
+    }
+}
@@ -0,0 +1,250 @@
+package warmup;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+import controllers.ChatGPTController;
+import dao.ChatHistoryCursor;
+import dao.DatabaseExecutionContext;
+import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import play.data.FormFactory;
+import play.db.Database;
+import play.db.jpa.JPAApi;
+import play.libs.Json;
+import play.mvc.Http;
+import resilience.AdmissionControl;
+import resilience.HistoryStreamLimiter;
+import services.ChatSearchService;
+import upstream.UpstreamRouter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+
+/**
+ * Brings a node from cold to ready before it takes traffic. At startup it runs three
+ * steps in parallel:
+ * <ul>
+ *   <li>database: opens all but one pooled connection and runs a query through JPA, which
+ *   bootstraps Hibernate and, with the production persistence unit, validates the schema.
+ *   One connection is left to other startup work, and a failed attempt is retried with
+ *   exponential backoff until it succeeds, so a database that is busy or briefly down at
+ *   boot only delays readiness;</li>
+ *   <li>upstream: opens keep-alive connections to every configured upstream endpoint;</li>
+ *   <li>jit: runs synthetic requests through ChatGPTController against a stub service,
+ *   so form binding, validation and JSON serialization are compiled before real traffic.</li>
+ * </ul>
+ * The node reports ready once every step has finished and the database step succeeded,
+ * whichever of them comes last.
+ * An unreachable upstream does not hold readiness back, since the upstream guard already
+ * handles outages at request time.
+ */
+@Singleton
+@Slf4j
+public class WarmupService {
+
+    private static final String PENDING = "pending";
+    private static final String DONE = "done";
+    private static final String DATABASE = "database";
+
+    private final Map<String, String> steps = new ConcurrentHashMap<>();
+    private final Duration maxRetryBackoff;
+    private final long start = System.nanoTime();
+    private volatile boolean ready;
+
+    /**
+     * Starts the warm-up steps, or reports ready immediately when warm-up is disabled.
+     *
+     * @param database the default database whose pool is filled
+     * @param jpaApi the JPA API bootstrapped by the first query
+     * @param executor the executor for blocking database work
+     * @param upstreamRouter the router whose endpoints are warmed
+     * @param chatSearchService the search service required by ChatGPTController
+     * @param formFactory the form factory used by ChatGPTController
+     * @param admissionControl the rate limits required by ChatGPTController
+     * @param config the configuration object containing the warm-up settings
+     */
+    @Inject
+    public WarmupService(Database database, JPAApi jpaApi, DatabaseExecutionContext executor, UpstreamRouter upstreamRouter,
+                         ChatSearchService chatSearchService, FormFactory formFactory, AdmissionControl admissionControl,
+                         Config config) {
+        Config warmupConfig = config.getConfig("chat.warmup");
+        this.maxRetryBackoff = warmupConfig.getDuration("databaseMaxRetryBackoff");
+        if (!warmupConfig.getBoolean("enabled")) {
+            log.info("Startup warm-up is disabled; the node is ready immediately.");
+            ready = true;
+            return;
+        }
+
+        Duration timeout = warmupConfig.getDuration("timeout");
+        int connections = Math.min(warmupConfig.getInt("databaseConnections"), config.getInt("fixedConnectionPool") - 1);
+
+        steps.put(DATABASE, PENDING);
+        steps.put("upstream", PENDING);
+        steps.put("jit", PENDING);
+        warmDatabaseUntilDone(() -> warmDatabase(database, jpaApi, connections), executor, 1,
+                warmupConfig.getDuration("databaseRetryBackoff"));
+        step("upstream", timeout, upstreamRouter.warmUp(warmupConfig.getInt("upstreamConnections")));
+        ChatGPTController controller = new ChatGPTController(new StubChatGPTService(), chatSearchService,
+                formFactory, admissionControl, new HistoryStreamLimiter(config), new MetricsRegistry(), config);
+        step("jit", timeout, runAsync(() -> warmControllers(controller, warmupConfig.getInt("jitIterations"))));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the readiness flag and the state of each warm-up step.
+     *
+     * @return the status as JSON
+     */
+    public ObjectNode getStatus() {
+        ObjectNode status = Json.newObject().put("ready", ready);
+        ObjectNode stepStatus = status.putObject("steps");
+        steps.forEach(stepStatus::put);
+        return status;
+    }
+
+    /**
+     * Tracks the outcome of one warm-up step.
+     *
+     * @param name the step name reported by the readiness route
+     * @param timeout the longest the step may take
+     * @param work the running step
+     */
+    private void step(String name, Duration timeout, CompletionStage<Void> work) {
+        long stepStart = System.nanoTime();
+        work.toCompletableFuture()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        log.warn("Warm-up step {} failed: {}", name, error.getMessage());
+                        steps.put(name, "failed: " + error.getMessage());
+                    } else {
+                        log.info("Warm-up step {} finished in {} ms.", name, (System.nanoTime() - stepStart) / 1_000_000);
+                        steps.put(name, DONE);
+                    }
+                    updateReadiness();
+                });
+    }
+
+    /**
+     * Runs the database step, retrying it with exponential backoff until it succeeds.
+     * Each attempt is bounded by the pool's connection timeout, so it needs no timeout of
+     * its own.
+     *
+     * @param warm the database step
+     * @param executor the executor for blocking database work
+     * @param attempt the number of this attempt, starting at 1
+     * @param backoff the delay before the next attempt if this one fails
+     */
+    private void warmDatabaseUntilDone(Runnable warm, DatabaseExecutionContext executor, int attempt, Duration backoff) {
+        executor.runAsync(warm).whenComplete((ignored, error) -> {
+            if (error == null) {
+                log.info("Warm-up step {} finished in {} ms after {} attempts.", DATABASE,
+                        (System.nanoTime() - start) / 1_000_000, attempt);
+                steps.put(DATABASE, DONE);
+                updateReadiness();
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            log.warn("Warm-up step {} failed on attempt {}, retrying in {}: {}", DATABASE, attempt, backoff,
+                    cause.getMessage());
+            steps.put(DATABASE, "retrying after attempt " + attempt + ": " + cause.getMessage());
+            Duration doubled = backoff.multipliedBy(2);
+            Duration nextBackoff = doubled.compareTo(maxRetryBackoff) < 0 ? doubled : maxRetryBackoff;
+            CompletableFuture.delayedExecutor(backoff.toMillis(), TimeUnit.MILLISECONDS)
+                    .execute(() -> warmDatabaseUntilDone(warm, executor, attempt + 1, nextBackoff));
+        });
+    }
+
+    /**
+     * Marks the node ready once the database step is done and the other steps have
+     * finished or failed.
+     */
+    private synchronized void updateReadiness() {
+        if (ready || !DONE.equals(steps.get(DATABASE)) || steps.containsValue(PENDING)) {
+            return;
+        }
+        ready = true;
+        log.info("Startup warm-up finished in {} ms, node is ready: {}", (System.nanoTime() - start) / 1_000_000, steps);
+    }
+
+    /**
+     * Holds the given number of pooled connections at once, so the pool opens them now
+     * instead of on the first requests, then runs a first JPA query.
+     *
+     * @param database the default database
+     * @param jpaApi the JPA API
+     * @param connections the number of connections to open
+     */
+    private static void warmDatabase(Database database, JPAApi jpaApi, int connections) {
+        List<Connection> held = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                Connection connection = database.getConnection();
+                held.add(connection);
+                if (!connection.isValid(5)) {
+                    throw new IllegalStateException("Database connection is not valid");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to open database connections: " + e.getMessage(), e);
+        } finally {
+            for (Connection connection : held) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("Failed to return warm-up connection to the pool: {}", e.getMessage());
+                }
+            }
+        }
+
+        jpaApi.withTransaction("default", true, em -> em
+                .createQuery("SELECT c.id FROM ChatInteraction c ORDER BY c.id", Long.class)
+                .setMaxResults(1)
+                .getResultList());
+    }
+
+    /**
+     * Runs synthetic chat and history requests through a controller backed by the stub
+     * service.
+     *
+     * @param controller the controller to exercise
+     * @param iterations the number of rounds of requests
+     */
+    private static void warmControllers(ChatGPTController controller, int iterations) {
+        ObjectNode chat = Json.newObject().put("chatRole", "user").put("message", "Warm-up message");
+        String cursor = new ChatHistoryCursor(new Timestamp(System.currentTimeMillis()), Long.MAX_VALUE).encode();
+        for (int i = 0; i < iterations; i++) {
+            controller.addChat(new Http.RequestBuilder()
+                            .method("POST")
+                            .uri("/chat/add?username=warmup")
+                            .bodyJson(chat)
+                            .build())
+                    .toCompletableFuture().join();
+            controller.getChatsByUser(new Http.RequestBuilder()
+                            .uri("/chats/user?username=warmup&limit=20")
+                            .build())
+                    .toCompletableFuture().join();
+            controller.getChatsByUser(new Http.RequestBuilder()
+                            .uri("/chats/user?username=warmup&limit=20&cursor=" + cursor)
+                            .build())
+                    .toCompletableFuture().join();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dtos.ChatInteractionDTO;
+import dtos.ChatRequestDTO;
+import models.ChatInteraction;
+import org.openjdk.jmh.annotations.*;
+import play.libs.Json;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the mapping and serialization work done for every chat submission and
+ * history read: ChatRequestDTO.toEntity, ChatInteractionDTO.toDTO over whole
+ * histories, and the Json.toJson call made by ChatGPTController.getChatsByUser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatHistoryBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int historySize;
+
+    private ChatRequestDTO request;
+    private List<ChatInteraction> history;
+    private List<ChatInteractionDTO> historyDTOs;
+
+    @Setup
+    public void setUp() {
+        request = new ChatRequestDTO("user", "What is photosynthesis?", false);
+
+        history = new ArrayList<>(historySize);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < historySize; i++) {
+            history.add(new ChatInteraction((long) i, "user", "Question number " + i + " about biology?",
+                    "Photosynthesis is the process by which green plants use sunlight to synthesize food. " + i,
+                    new Timestamp(now - i * 60_000L), "student"));
+        }
+        historyDTOs = history.stream().map(ChatInteractionDTO::toDTO).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public ChatInteraction requestToEntity() {
+        return ChatRequestDTO.toEntity(request, "student");
+    }
+
+    @Benchmark
+    public List<ChatInteractionDTO> historyToDTOs() {
+        return history.stream().map(ChatInteractionDTO::toDTO).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public JsonNode historyToJson() {
+        return Json.toJson(historyDTOs.stream().toList());
+    }
+
+    @Benchmark
+    public String historyToJsonString() {
+        return Json.stringify(Json.toJson(historyDTOs.stream().toList()));
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import conversation.ConversationTurn;
+import conversation.TokenEstimator;
+import org.openjdk.jmh.annotations.*;
+import play.libs.Json;
+import upstream.CompletionPayloads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building upstream completion requests, with and without conversation
+ * context, and parsing complete and streamed upstream responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionPayloadBenchmark {
+
+    private static final String RESPONSE_BODY = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\","
+            + "\"created\":1700000000,\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,"
+            + "\"message\":{\"role\":\"assistant\",\"content\":\"Photosynthesis is the process by which "
+            + "green plants and some other organisms use sunlight to synthesize foods from carbon dioxide "
+            + "and water.\"},\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":12,"
+            + "\"completion_tokens\":30,\"total_tokens\":42}}";
+
+    private static final String STREAM_CHUNK = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1700000000,\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,"
+            + "\"delta\":{\"content\":\" photosynthesis\"},\"finish_reason\":null}]}";
+
+    @Param({"0", "10"})
+    private int contextTurns;
+
+    private List<ConversationTurn> context;
+
+    @Setup
+    public void setUp() {
+        context = new ArrayList<>(contextTurns);
+        for (int i = 0; i < contextTurns; i++) {
+            String message = "Earlier question " + i + " about the water cycle?";
+            String response = "The water cycle describes how water evaporates, condenses and precipitates. " + i;
+            context.add(new ConversationTurn("user", message, response,
+                    TokenEstimator.estimateMessage(message) + TokenEstimator.estimateMessage(response)));
+        }
+    }
+
+    @Benchmark
+    public String buildRequest() {
+        return Json.stringify(CompletionPayloads.buildRequest("gpt-3.5-turbo", context,
+                "What is photosynthesis?", "user", false));
+    }
+
+    @Benchmark
+    public String parseResponse() {
+        JsonNode response = Json.parse(RESPONSE_BODY);
+        return CompletionPayloads.parseContent(response);
+    }
+
+    @Benchmark
+    public String parseStreamDelta() {
+        return CompletionPayloads.parseStreamDelta(STREAM_CHUNK);
+    }
+}
@@ -0,0 +1,23 @@
+-- Initial chat schema (MySQL).
+-- Creates the tables of the first release for a database that was never started with
+-- hibernate.hbm2ddl.auto = update. Production runs with validate (conf/production.conf),
+-- so apply this and every later script in conf/sql, in order, before its first start.
+-- A database created by update already has these tables; start with the first script
+-- of a release it has not seen yet.
+
+CREATE TABLE chat_interaction (
+    id BIGINT NOT NULL,
+    chat_role TEXT NOT NULL,
+    message TEXT NOT NULL,
+    response TEXT,
+    submitted_at DATETIME(6) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- Ids are handed out in blocks by Hibernate's table-backed sequence generator.
+CREATE TABLE hibernate_sequence (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO hibernate_sequence VALUES (1);
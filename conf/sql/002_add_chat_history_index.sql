@@ -0,0 +1,6 @@
+-- Keyset-paginated chat history (MySQL).
+-- Apply before starting the release that pages the history by (submitted_at, id). The
+-- index serves each page, newest first, without sorting the user's whole history.
+
+CREATE INDEX idx_chat_interaction_username_submitted_at
+    ON chat_interaction (username, submitted_at, id);
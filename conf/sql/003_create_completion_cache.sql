@@ -0,0 +1,11 @@
+-- Persistent completion cache (MySQL).
+-- Apply before starting the release that caches upstream completions, whether or not
+-- chat.cache.persistent is enabled, as the schema is validated either way.
+
+CREATE TABLE completion_cache (
+    prompt_hash VARCHAR(64) NOT NULL,
+    model VARCHAR(64) NOT NULL,
+    response TEXT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (prompt_hash)
+) ENGINE = InnoDB;
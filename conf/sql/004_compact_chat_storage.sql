@@ -0,0 +1,31 @@
+-- Compact chat storage (MySQL).
+-- Apply before starting the release that introduces role codes and compressed
+-- responses. It replaces the chat_role text column with a one-byte role code and
+-- creates the side table for compressed response bodies. Long responses already in
+-- chat_interaction are then moved into the side table in the background by starting
+-- the application once with chat.storage.migration.enabled = true.
+
+ALTER TABLE chat_interaction
+    ADD COLUMN role_code TINYINT NOT NULL DEFAULT 2 AFTER id,
+    ADD COLUMN response_truncated BIT(1) NOT NULL DEFAULT b'0' AFTER response;
+
+-- 1 system, 2 user, 3 assistant, 4 developer (models.ChatRole). Roles the API never
+-- accepted are recorded as user.
+UPDATE chat_interaction
+SET role_code = CASE LOWER(TRIM(chat_role))
+                    WHEN 'system' THEN 1
+                    WHEN 'assistant' THEN 3
+                    WHEN 'developer' THEN 4
+                    ELSE 2
+                END;
+
+ALTER TABLE chat_interaction
+    DROP COLUMN chat_role,
+    ALTER COLUMN role_code DROP DEFAULT;
+
+CREATE TABLE chat_response_body (
+    interaction_id BIGINT NOT NULL,
+    body MEDIUMBLOB,
+    PRIMARY KEY (interaction_id),
+    CONSTRAINT fk_chat_response_body_interaction FOREIGN KEY (interaction_id) REFERENCES chat_interaction (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,19 @@
+-- Chat status (MySQL).
+-- Apply before starting the release that records whether an asynchronous chat message
+-- is pending, complete or failed. Rows still holding the "Pending" placeholder are
+-- marked pending; the application marks them failed at startup once they are older
+-- than chat.async.pendingTimeout.
+
+ALTER TABLE chat_interaction
+    ADD COLUMN status_code TINYINT NOT NULL DEFAULT 0 AFTER response_truncated;
+
+-- 0 complete, 1 pending, 2 failed (models.ChatStatus).
+UPDATE chat_interaction
+SET status_code = 1
+WHERE response = 'Pending' AND response_truncated = b'0';
+
+ALTER TABLE chat_interaction
+    ALTER COLUMN status_code DROP DEFAULT;
+
+CREATE INDEX idx_chat_interaction_status_submitted_at
+    ON chat_interaction (status_code, submitted_at);
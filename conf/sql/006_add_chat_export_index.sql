@@ -0,0 +1,7 @@
+-- Per-user bulk export (MySQL).
+-- Apply before starting the release that exports one user's chat interactions. The
+-- export pages by id within a user; this index serves each page without reading the
+-- user's rows in submission order and sorting them.
+
+CREATE INDEX idx_chat_interaction_username_id
+    ON chat_interaction (username, id);
@@ -0,0 +1,12 @@
+-- Cross-node job locks (MySQL).
+-- Apply before starting the release that runs chat retention on more than one node.
+-- The retention job locks its row for update around each batch, so two nodes never
+-- archive the same rows. The job inserts a missing row itself, but the first two nodes
+-- to do so race on the insert; seeding it here avoids that.
+
+CREATE TABLE job_lock (
+    name VARCHAR(64) NOT NULL,
+    PRIMARY KEY (name)
+);
+
+INSERT INTO job_lock (name) VALUES ('chat-retention');
@@ -0,0 +1,7 @@
+-- Expiry of the persistent completion cache (MySQL).
+-- Apply before starting the release that purges expired cached completions. The purge
+-- job selects entries older than chat.cache.ttl in batches; this index serves that range
+-- instead of a scan of the whole table.
+
+CREATE INDEX idx_completion_cache_created_at
+    ON completion_cache (created_at);
@@ -0,0 +1,59 @@
+package loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples of one operation, recorded by a single worker and merged for the
+ * report. Samples are kept exactly, so percentiles are not approximated.
+ */
+final class LatencyStats {
+
+    private long[] samplesMicros = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long micros) {
+        if (count == samplesMicros.length) {
+            samplesMicros = Arrays.copyOf(samplesMicros, count * 2);
+        }
+        samplesMicros[count++] = micros;
+    }
+
+    void recordError() {
+        errors++;
+    }
+
+    void merge(LatencyStats other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samplesMicros[i]);
+        }
+        errors += other.errors;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Sorts the samples; call once after merging, before reading percentiles.
+     */
+    void seal() {
+        Arrays.sort(samplesMicros, 0, count);
+    }
+
+    long percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return samplesMicros[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    long maxMicros() {
+        return count == 0 ? 0 : samplesMicros[count - 1];
+    }
+}
@@ -0,0 +1,235 @@
+package loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load driver for POST /chat/add and GET /chats/user. Each worker
+ * sends its next request as soon as the previous one completes; results recorded
+ * during the warm-up period are discarded. A JSON report is written for comparison
+ * between releases. A chat answered with HTTP 200 but carrying one of the application's
+ * fallback responses counts as an error, since the upstream call behind it failed.
+ *
+ * Options:
+ *   --baseUrl=http://localhost:9000   application under test
+ *   --concurrency=32                  number of concurrent workers
+ *   --warmup=10s                      warm-up period, not measured
+ *   --duration=60s                    measured period
+ *   --users=100                       distinct usernames to spread requests over
+ *   --addWeight=1                     relative share of POST /chat/add
+ *   --historyWeight=4                 relative share of GET /chats/user
+ *   --historyLimit=20                 page size requested from /chats/user
+ *   --uniquePrompts=true              number every question so none repeats; false
+ *                                     reuses five questions to measure a cache
+ *   --label=dev                       release label written into the report
+ *   --reportDir=target/loadtest       directory for the JSON report
+ */
+public final class LoadDriver {
+
+    private static final Pattern CSRF_TOKEN = Pattern.compile("\"csrfToken\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern FALLBACK_RESPONSE = Pattern.compile("\"response\"\\s*:\\s*\""
+            + "(Please try again later to interact with the ChatBot\\.|Sorry, I couldn't generate a response\\.)");
+    private static final String[] QUESTIONS = {
+            "What is photosynthesis?",
+            "Explain the water cycle.",
+            "How do vaccines work?",
+            "What causes the seasons on Earth?",
+            "Summarize the French Revolution."
+    };
+
+    private final String baseUrl;
+    private final int users;
+    private final int addWeight;
+    private final int historyWeight;
+    private final int historyLimit;
+    private final boolean uniquePrompts;
+    private final AtomicLong promptSequence = new AtomicLong();
+
+    private LoadDriver(Options options) {
+        this.baseUrl = options.getString("baseUrl", "http://localhost:9000");
+        this.users = options.getInt("users", 100);
+        this.addWeight = options.getInt("addWeight", 1);
+        this.historyWeight = options.getInt("historyWeight", 4);
+        this.historyLimit = options.getInt("historyLimit", 20);
+        this.uniquePrompts = Boolean.parseBoolean(options.getString("uniquePrompts", "true"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int concurrency = options.getInt("concurrency", 32);
+        Duration warmup = options.getDuration("warmup", Duration.ofSeconds(10));
+        Duration duration = options.getDuration("duration", Duration.ofSeconds(60));
+        LoadDriver driver = new LoadDriver(options);
+
+        System.out.printf("Driving %s with %d workers: %s warm-up, %s measured%n",
+                driver.baseUrl, concurrency, warmup, duration);
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = driver.new Worker(i, measureFrom, measureUntil);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+
+        Map<String, LatencyStats> merged = new LinkedHashMap<>();
+        merged.put("chat_add", new LatencyStats());
+        merged.put("chats_user", new LatencyStats());
+        for (Worker worker : workers) {
+            merged.get("chat_add").merge(worker.addStats);
+            merged.get("chats_user").merge(worker.historyStats);
+        }
+        merged.values().forEach(LatencyStats::seal);
+
+        String report = report(options.getString("label", "dev"), concurrency, duration, merged);
+        Path reportDir = Paths.get(options.getString("reportDir", "target/loadtest"));
+        Files.createDirectories(reportDir);
+        Path reportFile = reportDir.resolve("report-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+                .withZone(java.time.ZoneOffset.UTC).format(Instant.now()) + ".json");
+        Files.writeString(reportFile, report);
+
+        System.out.println(report);
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+    }
+
+    private static String report(String label, int concurrency, Duration duration, Map<String, LatencyStats> stats) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"label\": \"").append(label).append("\",\n")
+                .append("  \"timestamp\": \"").append(Instant.now()).append("\",\n")
+                .append("  \"concurrency\": ").append(concurrency).append(",\n")
+                .append("  \"durationSeconds\": ").append(duration.getSeconds()).append(",\n")
+                .append("  \"operations\": {");
+        String separator = "\n";
+        for (Map.Entry<String, LatencyStats> entry : stats.entrySet()) {
+            LatencyStats s = entry.getValue();
+            json.append(separator).append("    \"").append(entry.getKey()).append("\": {")
+                    .append("\"requests\": ").append(s.getCount())
+                    .append(", \"errors\": ").append(s.getErrors())
+                    .append(String.format(", \"throughputPerSecond\": %.1f", s.getCount() / (double) duration.getSeconds()))
+                    .append(String.format(", \"p50Ms\": %.2f", s.percentileMicros(50) / 1000.0))
+                    .append(String.format(", \"p99Ms\": %.2f", s.percentileMicros(99) / 1000.0))
+                    .append(String.format(", \"p999Ms\": %.2f", s.percentileMicros(99.9) / 1000.0))
+                    .append(String.format(", \"maxMs\": %.2f", s.maxMicros() / 1000.0))
+                    .append("}");
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    /**
+     * One closed-loop client with its own cookie jar and CSRF token.
+     */
+    private final class Worker extends Thread {
+
+        private final HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LatencyStats addStats = new LatencyStats();
+        private final LatencyStats historyStats = new LatencyStats();
+        private String csrfToken;
+
+        private Worker(int index, long measureFrom, long measureUntil) {
+            super("load-worker-" + index);
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < measureUntil) {
+                String username = "loadtest-user-" + random.nextInt(users);
+                boolean add = random.nextInt(addWeight + historyWeight) < addWeight;
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = add ? addChat(username, question(random)) : getHistory(username);
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long end = System.nanoTime();
+                if (start < measureFrom || end > measureUntil) {
+                    continue;
+                }
+                LatencyStats stats = add ? addStats : historyStats;
+                if (ok) {
+                    stats.record((end - start) / 1000);
+                } else {
+                    stats.recordError();
+                }
+            }
+        }
+
+        private String question(ThreadLocalRandom random) {
+            String question = QUESTIONS[random.nextInt(QUESTIONS.length)];
+            return uniquePrompts ? question + " (#" + promptSequence.incrementAndGet() + ")" : question;
+        }
+
+        private boolean addChat(String username, String question) throws IOException, InterruptedException {
+            if (csrfToken == null) {
+                csrfToken = fetchCsrfToken();
+            }
+            String body = "{\"chatRole\":\"user\",\"message\":\"" + question + "\"}";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/chat/add?username=" + encode(username)))
+                    .header("Content-Type", "application/json")
+                    .header("X-CSRF-Token", csrfToken)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 403) {
+                csrfToken = null;
+            }
+            return response.statusCode() == 200 && !FALLBACK_RESPONSE.matcher(response.body()).find();
+        }
+
+        private boolean getHistory(String username) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/chats/user?username="
+                    + encode(username) + "&limit=" + historyLimit)).GET().build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        }
+
+        private String fetchCsrfToken() throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/csrf-token")).GET().build();
+            String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = CSRF_TOKEN.matcher(body);
+            if (!matcher.find()) {
+                throw new IOException("No CSRF token in response: " + body);
+            }
+            return matcher.group(1);
+        }
+
+        private String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the OpenAI chat completions API, so the application can be load-tested
+ * without calling the real service. Point openai.apiUrl at it (conf/loadtest.conf does).
+ *
+ * Options:
+ *   --port=9999              port to listen on
+ *   --latencyMedianMs=800    median of the log-normal response latency (time to first token when streaming)
+ *   --latencySigma=0.5       spread of the log-normal latency; 0 makes it constant
+ *   --errorRate=0.0          fraction of requests answered with 500
+ *   --streamChunks=20        number of deltas sent for "stream": true requests
+ *   --chunkDelayMs=25        delay between streamed deltas
+ */
+public final class StubCompletionServer {
+
+    private static final String CONTENT = "This is a stub completion used for load testing. ";
+
+    private final double latencyMedianMs;
+    private final double latencySigma;
+    private final double errorRate;
+    private final int streamChunks;
+    private final long chunkDelayMs;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private StubCompletionServer(Options options) {
+        this.latencyMedianMs = options.getDouble("latencyMedianMs", 800);
+        this.latencySigma = options.getDouble("latencySigma", 0.5);
+        this.errorRate = options.getDouble("errorRate", 0.0);
+        this.streamChunks = options.getInt("streamChunks", 20);
+        this.chunkDelayMs = options.getInt("chunkDelayMs", 25);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        int port = options.getInt("port", 9999);
+        StubCompletionServer stub = new StubCompletionServer(options);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", stub::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        System.out.printf("Stub completion server listening on http://localhost:%d/v1/chat/completions "
+                        + "(median latency %.0f ms, sigma %.2f, error rate %.3f)%n",
+                port, stub.latencyMedianMs, stub.latencySigma, stub.errorRate);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.printf(
+                "Stub served %d requests, %d errors%n", stub.requests.get(), stub.errors.get())));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        sleep(sampleLatencyMs());
+
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            respond(exchange, 500, "application/json",
+                    "{\"error\":{\"message\":\"stub failure\",\"type\":\"server_error\"}}");
+            return;
+        }
+
+        if (body.replace(" ", "").contains("\"stream\":true")) {
+            stream(exchange);
+        } else {
+            respond(exchange, 200, "application/json", "{\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion\","
+                    + "\"model\":\"stub\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                    + "\"content\":\"" + CONTENT.repeat(4).trim() + "\"},\"finish_reason\":\"stop\"}]}");
+        }
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < streamChunks; i++) {
+                String chunk = "data: {\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion.chunk\","
+                        + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"token" + i + " \"}}]}\n\n";
+                out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sleep(chunkDelayMs);
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private long sampleLatencyMs() {
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Math.round(latencyMedianMs * Math.exp(latencySigma * gaussian));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,6 +4,9 @@
     const sendButton = document.querySelector(".send-btn");
     const roleInput = document.getElementById("role");
     const messageInput = document.getElementById("message");
+    const historyPageSize = 20;
+    let olderChatsCursor = null;
+    let loadOlderButton = null;
 
     function createMessageContent(role, message, isResponse) {
         const content = document.createElement("p");
@@ -29,7 +32,7 @@
         return botAvatar;
     }
 
-    function appendChat(role, message, isResponse = false) {
+    function createChat(role, message, isResponse = false) {
         const messageDiv = document.createElement("div");
         messageDiv.classList.add("chat-message");
 
@@ -42,28 +45,101 @@
 
         const content = createMessageContent(role, message, isResponse);
         messageDiv.appendChild(content);
-        chatHistory.appendChild(messageDiv);
+        return messageDiv;
+    }
+
+    function appendChat(role, message, isResponse = false) {
+        chatHistory.appendChild(createChat(role, message, isResponse));
 
         chatHistory.scrollTop = chatHistory.scrollHeight;
     }
 
-    function loadPreviousChats() {
+    function fetchChatPage(cursor) {
         const username = sessionStorage.getItem("chatBotUsername");
-        axios.get(`/chats/user?username=${encodeURIComponent(username)}`)
-            .then(response => {
-                const chats = response.data;
-                chats.forEach(chat => {
-                    appendPreviousQuestions(chat.message, chat.submittedAt);
-                    appendChat(chat.chatRole, chat.message);
-                    appendChat("Bot", chat.response, true);
+        let url = `/chats/user?username=${encodeURIComponent(username)}&limit=${historyPageSize}`;
+        if (cursor) {
+            url += `&cursor=${encodeURIComponent(cursor)}`;
+        }
+        return axios.get(url).then(response => response.data);
+    }
+
+    function renderChatPage(page) {
+        const fragment = document.createDocumentFragment();
+        page.items.slice().reverse().forEach(chat => {
+            appendPreviousQuestions(chat.message, chat.submittedAt);
+            fragment.appendChild(createChat(chat.chatRole, chat.message));
+            const responseChat = createChat("Bot", chat.response, true);
+            if (chat.responseTruncated) {
+                addShowFullAnswerButton(responseChat, chat.id);
+            }
+            fragment.appendChild(responseChat);
+        });
+        chatHistory.insertBefore(fragment, chatHistory.firstChild);
+
+        olderChatsCursor = page.nextCursor;
+        updateLoadOlderButton();
+        checkChatHistoryVisibility();
+    }
+
+    function addShowFullAnswerButton(responseChat, chatId) {
+        const content = responseChat.querySelector(".bot-response-value");
+        content.textContent += "\u2026";
+
+        const button = document.createElement("button");
+        button.classList.add("show-full-btn");
+        button.textContent = "Show full answer";
+        button.addEventListener("click", function () {
+            const username = sessionStorage.getItem("chatBotUsername");
+            button.disabled = true;
+            axios.get(`/chats/response?username=${encodeURIComponent(username)}&id=${encodeURIComponent(chatId)}`)
+                .then(response => {
+                    content.textContent = response.data.response;
+                    button.remove();
+                })
+                .catch(error => {
+                    console.log("Error fetching full answer:", error);
+                    button.disabled = false;
                 });
-                checkChatHistoryVisibility();
+        });
+        responseChat.appendChild(button);
+    }
+
+    function updateLoadOlderButton() {
+        if (!loadOlderButton) {
+            loadOlderButton = document.createElement("button");
+            loadOlderButton.classList.add("load-older-btn");
+            loadOlderButton.textContent = "Load older messages";
+            loadOlderButton.addEventListener("click", loadOlderChats);
+            chatHistory.parentNode.insertBefore(loadOlderButton, chatHistory);
+        }
+        loadOlderButton.style.display = olderChatsCursor ? "block" : "none";
+    }
+
+    function loadPreviousChats() {
+        fetchChatPage(null)
+            .then(page => {
+                renderChatPage(page);
+                chatHistory.scrollTop = chatHistory.scrollHeight;
             })
             .catch(error => {
                 console.log("Error fetching chats:", error);
             });
     }
 
+    function loadOlderChats() {
+        if (!olderChatsCursor) return;
+
+        const previousHeight = chatHistory.scrollHeight;
+        fetchChatPage(olderChatsCursor)
+            .then(page => {
+                renderChatPage(page);
+                chatHistory.scrollTop = chatHistory.scrollHeight - previousHeight;
+            })
+            .catch(error => {
+                console.log("Error fetching older chats:", error);
+            });
+    }
+
     function appendPreviousQuestions(question, date) {
         const questionDate = new Date(date);
         const today = new Date();
@@ -106,16 +182,6 @@
         return categoryElement;
     }
 
-    function typeOutMessage(element, message, index = 0, delay = 10) {
-        if (index < message.length) {
-            element.textContent += message.charAt(index);
-            index++;
-            setTimeout(() => typeOutMessage(element, message, index, delay), delay);
-        } else {
-            chatHistory.scrollTop = chatHistory.scrollHeight;
-        }
-    }
-
     function checkChatHistoryVisibility() {
         if (chatHistory.children.length === 0) {
             chatHistory.style.display = "none";
@@ -124,30 +190,75 @@
         }
     }
 
-     function sendMessageToChatBot(role, message) {
-         const username = sessionStorage.getItem("chatBotUsername");
-         const data = { chatRole: role, message: message };
-
+     function fetchCsrfHeaders() {
          return axios.get('/csrf-token')
                      .then(function (response) {
                          const csrfToken = response.data.csrfToken;
 
-                         console.log("---- CSRF-Token: ", csrfToken)
-
-                         const headers = {
+                         return {
                              'X-CSRF-Token': csrfToken,
                              'Content-Type': 'application/json'
                          };
+                     });
+     }
+
+     function streamMessageToChatBot(role, message, onDelta) {
+         const username = sessionStorage.getItem("chatBotUsername");
+         const data = { chatRole: role, message: message };
 
-                         return axios.post(`/chat/add?username=${encodeURIComponent(username)}`, data, { headers });
+         return fetchCsrfHeaders()
+                     .then(function (headers) {
+                         return fetch(`/chat/stream?username=${encodeURIComponent(username)}`, {
+                             method: 'POST',
+                             headers: headers,
+                             body: JSON.stringify(data)
+                         });
+                     })
+                     .then(function (response) {
+                         if (!response.ok) {
+                             throw new Error(`Streaming request failed with status ${response.status}`);
+                         }
+                         return readEventStream(response.body.getReader(), onDelta);
                      })
                      .catch(function (error) {
-                         console.error('Error retrieving CSRF token or sending message:', error);
+                         console.error('Error retrieving CSRF token or streaming message:', error);
                          throw error;
                      });
      }
 
-     function createBotMessage(botMessage) {
+     function readEventStream(reader, onDelta) {
+         const decoder = new TextDecoder();
+         let buffer = "";
+
+         function dispatch(rawEvent) {
+             let eventName = "message";
+             let data = "";
+             rawEvent.split("\n").forEach(line => {
+                 if (line.startsWith("event:")) eventName = line.slice(6).trim();
+                 if (line.startsWith("data:")) data += line.slice(5).trim();
+             });
+             if (eventName === "message" && data !== "") {
+                 onDelta(JSON.parse(data).delta);
+             }
+         }
+
+         function pump() {
+             return reader.read().then(({ done, value }) => {
+                 if (done) return;
+                 buffer += decoder.decode(value, { stream: true });
+                 let boundary;
+                 while ((boundary = buffer.indexOf("\n\n")) !== -1) {
+                     dispatch(buffer.slice(0, boundary));
+                     buffer = buffer.slice(boundary + 2);
+                 }
+                 return pump();
+             });
+         }
+
+         return pump();
+     }
+
+     function createBotMessage() {
         const messageDiv = document.createElement("div");
         messageDiv.classList.add("chat-message", "bot-response");
 
@@ -163,11 +274,11 @@
         messageDiv.appendChild(content);
         chatHistory.appendChild(messageDiv);
 
-        typeOutMessage(content, botMessage);
+        return content;
     }
 
     sendButton.addEventListener("click", function () {
-        const role = roleInput.value.trim();
+        const role = roleInput.value;
         const message = messageInput.value.trim();
 
         if (message === "") return;
@@ -175,16 +286,19 @@
         appendChat(role, message);
         messageInput.value = "";
 
-        sendMessageToChatBot(role, message)
-            .then(response => {
-                const botMessage = response.data.response;
-                createBotMessage(botMessage);
-                checkChatHistoryVisibility();
+        const content = createBotMessage();
+        checkChatHistoryVisibility();
+
+        streamMessageToChatBot(role, message, delta => {
+            content.textContent += delta;
+            chatHistory.scrollTop = chatHistory.scrollHeight;
+        })
+            .then(() => {
                 appendPreviousQuestions(message, new Date().toLocaleDateString());
             })
             .catch(error => {
                 console.error(error);
-                appendChat("Bot", 'Error: Could not fetch response', true);
+                content.textContent = 'Error: Could not fetch response';
             });
     });
 
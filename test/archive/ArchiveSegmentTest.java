@@ -0,0 +1,127 @@
+package archive;
+
+import dtos.ChatInteractionDTO;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import play.libs.Json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveSegmentTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2024, 3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path userDirectory;
+    private ArchiveSegment segment;
+
+    @Before
+    public void setUp() throws IOException {
+        userDirectory = folder.newFolder("user").toPath();
+        segment = new ArchiveSegment(userDirectory, MONTH);
+    }
+
+    @Test
+    public void testAppendsOneGzipMemberPerBatch() throws IOException {
+        segment.append(Arrays.asList(chat(1, 1000), chat(2, 2000)));
+        segment.append(Arrays.asList(chat(3, 3000)));
+
+        List<SegmentIndexEntry> entries = segment.readIndex();
+        assertEquals(2, entries.size());
+        assertEquals(new SegmentIndexEntry(0, entries.get(0).getLength(), 2, 1, 2, 1000, 2000), entries.get(0));
+        assertEquals(entries.get(0).getLength(), entries.get(1).getOffset());
+        assertEquals(1, entries.get(1).getCount());
+
+        byte[] data = Files.readAllBytes(dataFile());
+        assertEquals(entries.get(1).getOffset() + entries.get(1).getLength(), data.length);
+        for (SegmentIndexEntry entry : entries) {
+            assertEquals((byte) 0x1f, data[(int) entry.getOffset()]);
+            assertEquals((byte) 0x8b, data[(int) entry.getOffset() + 1]);
+        }
+        assertEquals(Arrays.asList(3L), ids(segment.read(entries.get(1))));
+    }
+
+    @Test
+    public void testWritesOneJsonIndexLinePerBatch() throws IOException {
+        segment.append(Arrays.asList(chat(1, 1000)));
+        segment.append(Arrays.asList(chat(2, 2000)));
+
+        List<String> lines = Files.readAllLines(userDirectory.resolve("2024-03.idx"), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals(2000, Json.parse(lines.get(1)).path("lastSubmittedAt").asLong());
+        assertEquals(2, Json.parse(lines.get(1)).path("minId").asLong());
+        assertEquals(Arrays.asList(MONTH), ArchiveSegment.list(userDirectory).stream()
+                .map(ArchiveSegment::getMonth)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSkipsTruncatedLastMember() throws IOException {
+        segment.append(Arrays.asList(chat(1, 1000), chat(2, 2000)));
+        segment.append(Arrays.asList(chat(3, 3000), chat(4, 4000)));
+        long size = Files.size(dataFile());
+        try (FileChannel channel = FileChannel.open(dataFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 10);
+        }
+
+        assertEquals(Arrays.asList(1L, 2L), ids(segment.read(entry -> true)));
+    }
+
+    @Test
+    public void testIgnoresTornTailAndKeepsAppending() throws IOException {
+        segment.append(Arrays.asList(chat(1, 1000)));
+        try (FileChannel channel = FileChannel.open(dataFile(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0}));
+        }
+        Files.write(userDirectory.resolve("2024-03.idx"), "{\"offset\":".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        segment.append(Arrays.asList(chat(2, 2000)));
+
+        assertEquals(2, segment.readIndex().size());
+        assertEquals(Arrays.asList(1L, 2L), ids(segment.read(entry -> true)));
+    }
+
+    @Test
+    public void testSkipsDamagedMember() throws IOException {
+        segment.append(Arrays.asList(chat(1, 1000)));
+        segment.append(Arrays.asList(chat(2, 2000)));
+        SegmentIndexEntry first = segment.readIndex().get(0);
+        try (FileChannel channel = FileChannel.open(dataFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0}), first.getOffset());
+        }
+
+        assertTrue(segment.read(first).isEmpty());
+        assertEquals(Arrays.asList(2L), ids(segment.read(entry -> true)));
+    }
+
+    private Path dataFile() {
+        return userDirectory.resolve("2024-03.ndjson.gz");
+    }
+
+    private static ChatInteractionDTO chat(long id, long submittedAt) {
+        return new ChatInteractionDTO(id, "user", "question " + id, "answer " + id, new Timestamp(submittedAt),
+                "alice", false);
+    }
+
+    private static List<Long> ids(List<ChatInteractionDTO> chats) {
+        return chats.stream().map(ChatInteractionDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,56 @@
+package cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LruTtlCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(2, TimeUnit.HOURS.toNanos(1));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    public void testExpiresEntriesAfterTtl() throws InterruptedException {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, TimeUnit.MILLISECONDS.toNanos(1));
+        cache.put("a", "1");
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiresOnlyIdleEntriesAfterAccess() throws InterruptedException {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, TimeUnit.MILLISECONDS.toNanos(100), true);
+        cache.put("a", "1");
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            assertEquals("1", cache.get("a"));
+        }
+
+        Thread.sleep(150);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testPromptKeyNormalizesCaseAndWhitespace() {
+        PromptKey first = PromptKey.of("User", "  What is   photosynthesis ", "gpt-3.5-turbo");
+        PromptKey second = PromptKey.of("user", "what is photosynthesis", "gpt-3.5-turbo");
+
+        assertEquals(first, second);
+        assertEquals(first.digest(), second.digest());
+    }
+}
@@ -0,0 +1,49 @@
+package cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletionStage<String> first = singleFlight.execute("prompt", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletionStage<String> second = singleFlight.execute("prompt", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        upstream.complete("answer");
+
+        assertEquals("answer", first.toCompletableFuture().get());
+        assertEquals("answer", second.toCompletableFuture().get());
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testNewCallStartsAfterPreviousCompleted() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("prompt", () -> CompletableFuture.completedFuture("a" + calls.incrementAndGet()))
+                .toCompletableFuture().get();
+        String second = singleFlight.execute("prompt", () -> CompletableFuture.completedFuture("a" + calls.incrementAndGet()))
+                .toCompletableFuture().get();
+
+        assertEquals("a2", second);
+        assertEquals(2, calls.get());
+    }
+}
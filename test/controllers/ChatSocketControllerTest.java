@@ -0,0 +1,106 @@
+package controllers;
+
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import resilience.AdmissionControl;
+import resilience.ConnectionLimiter;
+import services.ChatGPTService;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ChatSocketControllerTest {
+
+    private static final Config CONFIG = ConfigFactory.parseString(
+            "chat.ws { maxConnections = 10, maxConnectionsPerUser = 1, maxInFlightPerConnection = 2, " +
+                    "heartbeatInterval = 20 seconds, idleTimeout = 1 minute }");
+
+    private ActorSystem system;
+    private Materializer materializer;
+    private ConnectionLimiter connectionLimiter;
+    private ChatSocketController controller;
+
+    @Before
+    public void setUp() {
+        system = ActorSystem.create("ChatSocketControllerTest");
+        materializer = Materializer.matFromSystem(system);
+        connectionLimiter = new ConnectionLimiter(CONFIG);
+        controller = new ChatSocketController(mock(ChatGPTService.class), connectionLimiter,
+                mock(AdmissionControl.class), CONFIG);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testHandshakeWithoutConnectionHoldsNoSlot() {
+        controller.chatFlow("alice", "127.0.0.1");
+
+        assertEquals(0, connectionLimiter.getOpenCount());
+        assertTrue(connectionLimiter.hasCapacity("alice"));
+    }
+
+    @Test
+    public void testReleasesSlotWhenConnectionCloses() throws Exception {
+        Pair<CompletableFuture<Optional<JsonNode>>, CompletionStage<List<JsonNode>>> connection =
+                run(controller.chatFlow("alice", "127.0.0.1"));
+
+        awaitCount(connectionLimiter::getOpenCount, 1);
+        assertFalse(connectionLimiter.hasCapacity("alice"));
+
+        connection.first().complete(Optional.empty());
+        connection.second().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        awaitCount(connectionLimiter::getOpenCount, 0);
+    }
+
+    @Test
+    public void testClosesConnectionOverLimitAfterHandshake() throws Exception {
+        Flow<JsonNode, JsonNode, ?> flow = controller.chatFlow("alice", "127.0.0.1");
+        assertTrue(connectionLimiter.tryAcquire("alice"));
+
+        List<JsonNode> frames = run(flow).second().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, frames.size());
+        assertEquals("error", frames.get(0).path("type").asText());
+        assertEquals(1, connectionLimiter.getOpenCount());
+    }
+
+    private Pair<CompletableFuture<Optional<JsonNode>>, CompletionStage<List<JsonNode>>> run(
+            Flow<JsonNode, JsonNode, ?> flow) {
+        return Source.<JsonNode>maybe()
+                .via(flow)
+                .toMat(Sink.seq(), Keep.both())
+                .run(materializer);
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsInt() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsInt());
+    }
+}
@@ -0,0 +1,112 @@
+package dao.impl;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import dao.ChatHistoryCursor;
+import dtos.ChatInteractionDTO;
+import models.ChatInteraction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChatArchiveImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ChatArchiveImpl archive;
+
+    @Before
+    public void setUp() throws IOException {
+        archive = new ChatArchiveImpl(config(true, folder.newFolder("archive").getAbsolutePath()));
+    }
+
+    @Test
+    public void testDropsBatchAppendedTwice() {
+        List<ChatInteraction> batch = Arrays.asList(chat(1, "2024-01-10"), chat(2, "2024-01-11"));
+        archive.append(batch);
+        archive.append(batch);
+
+        assertEquals(Arrays.asList(2L, 1L), ids(archive.getChatPage("alice", null, 10)));
+        assertEquals(Arrays.asList(2L), ids(archive.getChatsByIds("alice", Arrays.asList(2L, 99L))));
+    }
+
+    @Test
+    public void testPagesAcrossMonths() {
+        archive.append(Arrays.asList(chat(1, "2024-01-10"), chat(2, "2024-01-20")));
+        archive.append(Arrays.asList(chat(3, "2024-02-05"), chat(4, "2024-03-01")));
+        archive.append(Arrays.asList(chat(5, "2024-03-15")));
+
+        List<Long> pages = new ArrayList<>();
+        List<ChatInteractionDTO> page = archive.getChatPage("alice", null, 2);
+        while (!page.isEmpty()) {
+            pages.addAll(ids(page));
+            page = archive.getChatPage("alice", ChatHistoryCursor.of(page.get(page.size() - 1)), 2);
+        }
+
+        assertEquals(Arrays.asList(5L, 4L, 3L, 2L, 1L), pages);
+    }
+
+    @Test
+    public void testKeepsUsersApart() {
+        archive.append(Arrays.asList(chat(1, "2024-01-10"), new ChatInteraction(2L, "user", "question 2",
+                "answer 2", timestamp("2024-01-11"), "bob")));
+
+        assertEquals(Arrays.asList(1L), ids(archive.getChatPage("alice", null, 10)));
+        assertTrue(archive.getChatsByIds("alice", Collections.singleton(2L)).isEmpty());
+        assertFalse(archive.hasArchive("carol"));
+    }
+
+    @Test
+    public void testRejectsRelativeArchiveDir() {
+        try {
+            new ChatArchiveImpl(config(false, "archive"));
+            fail("A relative archive directory should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testRequiresArchiveDirOnlyWithRetention() {
+        assertFalse(new ChatArchiveImpl(config(false, "")).hasArchive("alice"));
+        try {
+            new ChatArchiveImpl(config(true, ""));
+            fail("Retention without an archive directory should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static Config config(boolean enabled, String archiveDir) {
+        return ConfigFactory.empty()
+                .withValue("chat.retention.enabled", ConfigValueFactory.fromAnyRef(enabled))
+                .withValue("chat.retention.archiveDir", ConfigValueFactory.fromAnyRef(archiveDir));
+    }
+
+    private static ChatInteraction chat(long id, String day) {
+        return new ChatInteraction(id, "user", "question " + id, "answer " + id, timestamp(day), "alice");
+    }
+
+    private static Timestamp timestamp(String day) {
+        return Timestamp.from(Instant.parse(day + "T12:00:00Z"));
+    }
+
+    private static List<Long> ids(List<ChatInteractionDTO> chats) {
+        return chats.stream().map(ChatInteractionDTO::getId).collect(Collectors.toList());
+    }
+}
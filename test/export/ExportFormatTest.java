@@ -0,0 +1,48 @@
+package export;
+
+import dtos.ChatInteractionDTO;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExportFormatTest {
+
+    @Test
+    public void testCsvQuotesFieldsWithSeparatorsQuotesAndLineBreaks() {
+        assertEquals("plain", ExportFormat.csvField("plain"));
+        assertEquals("\"a,b\"", ExportFormat.csvField("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", ExportFormat.csvField("say \"hi\""));
+        assertEquals("\"line\nbreak\"", ExportFormat.csvField("line\nbreak"));
+        assertEquals("", ExportFormat.csvField(null));
+    }
+
+    @Test
+    public void testCsvEscapesFormulaCells() {
+        assertEquals("'=SUM(A1:A2)", ExportFormat.csvField("=SUM(A1:A2)"));
+        assertEquals("'+1", ExportFormat.csvField("+1"));
+        assertEquals("'-1", ExportFormat.csvField("-1"));
+        assertEquals("'@cmd", ExportFormat.csvField("@cmd"));
+        assertEquals("\"'=HYPERLINK(\"\"x\"\", \"\"y\"\")\"", ExportFormat.csvField("=HYPERLINK(\"x\", \"y\")"));
+        assertEquals("a=b", ExportFormat.csvField("a=b"));
+    }
+
+    @Test
+    public void testCsvEncodesOneRowPerInteraction() {
+        Timestamp submittedAt = Timestamp.valueOf("2024-03-01 10:00:00");
+        ChatInteractionDTO first = new ChatInteractionDTO(1L, "user", "hi, there", "hello", submittedAt, "alice", false);
+        ChatInteractionDTO second = new ChatInteractionDTO(2L, "user", "bye", "see \"you\"", submittedAt, "alice", false);
+
+        String csv = ExportFormat.CSV.encode(Arrays.asList(first, second)).utf8String();
+
+        assertEquals("1,user,alice," + submittedAt.toInstant() + ",\"hi, there\",hello\r\n" +
+                "2,user,alice," + submittedAt.toInstant() + ",bye,\"see \"\"you\"\"\"\r\n", csv);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownFormat() {
+        ExportFormat.fromName("xml");
+    }
+}
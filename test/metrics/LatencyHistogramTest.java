@@ -0,0 +1,79 @@
+package metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testRecordsIntoUpperBoundBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(65_536L);
+        histogram.record(65_537L);
+        histogram.record(TimeUnit.MINUTES.toNanos(5));
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(50) + 131_073L + TimeUnit.MINUTES.toNanos(5), histogram.getSumNanos());
+    }
+
+    @Test
+    public void testBucketIndexMatchesBoundsAndKeepsBucketsNarrow() {
+        long[] bounds = LatencyHistogram.BUCKET_BOUNDS_NANOS;
+        for (int i = 0; i < bounds.length; i++) {
+            assertEquals(i, LatencyHistogram.bucketIndex(bounds[i]));
+            assertEquals(i + 1, LatencyHistogram.bucketIndex(bounds[i] + 1));
+            if (i > 0) {
+                assertEquals(i, LatencyHistogram.bucketIndex(bounds[i - 1] + 1));
+                assertTrue(bounds[i] - bounds[i - 1] <= bounds[i - 1] / 4);
+            }
+        }
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(bounds.length, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertTrue(bounds[bounds.length - 1] >= TimeUnit.SECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testExportsCumulativeBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+        String text = new PrometheusTextWriter()
+                .family("latency_seconds", "histogram", "Test latency.")
+                .histogram("latency_seconds", "stage", "test", histogram)
+                .toString();
+
+        assertTrue(text.contains("latency_seconds_bucket{stage=\"test\",le=\"0.00262144\"} 0\n"));
+        assertTrue(text.contains("latency_seconds_bucket{stage=\"test\",le=\"0.003145728\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{stage=\"test\",le=\"0.029360128\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{stage=\"test\",le=\"0.033554432\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{stage=\"test\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_count{stage=\"test\"} 2\n"));
+    }
+
+    @Test
+    public void testCountsStatusCodesAndFailures() {
+        StatusCodeCounter counter = new StatusCodeCounter();
+        counter.record(200);
+        counter.record(200);
+        counter.record(503);
+        counter.recordFailure();
+
+        long[] counts = new long[600];
+        counter.forEach((count, status) -> counts[status] = count);
+        long[] expected = new long[600];
+        expected[200] = 2;
+        expected[503] = 1;
+        assertArrayEquals(expected, counts);
+        assertEquals(1, counter.getFailureCount());
+    }
+}
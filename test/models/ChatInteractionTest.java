@@ -0,0 +1,73 @@
+package models;
+
+import org.junit.Test;
+
+import javax.persistence.FetchType;
+import javax.persistence.OneToOne;
+import javax.persistence.SecondaryTable;
+import javax.persistence.Transient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChatInteractionTest {
+
+    @Test
+    public void testKeepsShortResponseInline() {
+        ChatInteraction chatInteraction = new ChatInteraction();
+        chatInteraction.setResponse("Short answer.");
+
+        assertEquals("Short answer.", chatInteraction.getResponse());
+        assertNull(chatInteraction.getResponseBody());
+        assertFalse(chatInteraction.isResponseTruncated());
+        assertEquals("Short answer.", chatInteraction.getFullResponse());
+    }
+
+    @Test
+    public void testMovesLongResponseToSideTable() {
+        String longResponse = "Photosynthesis converts light into chemical energy. ".repeat(40);
+        ChatInteraction chatInteraction = new ChatInteraction();
+        chatInteraction.setResponse(longResponse);
+
+        assertEquals(ChatInteraction.INLINE_RESPONSE_LENGTH, chatInteraction.getResponse().length());
+        assertTrue(longResponse.startsWith(chatInteraction.getResponse()));
+        assertTrue(chatInteraction.isResponseTruncated());
+        assertEquals(longResponse, chatInteraction.getResponseBody());
+        assertEquals(longResponse, chatInteraction.getFullResponse());
+    }
+
+    @Test
+    public void testLoadsResponseBodyOnlyWhenJoined() throws NoSuchFieldException {
+        assertNull(ChatInteraction.class.getAnnotation(SecondaryTable.class));
+        assertNotNull(ChatInteraction.class.getDeclaredField("responseBody").getAnnotation(Transient.class));
+        assertEquals(FetchType.LAZY,
+                ChatResponseBody.class.getDeclaredField("interaction").getAnnotation(OneToOne.class).fetch());
+
+        String longResponse = "Photosynthesis converts light into chemical energy. ".repeat(40);
+        ChatInteraction loaded = new ChatInteraction();
+        loaded.setResponse(longResponse);
+        loaded.setResponseBody(null);
+
+        assertEquals(longResponse, ChatResponseBody.withBody(new Object[]{loaded, longResponse}).getFullResponse());
+    }
+
+    @Test
+    public void testCompressedTextRoundTrips() {
+        String text = "Les r\u00e9actions chimiques \uD83C\uDF31 ".repeat(200);
+        byte[] compressed = CompressedTextConverter.compress(text);
+
+        assertTrue(compressed.length < text.length());
+        assertEquals(text, CompressedTextConverter.decompress(compressed));
+    }
+
+    @Test
+    public void testStoresRoleAsCode() {
+        ChatRoleConverter converter = new ChatRoleConverter();
+
+        assertEquals(Byte.valueOf(ChatRole.ASSISTANT.getCode()), converter.convertToDatabaseColumn(" Assistant "));
+        assertEquals("system", converter.convertToEntityAttribute(ChatRole.SYSTEM.getCode()));
+    }
+}
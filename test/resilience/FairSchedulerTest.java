@@ -0,0 +1,144 @@
+package resilience;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import metrics.LatencyHistogram;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FairSchedulerTest {
+
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testCapsRunningCalls() {
+        FairScheduler scheduler = scheduler(2, 50, "10 seconds");
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        scheduler.submit("alice", 10, () -> start("a1", first));
+        scheduler.submit("bob", 10, () -> start("b1", new CompletableFuture<>()));
+        scheduler.submit("carol", 10, () -> start("c1", new CompletableFuture<>()));
+
+        assertEquals(Arrays.asList("a1", "b1"), started);
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(1, scheduler.getQueuedCount());
+
+        first.complete("done");
+        assertEquals(Arrays.asList("a1", "b1", "c1"), started);
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void testServesUsersByTokenCost() {
+        FairScheduler scheduler = scheduler(1, 50, "10 seconds");
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit("other", 10, () -> start("blocker", blocker));
+
+        for (int i = 1; i <= 3; i++) {
+            String name = "heavy" + i;
+            scheduler.submit("heavy", 2000, () -> start(name, CompletableFuture.completedFuture(name)));
+        }
+        for (int i = 1; i <= 3; i++) {
+            String name = "light" + i;
+            scheduler.submit("light", 100, () -> start(name, CompletableFuture.completedFuture(name)));
+        }
+        blocker.complete("done");
+
+        assertEquals(Arrays.asList("blocker", "light1", "light2", "light3", "heavy1", "heavy2", "heavy3"), started);
+    }
+
+    @Test
+    public void testExpiresCallsWaitingPastDeadline() throws Exception {
+        FairScheduler scheduler = scheduler(1, 50, "50 ms");
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit("alice", 10, () -> start("blocker", blocker));
+
+        CompletionStage<String> waiting = scheduler.submit("bob", 10,
+                () -> start("late", CompletableFuture.completedFuture("late")));
+        try {
+            waiting.toCompletableFuture().get(5, TimeUnit.SECONDS);
+            fail("Expected the call to expire");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UpstreamUnavailableException);
+        }
+
+        blocker.complete("done");
+        assertFalse(started.contains("late"));
+        assertEquals(1, scheduler.getExpiredCount());
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void testRejectsWhenUserHasTooManyWaiting() {
+        FairScheduler scheduler = scheduler(1, 2, "10 seconds");
+        scheduler.submit("alice", 10, () -> start("a1", new CompletableFuture<>()));
+        scheduler.submit("alice", 10, () -> start("a2", new CompletableFuture<>()));
+        scheduler.submit("alice", 10, () -> start("a3", new CompletableFuture<>()));
+
+        CompletableFuture<String> rejected = scheduler.<String>submit("alice", 10,
+                () -> start("a4", new CompletableFuture<>())).toCompletableFuture();
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, scheduler.getRejectedCount());
+        assertFalse(scheduler.submit("bob", 10, () -> start("b1", new CompletableFuture<>()))
+                .toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testExpiredCallsLeaveTheUsersQueue() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, "50 ms");
+        scheduler.submit("alice", 10, () -> start("blocker", new CompletableFuture<>()));
+
+        CompletableFuture<String> expiring = scheduler.<String>submit("bob", 10,
+                () -> start("b1", new CompletableFuture<>())).toCompletableFuture();
+        try {
+            expiring.get(5, TimeUnit.SECONDS);
+            fail("Expected the call to expire");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UpstreamUnavailableException);
+        }
+
+        assertEquals(0, scheduler.getWaitingUserCount());
+        assertFalse(scheduler.submit("bob", 10, () -> start("b2", new CompletableFuture<>()))
+                .toCompletableFuture().isDone());
+        assertEquals(0, scheduler.getRejectedCount());
+    }
+
+    @Test
+    public void testQueuesAnonymousCallsSeparately() {
+        FairScheduler scheduler = scheduler(1, 1, "10 seconds");
+        scheduler.submit("alice", 10, () -> start("blocker", new CompletableFuture<>()));
+
+        scheduler.submit(null, 10, () -> start("anonymous1", new CompletableFuture<>()));
+        scheduler.submit(null, 10, () -> start("anonymous2", new CompletableFuture<>()));
+
+        assertEquals(0, scheduler.getRejectedCount());
+        assertEquals(2, scheduler.getQueuedCount());
+        assertEquals(2, scheduler.getWaitingUserCount());
+    }
+
+    private CompletionStage<String> start(String name, CompletableFuture<String> result) {
+        started.add(name);
+        return result;
+    }
+
+    private static FairScheduler scheduler(int maxConcurrent, int maxQueuedPerUser, String maxQueueWait) {
+        Config config = ConfigFactory.parseString("maxConcurrent = " + maxConcurrent + "\n"
+                + "quantum = 500\n"
+                + "maxQueuedPerUser = " + maxQueuedPerUser + "\n"
+                + "maxQueueWait = " + maxQueueWait);
+        return new FairScheduler(config, () -> 100, new LatencyHistogram());
+    }
+}
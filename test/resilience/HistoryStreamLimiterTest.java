@@ -0,0 +1,26 @@
+package resilience;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryStreamLimiterTest {
+
+    @Test
+    public void testLeavesOnePooledConnectionFree() {
+        HistoryStreamLimiter limiter = new HistoryStreamLimiter(20, 3);
+
+        assertEquals(2, limiter.getMaxStreams());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getRejectedCount());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getOpenCount());
+    }
+}
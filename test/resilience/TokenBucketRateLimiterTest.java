@@ -0,0 +1,115 @@
+package resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void testAllowsBurstThenRejects() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 3, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+        assertEquals(0, limiter.tryAcquire("bob"));
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testRefillsOverTime() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("alice"));
+        long wait = limiter.tryAcquire("alice");
+        assertEquals(TimeUnit.SECONDS.toNanos(1), wait);
+
+        clock.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    public void testEvictsOnlyRefilledBuckets() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5, clock::get);
+
+        limiter.tryAcquire("alice");
+        assertEquals(0, limiter.evictIdle());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(0, limiter.getKeyCount());
+    }
+
+    @Test
+    public void testCheckDoesNotTakeToken() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, clock::get);
+
+        assertEquals(0, limiter.check("alice"));
+        assertEquals(0, limiter.check("alice"));
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.check("alice") > 0);
+    }
+
+    @Test
+    public void testReleaseGivesTokenBack() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("alice"));
+        limiter.release("alice");
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+    }
+
+    @Test
+    public void testAcquiresAfterEviction() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, clock::get);
+
+        limiter.tryAcquire("alice");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, limiter.evictIdle());
+
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+        assertEquals(1, limiter.getKeyCount());
+    }
+
+    @Test
+    public void testChargesSeveralTokensAtOnce() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 10, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("alice", 8));
+        assertTrue(limiter.check("alice", 3) > 0);
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.tryAcquire("alice", 3));
+        assertEquals(0, limiter.tryAcquire("alice", 2));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+
+        limiter.release("alice", 2);
+        assertEquals(0, limiter.tryAcquire("alice", 2));
+    }
+
+    @Test
+    public void testAdmitsMoreThanBurstOnlyFromFullBucket() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 10, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.tryAcquire("alice", 20));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, limiter.tryAcquire("alice", 20));
+        assertEquals(TimeUnit.SECONDS.toNanos(11), limiter.tryAcquire("alice"));
+    }
+}
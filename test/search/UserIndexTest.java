@@ -0,0 +1,112 @@
+package search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserIndexTest {
+
+    @Test
+    public void testTokenizesIntoLowerCaseTermsWithoutStopWords() {
+        assertEquals(Arrays.asList("what", "photosynthesis", "co2"),
+                Tokenizer.tokenize("What is Photosynthesis? (CO2, a)"));
+    }
+
+    @Test
+    public void testRanksDocumentsWithBm25() {
+        UserIndex index = new UserIndex();
+        index.add(10, Tokenizer.tokenize("What is photosynthesis? Photosynthesis turns light into energy."));
+        index.add(11, Tokenizer.tokenize("Explain the water cycle and precipitation."));
+        index.add(12, Tokenizer.tokenize("How do plants use water and light? A long answer about roots, leaves and soil."));
+
+        List<ScoredChat> results = index.search(Tokenizer.tokenize("photosynthesis light"), 10);
+
+        assertEquals(2, results.size());
+        assertEquals(10, results.get(0).getChatId());
+        assertEquals(12, results.get(1).getChatId());
+        assertTrue(results.get(0).getScore() > results.get(1).getScore());
+    }
+
+    @Test
+    public void testLimitsResults() {
+        UserIndex index = new UserIndex();
+        for (long id = 1; id <= 100; id++) {
+            index.add(id, Tokenizer.tokenize("question number " + id + " about biology"));
+        }
+
+        assertEquals(5, index.search(Tokenizer.tokenize("biology"), 5).size());
+        assertTrue(index.search(Tokenizer.tokenize("chemistry"), 5).isEmpty());
+    }
+
+    @Test
+    public void testContainsAddedChats() {
+        UserIndex index = new UserIndex();
+        index.add(3, Tokenizer.tokenize("first"));
+        index.add(7, Tokenizer.tokenize("second"));
+
+        assertTrue(index.contains(7));
+        assertFalse(index.contains(5));
+    }
+
+    @Test
+    public void testSkipsRemovedChats() {
+        UserIndex index = new UserIndex();
+        index.add(3, Tokenizer.tokenize("photosynthesis in plants"));
+        index.add(7, Tokenizer.tokenize("photosynthesis and light"));
+
+        assertTrue(index.remove(3));
+        assertFalse(index.remove(3));
+        assertFalse(index.contains(3));
+        assertEquals(1, index.getDocumentCount());
+
+        List<ScoredChat> results = index.search(Tokenizer.tokenize("photosynthesis"), 10);
+        assertEquals(1, results.size());
+        assertEquals(7, results.get(0).getChatId());
+    }
+
+    @Test
+    public void testScoresAsIfRemovedChatsWereNeverAdded() {
+        UserIndex index = new UserIndex();
+        index.add(1, Tokenizer.tokenize("photosynthesis in plants"));
+        index.add(2, Tokenizer.tokenize("photosynthesis and chlorophyll"));
+        index.add(3, Tokenizer.tokenize("photosynthesis and light"));
+        index.add(4, Tokenizer.tokenize("the water cycle"));
+        index.remove(1);
+        index.remove(2);
+
+        UserIndex fresh = new UserIndex();
+        fresh.add(3, Tokenizer.tokenize("photosynthesis and light"));
+        fresh.add(4, Tokenizer.tokenize("the water cycle"));
+
+        double expected = fresh.search(Tokenizer.tokenize("photosynthesis"), 10).get(0).getScore();
+        assertEquals(expected, index.search(Tokenizer.tokenize("photosynthesis"), 10).get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    public void testCompactionDropsRemovedChatsAndRestoresIdOrder() {
+        UserIndex index = new UserIndex();
+        index.add(20, Tokenizer.tokenize("photosynthesis and light"));
+        index.add(10, Tokenizer.tokenize("chlorophyll in leaves"));
+        index.add(30, Tokenizer.tokenize("light and photosynthesis again"));
+        index.remove(10);
+        assertTrue(index.needsCompaction());
+
+        index.compact();
+
+        assertFalse(index.needsCompaction());
+        assertFalse(index.contains(10));
+        assertTrue(index.contains(20));
+        assertTrue(index.contains(30));
+        assertEquals(2, index.getDocumentCount());
+        assertTrue(index.search(Tokenizer.tokenize("chlorophyll"), 10).isEmpty());
+        assertEquals(2, index.search(Tokenizer.tokenize("photosynthesis light"), 10).size());
+
+        index.add(40, Tokenizer.tokenize("chlorophyll again"));
+        assertEquals(40, index.search(Tokenizer.tokenize("chlorophyll"), 10).get(0).getChatId());
+    }
+}
@@ -0,0 +1,187 @@
+package services.impl;
+
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import cache.PromptKey;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import dao.ChatHistoryReadDao;
+import dao.ChatInteractionDao;
+import dtos.ChatBatchResultDTO;
+import dtos.ChatInteractionDTO;
+import dtos.ChatRequestDTO;
+import metrics.MetricsRegistry;
+import models.ChatInteraction;
+import models.ChatStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import play.inject.ApplicationLifecycle;
+import resilience.FairScheduler;
+import resilience.UpstreamGuard;
+import services.ChatBatchException;
+import services.CompletionCache;
+import services.ConversationContext;
+import services.HistoryCache;
+import upstream.UpstreamRouter;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChatGPTServiceImplTest {
+
+    private static final Config CONFIG = ConfigFactory.parseString(
+            "openai.model = test-model\n" +
+                    "chat.scheduler.expectedCompletionTokens = 256\n" +
+                    "chat.batch.parallelism = 2\n" +
+                    "chat.async { workers = 1, queueSize = 10, pendingTimeout = 1 hour }");
+
+    private ActorSystem system;
+    private ChatInteractionDao chatInteractionDao;
+    private CompletionCache completionCache;
+    private ConversationContext conversationContext;
+    private HistoryCache historyCache;
+    private ChatGPTServiceImpl service;
+
+    @Before
+    public void setUp() {
+        system = ActorSystem.create("ChatGPTServiceImplTest");
+        chatInteractionDao = mock(ChatInteractionDao.class);
+        completionCache = mock(CompletionCache.class);
+        conversationContext = mock(ConversationContext.class);
+        historyCache = mock(HistoryCache.class);
+        when(chatInteractionDao.saveAll(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(chatInteractionDao.failPendingBefore(any())).thenReturn(CompletableFuture.completedFuture(0));
+        when(conversationContext.contextFor(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+        when(completionCache.get(any())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        answer("first", "first answer");
+        answer("third", "third answer");
+        when(completionCache.get(PromptKey.of("user", "second", "test-model")))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("upstream failed")));
+
+        service = new ChatGPTServiceImpl(chatInteractionDao, mock(ChatHistoryReadDao.class), completionCache,
+                conversationContext, historyCache, mock(UpstreamGuard.class),
+                mock(UpstreamRouter.class), mock(FairScheduler.class), new MetricsRegistry(),
+                Materializer.matFromSystem(system), mock(ApplicationLifecycle.class), CONFIG);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReportsFailedPromptsInPlace() throws Exception {
+        ChatBatchResultDTO batch = service.addChats(prompts("first", "second", "third"), "alice", false)
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, batch.getSucceeded());
+        assertEquals(1, batch.getFailed());
+        assertEquals(3, batch.getResults().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, batch.getResults().get(i).getIndex());
+        }
+        assertEquals("first answer", batch.getResults().get(0).getChat().getResponse());
+        assertNull(batch.getResults().get(1).getChat());
+        assertEquals("upstream failed", batch.getResults().get(1).getError());
+        assertEquals("third answer", batch.getResults().get(2).getChat().getResponse());
+
+        ArgumentCaptor<List<ChatInteraction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(chatInteractionDao).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+    }
+
+    @Test
+    public void testFailsFastAtFirstFailedPrompt() throws Exception {
+        try {
+            service.addChats(prompts("first", "second", "third"), "alice", true)
+                    .toCompletableFuture().get(5, TimeUnit.SECONDS);
+            fail("The batch should have failed");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof ChatBatchException);
+            assertEquals(1, ((ChatBatchException) cause).getIndex());
+        }
+        verify(chatInteractionDao, never()).saveAll(any());
+    }
+
+    @Test
+    public void testExpiresStalePendingChatsAtStartup() {
+        ArgumentCaptor<Timestamp> cutoff = ArgumentCaptor.forClass(Timestamp.class);
+        verify(chatInteractionDao).failPendingBefore(cutoff.capture());
+
+        long age = System.currentTimeMillis() - cutoff.getValue().getTime();
+        assertTrue(age >= TimeUnit.HOURS.toMillis(1) && age < TimeUnit.HOURS.toMillis(1) + 60_000);
+    }
+
+    @Test
+    public void testMarksJobFailedWhenResponseCannotBeSaved() throws Exception {
+        when(chatInteractionDao.savePending(any())).thenAnswer(invocation -> {
+            invocation.<ChatInteraction>getArgument(0).setId(42L);
+            return CompletableFuture.completedFuture(null);
+        });
+        when(chatInteractionDao.updateResponse(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("database down")));
+        when(chatInteractionDao.markFailed(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        Optional<ChatInteractionDTO> pending = service.submitChat(new ChatRequestDTO("user", "first", false), "alice")
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(Long.valueOf(42L), pending.get().getId());
+
+        ArgumentCaptor<ChatInteraction> failed = ArgumentCaptor.forClass(ChatInteraction.class);
+        verify(chatInteractionDao, timeout(5000)).markFailed(failed.capture());
+        assertEquals(ChatStatus.FAILED, failed.getValue().getStatus());
+        verify(historyCache, timeout(5000).times(2)).invalidate("alice");
+    }
+
+    @Test
+    public void testInvalidatesHistoryOnceChatIsPending() throws Exception {
+        when(chatInteractionDao.savePending(any())).thenAnswer(invocation -> {
+            invocation.<ChatInteraction>getArgument(0).setId(43L);
+            return CompletableFuture.completedFuture(null);
+        });
+        when(chatInteractionDao.updateResponse(any())).thenReturn(new CompletableFuture<>());
+
+        service.submitChat(new ChatRequestDTO("user", "first", false), "alice")
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        verify(historyCache).invalidate("alice");
+    }
+
+    private void answer(String message, String response) {
+        when(completionCache.get(PromptKey.of("user", message, "test-model")))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(response)));
+    }
+
+    private static List<ChatRequestDTO> prompts(String... messages) {
+        return Arrays.stream(messages)
+                .map(message -> new ChatRequestDTO("user", message, false))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,192 @@
+package upstream;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import conversation.ConversationTurn;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpstreamRouterTest {
+
+    private static final long FAIL = -1;
+
+    @Test
+    public void testPrefersFasterEndpoint() throws Exception {
+        FakeProvider slow = new FakeProvider("slow", call -> 50);
+        FakeProvider fast = new FakeProvider("fast", call -> 5);
+        UpstreamRouter router = new UpstreamRouter(Arrays.asList(slow, fast), config(false, 1000, 0));
+
+        for (int i = 0; i < 20; i++) {
+            complete(router);
+        }
+
+        assertTrue("slow endpoint got " + slow.calls.get() + " calls", slow.calls.get() <= 2);
+        assertEquals(20, slow.calls.get() + fast.calls.get());
+    }
+
+    @Test
+    public void testHedgesRequestSlowerThanPercentile() throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        IntToLongFunction slowOnce = call -> sequence.getAndIncrement() == 20 ? 5_000 : 5;
+        FakeProvider first = new FakeProvider("first", slowOnce);
+        FakeProvider second = new FakeProvider("second", slowOnce);
+        UpstreamRouter router = new UpstreamRouter(Arrays.asList(first, second), config(true, 10, 1.0));
+
+        for (int i = 0; i < 20; i++) {
+            complete(router);
+        }
+        long start = System.nanoTime();
+        complete(router);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, router.getEndpoints().stream().mapToLong(UpstreamEndpoint::getHedgeCount).sum());
+        assertEquals(1, router.getEndpoints().stream().mapToLong(UpstreamEndpoint::getHedgeWinCount).sum());
+    }
+
+    @Test
+    public void testDoesNotHedgeSlowRequestOnItsOwnEndpoint() throws Exception {
+        FakeProvider provider = new FakeProvider("only", call -> call == 10 ? 300 : 5);
+        UpstreamRouter router = new UpstreamRouter(Collections.singletonList(provider), config(true, 10, 1.0));
+
+        for (int i = 0; i < 11; i++) {
+            complete(router);
+        }
+
+        assertEquals(11, provider.calls.get());
+        assertEquals(0, router.getEndpoints().get(0).getHedgeCount());
+    }
+
+    @Test
+    public void testSettlesOnlyAfterLosingHedgeFinishes() throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        IntToLongFunction slowOnce = call -> sequence.getAndIncrement() == 20 ? 1_000 : 5;
+        UpstreamRouter router = new UpstreamRouter(Arrays.asList(new FakeProvider("first", slowOnce),
+                new FakeProvider("second", slowOnce)), config(true, 10, 1.0));
+        for (int i = 0; i < 20; i++) {
+            complete(router);
+        }
+
+        CompletableFuture<Void> settled = new CompletableFuture<>();
+        router.complete(Collections.emptyList(), "Hello", "user", settled).toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertFalse(settled.isDone());
+        settled.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFailsOverToAnotherEndpoint() throws Exception {
+        FakeProvider broken = new FakeProvider("broken", call -> FAIL);
+        FakeProvider healthy = new FakeProvider("healthy", call -> 1);
+        UpstreamRouter router = new UpstreamRouter(Arrays.asList(broken, healthy), config(true, 1000, 1.0));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("healthy", complete(router));
+        }
+        assertEquals(broken.calls.get(), router.getEndpoints().get(0).getFailureCount());
+    }
+
+    @Test
+    public void testFailsWhenEveryAttemptFails() throws Exception {
+        FakeProvider broken = new FakeProvider("broken", call -> FAIL);
+        UpstreamRouter router = new UpstreamRouter(Collections.singletonList(broken), config(true, 1000, 1.0));
+
+        try {
+            complete(router);
+            fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            assertEquals("broken failed", e.getCause().getMessage());
+        }
+        assertEquals(2, broken.calls.get());
+    }
+
+    @Test
+    public void testHedgesStayWithinBudget() throws Exception {
+        FakeProvider broken = new FakeProvider("broken", call -> FAIL);
+        UpstreamRouter router = new UpstreamRouter(Collections.singletonList(broken), config(true, 1000, 0.5));
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                complete(router);
+            } catch (ExecutionException e) {
+                // every call fails, only the number of attempts matters
+            }
+        }
+        assertEquals(15, broken.calls.get());
+    }
+
+    private static String complete(UpstreamRouter router) throws Exception {
+        return router.complete(Collections.emptyList(), "Hello", "user")
+                .toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static Config config(boolean hedging, int minSamples, double budget) {
+        return ConfigFactory.parseString(
+                "routing { decayTime = 10 seconds, failurePenalty = 5 seconds }\n"
+                        + "hedging { enabled = " + hedging + ", percentile = 0.95, windowSize = 50, "
+                        + "minSamples = " + minSamples + ", budget = " + budget + " }");
+    }
+
+    /**
+     * Answers with its own name after a latency chosen per call, or fails when the
+     * latency is negative.
+     */
+    private static final class FakeProvider implements UpstreamProvider {
+
+        private final String name;
+        private final IntToLongFunction latencyMillis;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private FakeProvider(String name, IntToLongFunction latencyMillis) {
+            this.name = name;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getModel() {
+            return "fake";
+        }
+
+        @Override
+        public CompletionStage<String> complete(List<ConversationTurn> context, String userMessage, String role) {
+            long latency = latencyMillis.applyAsLong(calls.getAndIncrement());
+            if (latency < 0) {
+                return CompletableFuture.failedFuture(new RuntimeException(name + " failed"));
+            }
+            return CompletableFuture.supplyAsync(() -> name,
+                    CompletableFuture.delayedExecutor(latency, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public CompletionStage<Source<String, NotUsed>> stream(List<ConversationTurn> context, String userMessage,
+                                                               String role) {
+            return CompletableFuture.completedFuture(Source.single(name));
+        }
+
+        @Override
+        public CompletionStage<Void> warmUp(int connections) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}